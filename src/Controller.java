@@ -1,12 +1,20 @@
+import constant.Constant;
+import server.ApiServer;
 import ui.UserInterface;
 
 /**
  * Main controller class for the application.
+ * Run with "--server [port]" to serve the HTTP API instead of the console menus.
  * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
  */
 public class Controller {
     public static void main(String[] args) {
         try {
+            if(args.length > 0 && args[0].equals("--server")){
+                int port = args.length > 1 ? Integer.parseInt(args[1]) : Constant.SERVER_PORT;
+                ApiServer.launch(port);
+                return;
+            }
             UserInterface ui = new UserInterface();
             ui.start();
         } catch (Exception e) {
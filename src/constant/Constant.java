@@ -9,4 +9,13 @@ public class Constant {
     public static final String PROFESSOR_TYPE = "2";
     public static final String ADMIN_TYPE = "3";
     public static final String BANNER = "---------------------------";
+    public static final String MUTATION_LOG_PATH = "mutations.log";
+    public static final long LOG_SYNC_INTERVAL_MILLIS = 50;
+    public static final String DATA_DIRECTORY = ".";
+    public static final int SERVER_PORT = 8080;
+    public static final int IMPORT_BATCH_SIZE = 1000;
+    public static final int PASSWORD_HASH_ITERATIONS = 600000;
+    public static final int IMPORT_PASSWORD_HASH_ITERATIONS = 1000;
+    public static final int PASSWORD_VERIFY_QUEUE_SIZE = 256;
+    public static final long SESSION_TTL_MILLIS = 15 * 60 * 1000;
 }
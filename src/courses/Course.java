@@ -4,7 +4,13 @@ import roles.Professor;
 import roles.Student;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -20,8 +26,29 @@ public class Course {
     private final LocalTime endTime;
     private final String weekDay;
     private final Professor professor;
-    private final List<Student> students;
+    // roster in enrollment order, with constant time membership checks
+    private final Set<Student> students;
     private final int capacity;
+    // seats taken or being taken, never more than capacity
+    private final AtomicInteger reservedSeats;
+    // students waiting for a seat, in arrival order
+    private final ConcurrentLinkedQueue<Student> waitlist;
+    // the same students, so joining checks and claims a place in one step
+    private final Set<Student> waiting;
+    private final AtomicInteger waitlistSize;
+    private volatile int waitlistCapacity;
+    // days the course is held, bit 0 for Monday up to bit 6 for Sunday
+    private final int weekDayMask;
+    // time of the course as minutes of the day, start inclusive and end exclusive
+    private final int startMinute;
+    private final int endMinute;
+
+    // constants
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    // full day names, in the same order as the day bits
+    private static final String[] DAY_NAMES = {
+            "monday", "tuesday", "wednesday", "thursday", "friday", "saturday", "sunday"
+    };
 
     // constructor
     /**
@@ -42,7 +69,16 @@ public class Course {
         this.weekDay = weekDay;
         this.professor = professor;
         this.capacity = capacity;
-        this.students = new ArrayList<>();
+        this.students = new LinkedHashSet<>();
+        this.reservedSeats = new AtomicInteger();
+        this.waitlist = new ConcurrentLinkedQueue<>();
+        this.waiting = ConcurrentHashMap.newKeySet();
+        this.waitlistSize = new AtomicInteger();
+        this.waitlistCapacity = 0;
+        this.weekDayMask = toDayMask(weekDay);
+        this.startMinute = toMinute(startTime);
+        // a course always occupies at least its start minute
+        this.endMinute = Math.min(MINUTES_PER_DAY, Math.max(toMinute(endTime), startMinute + 1));
     }
 
     /**
@@ -85,6 +121,30 @@ public class Course {
         return weekDay;
     }
 
+    /**
+     * get the days of held courses as a bitmask
+     * @return the mask, bit 0 for Monday up to bit 6 for Sunday
+     */
+    public int getWeekDayMask() {
+        return weekDayMask;
+    }
+
+    /**
+     * get the start time of the course as minutes of the day
+     * @return the first minute of the course
+     */
+    public int getStartMinute() {
+        return startMinute;
+    }
+
+    /**
+     * get the end time of the course as minutes of the day
+     * @return the minute right after the course ends
+     */
+    public int getEndMinute() {
+        return endMinute;
+    }
+
     /**
      * get the professor holding the course
      * @return the professor of the course
@@ -94,11 +154,22 @@ public class Course {
     }
 
     /**
-     * get the list of students who taking this course
-     * @return the list of students
+     * get the students who taking this course, in the order they enrolled.
+     * The roster is copied while no student is added or removed, so callers can iterate it during enrollments
+     * @return a read-only copy of the roster
      */
     public List<Student> getStudents() {
-        return students;
+        return Collections.unmodifiableList(copyStudents());
+    }
+
+    /**
+     * get the number of students taking this course
+     * @return the size of the roster
+     */
+    public int getStudentCount() {
+        synchronized (students){
+            return students.size();
+        }
     }
 
     /**
@@ -110,24 +181,139 @@ public class Course {
     }
 
     /**
-     * add student to the list
+     * get the number of seats that are still free
+     * @return capacity minus the reserved seats, 0 if a reload left the course over capacity
+     */
+    public int getAvailableSeats(){
+        return Math.max(0, capacity - reservedSeats.get());
+    }
+
+    /**
+     * reserve one seat without taking a lock.
+     * The compare-and-set loop never lets the reserved seats go above capacity,
+     * however many threads are enrolling at the same time
+     * @return true if a seat was reserved
+     */
+    public boolean tryReserveSeat(){
+        while(true){
+            int reserved = reservedSeats.get();
+            if(reserved >= capacity){
+                return false;
+            }
+            if(reservedSeats.compareAndSet(reserved, reserved + 1)){
+                return true;
+            }
+        }
+    }
+
+    /**
+     * give back a seat reserved by tryReserveSeat
+     */
+    public void releaseSeat(){
+        while(true){
+            int reserved = reservedSeats.get();
+            if(reserved <= 0){
+                return;
+            }
+            if(reservedSeats.compareAndSet(reserved, reserved - 1)){
+                return;
+            }
+        }
+    }
+
+    /**
+     * add student to the list.
+     * A seat is reserved first, so a full course rejects the student without locking the roster
      * @param student  that is going to add to the list
-     * @return is student added
+     * @return is student added, false if the student is already in the list or the course is full
      */
     public boolean addStudent(Student student){
         // if input is invalid, return false
         if(student == null){
             return false;
         }
+        // if there is no free seat, student cannot be added
+        if(!tryReserveSeat()){
+            return false;
+        }
+        // if the roster has student in it, student cannot be added
+        synchronized (students){
+            if(students.add(student)){
+                return true;
+            }
+        }
+        releaseSeat();
+        return false;
+    }
 
-    	// if the list, students, has student in it, student cannot be added
-        if(students.contains(student)){
+    /**
+     * add a student for whom a seat was already reserved with tryReserveSeat.
+     * The seat is given back if the student is already in the roster
+     * @param student that is going to add to the list
+     * @return is student added
+     */
+    public boolean addStudentToReservedSeat(Student student){
+        if(student != null){
+            synchronized (students){
+                if(students.add(student)){
+                    return true;
+                }
+            }
+        }
+        releaseSeat();
+        return false;
+    }
+
+    /**
+     * put a student back into the roster when the database is restored, e.g. from a snapshot.
+     * The capacity is not checked, the student takes a seat even if the course is over its capacity
+     * @param student that is going to add to the list
+     * @return is student added, false if the student is already in the list
+     */
+    public boolean restoreStudent(Student student){
+        if(student == null){
             return false;
         }
-        
-        // else, add the student
-        students.add(student);
-        return true;
+        synchronized (students){
+            if(students.add(student)){
+                reservedSeats.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * move the roster and the waitlist of the course this course replaces, e.g. after its time changed.
+     * Students keep their seats even if the new capacity is smaller
+     * @param previous version of the course
+     */
+    public void takeOver(Course previous){
+        if(previous == null || previous == this){
+            return;
+        }
+        List<Student> roster = previous.copyStudents();
+        synchronized (students){
+            students.addAll(roster);
+            reservedSeats.set(Math.max(reservedSeats.get(), students.size()));
+        }
+        waitlistCapacity = previous.waitlistCapacity;
+        for(Student student : previous.getWaitlist()){
+            if(waiting.add(student)){
+                waitlist.add(student);
+                waitlistSize.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * copy the roster while no student is added or removed
+     * @return the students of the course, in the order they enrolled
+     */
+    public List<Student> copyStudents(){
+        synchronized (students){
+            return new ArrayList<>(students);
+        }
     }
 
     /**
@@ -139,61 +325,181 @@ public class Course {
         if(student == null){
             return false;
         }
-        return students.remove(student);
+        synchronized (students){
+            if(!students.remove(student)){
+                return false;
+            }
+        }
+        releaseSeat();
+        return true;
     }
 
     /**
-     * if the course is conflicted with another course, return false
-     * @param course that might be conflicted
-     * @return true if there is no conflict between courses
+     * get the maximum number of students on the waitlist
+     * @return the waitlist capacity, 0 if the course has no waitlist
      */
-    public boolean conflictWith(Course course){
+    public int getWaitlistCapacity(){
+        return waitlistCapacity;
+    }
 
-    	// if the day that is going to have the course is unequal to another, then there is no conflict
-        if(!hasSameWeekDay(course)){
+    /**
+     * set the maximum number of students on the waitlist
+     * @param waitlistCapacity the new limit, 0 to disable the waitlist
+     */
+    public void setWaitlistCapacity(int waitlistCapacity){
+        this.waitlistCapacity = Math.max(0, waitlistCapacity);
+    }
+
+    /**
+     * put the student on the waitlist if there is room left
+     * @param student waiting for a seat
+     * @return true if the student is added to the waitlist, false if it is full or the student is already on it
+     */
+    public boolean joinWaitlist(Student student){
+        // claim the place of the student first, so two enrollments of the same student cannot both join
+        if(student == null || !waiting.add(student)){
             return false;
         }
+        // reserve a waitlist slot the same way as a seat
+        while(true){
+            int size = waitlistSize.get();
+            if(size >= waitlistCapacity){
+                waiting.remove(student);
+                return false;
+            }
+            if(waitlistSize.compareAndSet(size, size + 1)){
+                break;
+            }
+        }
+        waitlist.add(student);
+        return true;
+    }
 
-        LocalTime thisStart = this.startTime;
-        LocalTime thisEnd = this.endTime;
-        LocalTime otherStart = course.getStartTime();
-        LocalTime otherEnd = course.getEndTime();
-
-        if( (thisStart.isBefore(otherStart) || thisStart.equals(otherStart)) && (thisEnd.isAfter(otherEnd) || thisEnd.equals(otherEnd)) ){
-            return true;
+    /**
+     * take the student off the waitlist, e.g. when they drop a course they are waiting for
+     * @param student waiting for a seat
+     * @return true if the student was on the waitlist
+     */
+    public boolean leaveWaitlist(Student student){
+        if(student == null || !waiting.remove(student)){
+            return false;
         }
-        if( (thisStart.isAfter(otherStart) || thisStart.equals(otherStart)) && (thisEnd.isBefore(otherEnd) || thisEnd.equals(otherEnd)) ){
-            return true;
+        if(waitlist.remove(student)){
+            waitlistSize.decrementAndGet();
         }
+        return true;
+    }
 
-        if ( (thisStart.isBefore(otherStart) || thisStart.equals(otherStart)) && (thisEnd.isAfter(otherStart) || thisEnd.equals(otherEnd)) ){
-            return true;
+    /**
+     * take the first student off the waitlist
+     * @return the student who waited longest, or null if the waitlist is empty
+     */
+    public Student pollWaitlist(){
+        Student student = waitlist.poll();
+        if(student != null){
+            waiting.remove(student);
+            waitlistSize.decrementAndGet();
         }
+        return student;
+    }
 
-        if ( (otherStart.isBefore(thisStart) || otherStart.equals(thisStart)) && (otherEnd.isAfter(thisStart) || otherEnd.equals(thisEnd)) ){
-            return true;
-        }
+    /**
+     * get the students on the waitlist
+     * @return a copy of the waitlist, in arrival order
+     */
+    public List<Student> getWaitlist(){
+        return new ArrayList<>(waitlist);
+    }
 
+    /**
+     * if the course is conflicted with another course, return false
+     * @param course that might be conflicted
+     * @return true if there is no conflict between courses
+     */
+    public boolean conflictWith(Course course){
+        // the courses conflict if they share a day and their time ranges overlap
+        return (this.weekDayMask & course.weekDayMask) != 0
+                && this.startMinute < course.endMinute
+                && course.startMinute < this.endMinute;
+    }
 
-        // for other cases, return false
-        return false;
+    /**
+     * convert a time to the minute of the day
+     * @param time to convert
+     * @return minutes since midnight, or 0 if time is null
+     */
+    private static int toMinute(LocalTime time){
+        if(time == null){
+            return 0;
+        }
+        return time.getHour() * 60 + time.getMinute();
     }
 
     /**
-     * check if the courses has the same date
-     * @param other course
-     * @return true if the courses have the same date
+     * parse a week day pattern such as "MWF", "TR", "TTh" or "Wednesday"
+     * @param weekDay pattern of the course
+     * @return a mask with bit 0 for Monday up to bit 6 for Sunday
      */
-    private boolean hasSameWeekDay(Course other){
-        // traverse weekday string
-        for(int i = 0; i < this.weekDay.length(); i++){
-            for(int j = 0; j < other.weekDay.length(); j++){
-                if(this.weekDay.charAt(i) == other.weekDay.charAt(j)){
-                    return true;
-                }
+    public static int toDayMask(String weekDay){
+        int mask = 0;
+        if(weekDay == null){
+            return mask;
+        }
+        int i = 0;
+        while(i < weekDay.length()){
+            // full day names, e.g. "Monday"
+            int fullName = matchDayName(weekDay, i);
+            if(fullName >= 0){
+                mask |= 1 << fullName;
+                i += DAY_NAMES[fullName].length();
+                continue;
+            }
+            char c = weekDay.charAt(i);
+            char next = i + 1 < weekDay.length() ? weekDay.charAt(i + 1) : ' ';
+            // two letter abbreviations, e.g. "Th" or "Su", only with a lowercase second letter,
+            // since "SU" or "TH" are two single letter codes
+            if(c == 'T' && next == 'h'){
+                mask |= 1 << 3;
+                i += 2;
+                continue;
+            }
+            if(c == 'T' && next == 'u'){
+                mask |= 1 << 1;
+                i += 2;
+                continue;
+            }
+            if(c == 'S' && next == 'a'){
+                mask |= 1 << 5;
+                i += 2;
+                continue;
+            }
+            if(c == 'S' && next == 'u'){
+                mask |= 1 << 6;
+                i += 2;
+                continue;
             }
+            // single letter codes, e.g. "MWF" or "TR"
+            int index = "MTWRFSU".indexOf(c);
+            if(index >= 0){
+                mask |= 1 << index;
+            }
+            i++;
         }
-        return false;
+        return mask;
+    }
+
+    /**
+     * check whether a full day name starts at the given index
+     * @return the day index, or -1 if no day name starts there
+     */
+    private static int matchDayName(String weekDay, int from){
+        for(int day = 0; day < DAY_NAMES.length; day++){
+            String name = DAY_NAMES[day];
+            if(weekDay.regionMatches(true, from, name, 0, name.length())){
+                return day;
+            }
+        }
+        return -1;
     }
 
     /**
@@ -202,6 +508,6 @@ public class Course {
     @Override
     public String toString(){
         return id + "|" + name + ", " + startTime + "-" + endTime + " on " + weekDay +
-                ", with course capacity: " + capacity + "students: " + getStudents().size();
+                ", with course capacity: " + capacity + "students: " + getStudentCount();
     }
 }
@@ -0,0 +1,127 @@
+package courses;
+
+/**
+ * WeeklySchedule records which minutes of the week are occupied by a set of courses.
+ * Each day is a bitmap with one bit per minute, so checking a course against the
+ * whole schedule only tests the few words its time range covers.
+ * A bit does not count the courses holding its minute, so the courses of a schedule never overlap:
+ * add refuses a course that conflicts, and removing a course frees exactly its own minutes
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class WeeklySchedule {
+
+    // constants
+    private static final int DAYS_PER_WEEK = 7;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int WORDS_PER_DAY = (MINUTES_PER_DAY + 63) / 64;
+
+    // instance variables
+    // occupied minutes, allocated on the first added course so that empty schedules stay small
+    private long[] bits;
+
+    /**
+     * check whether the course overlaps any course in the schedule
+     * @param course to check
+     * @return true if the course shares a minute with the schedule
+     */
+    public boolean conflictsWith(Course course){
+        if(course == null || bits == null){
+            return false;
+        }
+        int days = course.getWeekDayMask();
+        int start = course.getStartMinute();
+        int end = course.getEndMinute();
+        for(int day = 0; day < DAYS_PER_WEEK; day++){
+            if((days & (1 << day)) != 0 && anySet(day * WORDS_PER_DAY, start, end)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * mark the time of the course as occupied, unless it overlaps a course already in the schedule
+     * @param course to add
+     * @return true if the course was added, false if it is null or conflicts with the schedule
+     */
+    public boolean add(Course course){
+        if(course == null || conflictsWith(course)){
+            return false;
+        }
+        if(bits == null){
+            bits = new long[DAYS_PER_WEEK * WORDS_PER_DAY];
+        }
+        update(course, true);
+        return true;
+    }
+
+    /**
+     * mark the time of the course as free again
+     * @param course to remove, that was added to this schedule
+     */
+    public void remove(Course course){
+        if(course == null || bits == null){
+            return;
+        }
+        update(course, false);
+    }
+
+    /**
+     * set or clear the bits of every day the course is held
+     * @param course to update
+     * @param occupied true to set the bits, false to clear them
+     */
+    private void update(Course course, boolean occupied){
+        int days = course.getWeekDayMask();
+        int start = course.getStartMinute();
+        int end = course.getEndMinute();
+        for(int day = 0; day < DAYS_PER_WEEK; day++){
+            if((days & (1 << day)) == 0){
+                continue;
+            }
+            int base = day * WORDS_PER_DAY;
+            int fromWord = start >>> 6;
+            int toWord = (end - 1) >>> 6;
+            for(int w = fromWord; w <= toWord; w++){
+                long mask = wordMask(w, fromWord, toWord, start, end);
+                if(occupied){
+                    bits[base + w] |= mask;
+                } else {
+                    bits[base + w] &= ~mask;
+                }
+            }
+        }
+    }
+
+    /**
+     * check whether any minute in [start, end) of one day is occupied
+     * @param base index of the first word of the day
+     * @param start minute, inclusive
+     * @param end minute, exclusive
+     * @return true if any bit in the range is set
+     */
+    private boolean anySet(int base, int start, int end){
+        int fromWord = start >>> 6;
+        int toWord = (end - 1) >>> 6;
+        for(int w = fromWord; w <= toWord; w++){
+            if((bits[base + w] & wordMask(w, fromWord, toWord, start, end)) != 0){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * get the bits of word w that fall inside [start, end)
+     */
+    private static long wordMask(int w, int fromWord, int toWord, int start, int end){
+        long mask = -1L;
+        if(w == fromWord){
+            mask &= -1L << (start & 63);
+        }
+        if(w == toWord){
+            mask &= -1L >>> (63 - ((end - 1) & 63));
+        }
+        return mask;
+    }
+}
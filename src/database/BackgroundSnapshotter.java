@@ -0,0 +1,115 @@
+package database;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * write snapshots of the database on a background thread.
+ * Registration is held off only while the entity lists are copied, the file itself is
+ * written while students keep enrolling and dropping. Snapshots run one at a time
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class BackgroundSnapshotter implements Closeable {
+
+    // instance variables
+    private final Database database;
+    private final ExecutorService writer;
+    // metrics of the last completed snapshot
+    private long lastDurationMillis;
+    private long lastCapturePauseMicros;
+    private long lastBytes;
+    // totals over all completed snapshots
+    private long completed;
+    private long totalBytes;
+
+    /**
+     * create a snapshotter for the database
+     * @param database to take snapshots of
+     */
+    public BackgroundSnapshotter(Database database){
+        this.database = database;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * start writing a snapshot of the database as it is now
+     * @param path of the snapshot file
+     * @return the number of bytes written, once the snapshot is complete
+     */
+    public Future<Long> snapshot(String path){
+        return writer.submit(() -> {
+            long start = System.nanoTime();
+            SnapshotView view = database.beginSnapshot();
+            long bytes;
+            try {
+                bytes = Snapshot.write(view, path);
+            } finally {
+                database.endSnapshot(view);
+            }
+            record(view.getCapturePauseNanos(), System.nanoTime() - start, bytes);
+            return bytes;
+        });
+    }
+
+    private synchronized void record(long pauseNanos, long durationNanos, long bytes){
+        lastCapturePauseMicros = pauseNanos / 1000;
+        lastDurationMillis = durationNanos / 1_000_000;
+        lastBytes = bytes;
+        completed++;
+        totalBytes += bytes;
+    }
+
+    /**
+     * get how long the last snapshot took from start to the renamed file
+     * @return the duration in milliseconds
+     */
+    public synchronized long getLastDurationMillis(){
+        return lastDurationMillis;
+    }
+
+    /**
+     * get how long registration was held off by the last snapshot
+     * @return the pause in microseconds
+     */
+    public synchronized long getLastCapturePauseMicros(){
+        return lastCapturePauseMicros;
+    }
+
+    /**
+     * get the size of the last snapshot
+     * @return the number of bytes written
+     */
+    public synchronized long getLastBytes(){
+        return lastBytes;
+    }
+
+    /**
+     * get the number of snapshots written so far
+     * @return the number of completed snapshots
+     */
+    public synchronized long getCompletedCount(){
+        return completed;
+    }
+
+    /**
+     * get the bytes written by all snapshots so far
+     * @return the total number of bytes
+     */
+    public synchronized long getTotalBytes(){
+        return totalBytes;
+    }
+
+    /**
+     * let the running snapshot finish and stop the background thread
+     */
+    @Override
+    public void close(){
+        writer.shutdown();
+    }
+}
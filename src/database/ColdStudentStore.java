@@ -0,0 +1,506 @@
+package database;
+
+import roles.Student;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * off-heap storage for students who are not enrolled in any course.
+ * Each student is serialized once into direct byte buffers outside of the Java heap,
+ * and found again through two small open addressing indexes, by ID and by username,
+ * which hold only a hash and an offset per student. Records are never changed after they
+ * are written, a removed student only disappears from the indexes. Once most of the stored bytes
+ * belong to removed students, the live records are copied into new buffers and the old ones are dropped.
+ * A student read back is a new object whose grades live in its own map
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+class ColdStudentStore {
+
+    // constants
+    private static final int CHUNK_SIZE = 16 * 1024 * 1024;
+    // removed bytes that make a compaction worth it
+    private static final long COMPACT_BYTES = 1024 * 1024;
+
+    // instance variables
+    // buffers of the records, replaced as a whole by compact
+    private List<ByteBuffer> chunks = new ArrayList<>();
+    // offset of the next record, over all chunks
+    private long end;
+    private OffsetIndex byId = new OffsetIndex();
+    private OffsetIndex byUsername = new OffsetIndex();
+    // bytes of the removed records
+    private long deadBytes;
+    // number of stored students, read without the lock
+    private volatile int count;
+
+    /**
+     * write a student to the store
+     * @param student to write
+     * @param courses enrolled courses of the student
+     * @param grades grades of the student
+     */
+    synchronized void put(Student student, List<String> courses, Map<String, String> grades){
+        List<byte[]> fields = new ArrayList<>();
+        fields.add(bytes(student.getId()));
+        fields.add(bytes(student.getName()));
+        fields.add(bytes(student.getUsername()));
+        fields.add(bytes(student.getPassword()));
+        int size = 4 + 4 + 4;
+        for(byte[] field : fields){
+            size += 4 + field.length;
+        }
+        List<byte[]> lists = new ArrayList<>();
+        for(String course : courses){
+            lists.add(bytes(course));
+        }
+        for(Map.Entry<String, String> grade : grades.entrySet()){
+            lists.add(bytes(grade.getKey()));
+            lists.add(bytes(grade.getValue()));
+        }
+        for(byte[] field : lists){
+            size += 4 + field.length;
+        }
+        if(size > CHUNK_SIZE){
+            throw new IllegalArgumentException("Student record too large: " + student.getId());
+        }
+        // records never span two chunks
+        if(end == (long) chunks.size() * CHUNK_SIZE || (end % CHUNK_SIZE) + size > CHUNK_SIZE){
+            end = (long) chunks.size() * CHUNK_SIZE;
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_SIZE));
+        }
+        long offset = end;
+        ByteBuffer chunk = chunks.get((int) (offset / CHUNK_SIZE));
+        int position = (int) (offset % CHUNK_SIZE);
+        chunk.putInt(position, size);
+        position += 4;
+        for(byte[] field : fields){
+            position = putBytes(chunk, position, field);
+        }
+        chunk.putInt(position, courses.size());
+        position += 4;
+        chunk.putInt(position, grades.size());
+        position += 4;
+        for(byte[] field : lists){
+            position = putBytes(chunk, position, field);
+        }
+        end = offset + size;
+        byId.put(student.getId().hashCode(), offset);
+        byUsername.put(student.getUsername().hashCode(), offset);
+        count = byId.size;
+    }
+
+    /**
+     * check whether a student with the ID is in the store
+     * @param id of the student
+     * @return true if the student is stored
+     */
+    synchronized boolean containsId(String id){
+        return findById(id) >= 0;
+    }
+
+    /**
+     * check whether a student with the username is in the store
+     * @param username of the student
+     * @return true if the student is stored
+     */
+    synchronized boolean containsUsername(String username){
+        return findByUsername(username) >= 0;
+    }
+
+    /**
+     * read a student back from the store
+     * @param id of the student
+     * @return a new student object, or null if the student is not stored
+     */
+    synchronized Student getById(String id){
+        long offset = findById(id);
+        return offset < 0 ? null : read(offset);
+    }
+
+    /**
+     * read a student back from the store
+     * @param username of the student
+     * @return a new student object, or null if the student is not stored
+     */
+    synchronized Student getByUsername(String username){
+        long offset = findByUsername(username);
+        return offset < 0 ? null : read(offset);
+    }
+
+    /**
+     * remove a student from the store, e.g. once the student is active again
+     * @param id of the student
+     * @return true if the student was stored
+     */
+    synchronized boolean remove(String id){
+        long offset = findById(id);
+        if(offset < 0){
+            return false;
+        }
+        String username = field(offset, 2);
+        byId.remove(id.hashCode(), offset);
+        byUsername.remove(username.hashCode(), offset);
+        deadBytes += chunk(offset).getInt(position(offset));
+        count = byId.size;
+        if(count == 0 || (deadBytes >= COMPACT_BYTES && deadBytes > end / 2)){
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * get the records of all stored students, e.g. for a snapshot.
+     * The records stay readable even if the students are removed or the store is compacted later
+     * @return the stored students at this moment
+     */
+    synchronized Records records(){
+        return new Records(new ArrayList<>(chunks), byId.offsets());
+    }
+
+    /**
+     * read every stored student, one at a time
+     * @param action to run on each student
+     */
+    void forEach(Consumer<Student> action){
+        Records records = records();
+        for(int i = 0; i < records.size(); i++){
+            action.accept(records.read(i));
+        }
+    }
+
+    /**
+     * get the number of stored students
+     * @return the number of students
+     */
+    int size(){
+        return count;
+    }
+
+    /**
+     * get the memory taken outside of the heap
+     * @return the size of the allocated buffers in bytes
+     */
+    synchronized long getOffHeapBytes(){
+        return (long) chunks.size() * CHUNK_SIZE;
+    }
+
+    /**
+     * get the bytes taken by the records of removed students
+     * @return the number of unused bytes
+     */
+    synchronized long getDeadBytes(){
+        return deadBytes;
+    }
+
+    /**
+     * copy the records of the stored students next to each other into new buffers.
+     * The old buffers are freed once no Records refers to them any more
+     */
+    private void compact(){
+        List<ByteBuffer> compacted = new ArrayList<>();
+        OffsetIndex ids = new OffsetIndex();
+        OffsetIndex usernames = new OffsetIndex();
+        long next = 0;
+        for(long offset : byId.offsets()){
+            int size = chunk(offset).getInt(position(offset));
+            if(next == (long) compacted.size() * CHUNK_SIZE || (next % CHUNK_SIZE) + size > CHUNK_SIZE){
+                next = (long) compacted.size() * CHUNK_SIZE;
+                compacted.add(ByteBuffer.allocateDirect(CHUNK_SIZE));
+            }
+            ByteBuffer source = chunk(offset).duplicate();
+            source.position(position(offset));
+            source.limit(position(offset) + size);
+            ByteBuffer target = compacted.get((int) (next / CHUNK_SIZE)).duplicate();
+            target.position(position(next));
+            target.put(source);
+            ids.put(field(offset, 0).hashCode(), next);
+            usernames.put(field(offset, 2).hashCode(), next);
+            next += size;
+        }
+        chunks = compacted;
+        byId = ids;
+        byUsername = usernames;
+        end = next;
+        deadBytes = 0;
+    }
+
+    /**
+     * read the student at an offset
+     * @param offset of the record
+     * @return a new student object
+     */
+    synchronized Student read(long offset){
+        return read(chunks, offset);
+    }
+
+    /**
+     * read the student at an offset of the given buffers
+     */
+    private static Student read(List<ByteBuffer> chunks, long offset){
+        ByteBuffer chunk = chunks.get((int) (offset / CHUNK_SIZE));
+        int position = position(offset) + 4;
+        String[] fields = new String[4];
+        for(int i = 0; i < fields.length; i++){
+            int length = chunk.getInt(position);
+            fields[i] = string(chunk, position + 4, length);
+            position += 4 + length;
+        }
+        int courseCount = chunk.getInt(position);
+        int gradeCount = chunk.getInt(position + 4);
+        position += 8;
+        List<String> courses = new ArrayList<>(courseCount);
+        for(int i = 0; i < courseCount; i++){
+            int length = chunk.getInt(position);
+            courses.add(string(chunk, position + 4, length));
+            position += 4 + length;
+        }
+        Map<String, String> grades = new HashMap<>(gradeCount * 2);
+        for(int i = 0; i < gradeCount; i++){
+            int keyLength = chunk.getInt(position);
+            String course = string(chunk, position + 4, keyLength);
+            position += 4 + keyLength;
+            int valueLength = chunk.getInt(position);
+            grades.put(course, string(chunk, position + 4, valueLength));
+            position += 4 + valueLength;
+        }
+        Student student = new Student(fields[0], fields[1], fields[2], fields[3], grades);
+        for(String course : courses){
+            student.getCoursesList().add(course);
+        }
+        return student;
+    }
+
+    private long findById(String id){
+        return find(byId, id, 0);
+    }
+
+    private long findByUsername(String username){
+        return find(byUsername, username, 2);
+    }
+
+    /**
+     * find the record whose field equals the key, among the records with the same hash
+     */
+    private long find(OffsetIndex index, String key, int fieldIndex){
+        int hash = key.hashCode();
+        OffsetIndex.Probe probe = index.probe(hash);
+        byte[] wanted = null;
+        for(long offset = probe.next(); offset >= 0; offset = probe.next()){
+            if(wanted == null){
+                wanted = bytes(key);
+            }
+            if(fieldEquals(offset, fieldIndex, wanted)){
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private boolean fieldEquals(long offset, int fieldIndex, byte[] wanted){
+        ByteBuffer chunk = chunk(offset);
+        int position = position(offset) + 4;
+        for(int i = 0; i < fieldIndex; i++){
+            position += 4 + chunk.getInt(position);
+        }
+        if(chunk.getInt(position) != wanted.length){
+            return false;
+        }
+        position += 4;
+        for(int i = 0; i < wanted.length; i++){
+            if(chunk.get(position + i) != wanted[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String field(long offset, int fieldIndex){
+        ByteBuffer chunk = chunk(offset);
+        int position = position(offset) + 4;
+        for(int i = 0; i < fieldIndex; i++){
+            position += 4 + chunk.getInt(position);
+        }
+        return string(chunk, position + 4, chunk.getInt(position));
+    }
+
+    private ByteBuffer chunk(long offset){
+        return chunks.get((int) (offset / CHUNK_SIZE));
+    }
+
+    private static int position(long offset){
+        return (int) (offset % CHUNK_SIZE);
+    }
+
+    private static int putBytes(ByteBuffer chunk, int position, byte[] bytes){
+        chunk.putInt(position, bytes.length);
+        for(int i = 0; i < bytes.length; i++){
+            chunk.put(position + 4 + i, bytes[i]);
+        }
+        return position + 4 + bytes.length;
+    }
+
+    private static String string(ByteBuffer chunk, int position, int length){
+        byte[] bytes = new byte[length];
+        for(int i = 0; i < length; i++){
+            bytes[i] = chunk.get(position + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String value){
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * the stored students at one moment, readable while the store goes on changing
+     */
+    static class Records {
+
+        private final List<ByteBuffer> chunks;
+        private final long[] offsets;
+
+        Records(List<ByteBuffer> chunks, long[] offsets){
+            this.chunks = chunks;
+            this.offsets = offsets;
+        }
+
+        /**
+         * get the number of students
+         * @return the number of records
+         */
+        int size(){
+            return offsets.length;
+        }
+
+        /**
+         * read a student
+         * @param index of the student, below size
+         * @return a new student object
+         */
+        Student read(int index){
+            return ColdStudentStore.read(chunks, offsets[index]);
+        }
+    }
+
+    /**
+     * open addressing table from a hash to record offsets, several records may share a hash
+     */
+    private static class OffsetIndex {
+
+        private int[] hashes = new int[1024];
+        // offset + 1, 0 marks an empty slot
+        private long[] offsets = new long[1024];
+        private int size;
+
+        void put(int hash, long offset){
+            if((size + 1) * 2 > offsets.length){
+                resize();
+            }
+            int mask = offsets.length - 1;
+            int i = spread(hash) & mask;
+            while(offsets[i] != 0){
+                i = (i + 1) & mask;
+            }
+            hashes[i] = hash;
+            offsets[i] = offset + 1;
+            size++;
+        }
+
+        void remove(int hash, long offset){
+            int mask = offsets.length - 1;
+            int i = spread(hash) & mask;
+            while(offsets[i] != 0 && offsets[i] != offset + 1){
+                i = (i + 1) & mask;
+            }
+            if(offsets[i] == 0){
+                return;
+            }
+            // move the later entries of the probe sequence back into the gap
+            int gap = i;
+            i = (i + 1) & mask;
+            while(offsets[i] != 0){
+                int home = spread(hashes[i]) & mask;
+                if(((i - home) & mask) >= ((i - gap) & mask)){
+                    hashes[gap] = hashes[i];
+                    offsets[gap] = offsets[i];
+                    gap = i;
+                }
+                i = (i + 1) & mask;
+            }
+            offsets[gap] = 0;
+            size--;
+        }
+
+        /**
+         * iterate over the offsets stored under a hash
+         */
+        Probe probe(int hash){
+            return new Probe(hash);
+        }
+
+        long[] offsets(){
+            long[] result = new long[size];
+            int next = 0;
+            for(long offset : offsets){
+                if(offset != 0){
+                    result[next++] = offset - 1;
+                }
+            }
+            return result;
+        }
+
+        private void resize(){
+            int[] oldHashes = hashes;
+            long[] oldOffsets = offsets;
+            hashes = new int[oldHashes.length * 2];
+            offsets = new long[oldOffsets.length * 2];
+            int mask = offsets.length - 1;
+            for(int j = 0; j < oldOffsets.length; j++){
+                if(oldOffsets[j] != 0){
+                    int i = spread(oldHashes[j]) & mask;
+                    while(offsets[i] != 0){
+                        i = (i + 1) & mask;
+                    }
+                    hashes[i] = oldHashes[j];
+                    offsets[i] = oldOffsets[j];
+                }
+            }
+        }
+
+        private static int spread(int hash){
+            return (hash ^ (hash >>> 16)) * 0x9E3779B1;
+        }
+
+        class Probe {
+            private final int hash;
+            private int i;
+
+            Probe(int hash){
+                this.hash = hash;
+                this.i = spread(hash) & (offsets.length - 1);
+            }
+
+            /**
+             * get the next offset with the hash
+             * @return the offset, or -1 when there are no more
+             */
+            long next(){
+                int mask = offsets.length - 1;
+                while(offsets[i] != 0){
+                    int current = i;
+                    i = (i + 1) & mask;
+                    if(hashes[current] == hash){
+                        return offsets[current] - 1;
+                    }
+                }
+                return -1;
+            }
+        }
+    }
+}
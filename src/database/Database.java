@@ -6,7 +6,16 @@ import roles.Professor;
 import roles.Student;
 import roles.User;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 /**
  * Store data for the management system.
@@ -16,6 +25,10 @@ import java.util.*;
  */
 public class Database {
 	
+    // constants
+    // number of cold students kept on the heap after being read back
+    private static final int COLD_CACHE_SIZE = 1024;
+
 	// instance variables
 	
 	/**
@@ -34,16 +47,86 @@ public class Database {
     private Map<String, String> adminUsernameToId;
     // map for record each professor's course list
     private Map<String, List<Course>> professorCourseList;
+    // map for find the IDs of all sections sharing a course name
+    private Map<String, List<String>> courseNameToIds;
+    // map for find professors by their display name, several professors may share a name
+    private Map<String, List<Professor>> professorNameIndex;
+    // grades of all students, stored by column
+    private final GradeStore gradeStore = new GradeStore();
+    // shared copies of the values that repeat across courses and students
+    private final StringPool stringPool = new StringPool();
+    // students moved out of the heap, see moveInactiveStudentsToColdStorage
+    private final ColdStudentStore coldStudents = new ColdStudentStore();
+    // cold students read back recently, kept on the heap so they need not be read again
+    private final Map<String, Student> coldCache = new LinkedHashMap<String, Student>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Student> eldest){
+            return size() > COLD_CACHE_SIZE;
+        }
+    };
+    // every cold student object still in use, e.g. by a session, so a lookup never makes a second object
+    // for the same student. Guarded by the lock of coldCache
+    private final Map<String, ColdReference> coldObjects = new HashMap<>();
+    private final ReferenceQueue<Student> collectedColdObjects = new ReferenceQueue<>();
+
+    // write locks, one stripe per entity type, so that writers of different types never wait for each other
+    private final Object courseLock = new Object();
+    private final Object studentLock = new Object();
+    private final Object professorLock = new Object();
+    private final Object adminLock = new Object();
 
     /**
      * private constructor: makes sure only one database exists throughout the system
      */
-    private static Database instance = null;
+    private static volatile Database instance = null;
+
+    // whether the next created instance is backed by concurrent maps
+    private static boolean concurrentMode = false;
+
+    // whether the next created instance keys users by primitive IDs
+    private static boolean primitiveIdMode = false;
+
+    // true if this instance was created in concurrent mode
+    private final boolean concurrent;
+
+    // log of the changes made after loading, null if changes are not logged
+    private volatile MutationLog mutationLog;
+
+    // changes hold the read side, taking a snapshot view holds the write side for the time it copies the entity lists
+    private final ReentrantReadWriteLock snapshotGate = new ReentrantReadWriteLock();
+    // view of the snapshot being written, null if no snapshot is running
+    private volatile SnapshotView activeSnapshot;
 
     /**
      * prevents other methods create new instances of database
+     * @param concurrent true to back the database with concurrent maps
      */
-    private Database(){
+    private Database(boolean concurrent){
+        this.concurrent = concurrent;
+        if(concurrent){
+            // courses are kept ordered by ID, since a concurrent map cannot keep insertion order
+            courseMap = new ConcurrentSkipListMap<>();
+            studentMap = new ConcurrentHashMap<>();
+            adminMap = new ConcurrentHashMap<>();
+            professorMap = new ConcurrentHashMap<>();
+            studentUsernameToId = new ConcurrentHashMap<>();
+            professorUsernameToId = new ConcurrentHashMap<>();
+            adminUsernameToId = new ConcurrentHashMap<>();
+            professorCourseList = new ConcurrentHashMap<>();
+            professorNameIndex = new ConcurrentHashMap<>();
+            courseNameToIds = new ConcurrentHashMap<>();
+        } else {
+            courseMap = new LinkedHashMap<>();
+            studentMap = primitiveIdMode ? new IdMap<>() : new HashMap<>();
+            adminMap = primitiveIdMode ? new IdMap<>() : new HashMap<>();
+            professorMap = primitiveIdMode ? new IdMap<>() : new HashMap<>();
+            studentUsernameToId = new HashMap<>();
+            professorUsernameToId = new HashMap<>();
+            adminUsernameToId = new HashMap<>();
+            professorCourseList = new HashMap<>();
+            professorNameIndex = new HashMap<>();
+            courseNameToIds = new HashMap<>();
+        }
     }
 
     /**
@@ -51,23 +134,375 @@ public class Database {
      * @return instance of database
      */
     public static Database getInstance(){
-    	// if no instance exists, create one and initialize maps
-        if(instance == null){
-            instance = new Database();
-            instance.courseMap = new LinkedHashMap<>();
-            instance.studentMap = new HashMap<>();
-            instance.adminMap = new HashMap<>();
-            instance.professorMap = new HashMap<>();
-            instance.studentUsernameToId = new HashMap<>();
-            instance.professorUsernameToId = new HashMap<>();
-            instance.adminUsernameToId = new HashMap<>();
-            instance.professorCourseList = new HashMap<>();
+        Database result = instance;
+        if(result != null){
+            return result;
+        }
+        // if no instance exists, create one under the class lock so that only one thread creates it
+        synchronized (Database.class){
+            if(instance == null){
+                instance = new Database(concurrentMode);
+            }
+            return instance;
         }
-        return instance;
     }
 
     public static void reset(){
-        instance = null;
+        synchronized (Database.class){
+            instance = null;
+        }
+    }
+
+    /**
+     * choose whether the database is backed by concurrent maps.
+     * In concurrent mode reads never block and writes are locked per entity type,
+     * so many sessions can register at the same time.
+     * The mode takes effect the next time an instance is created, e.g. after reset()
+     * @param concurrent true to enable concurrent mode
+     */
+    public static void setConcurrentMode(boolean concurrent){
+        synchronized (Database.class){
+            concurrentMode = concurrent;
+        }
+    }
+
+    /**
+     * choose whether users are kept in maps keyed by primitive IDs, see IdMap.
+     * Numeric IDs such as "001" are looked up without string hashing.
+     * Only used outside of concurrent mode, and takes effect the next time an instance is created
+     * @param primitiveIds true to key users by primitive IDs
+     */
+    public static void setPrimitiveIdMode(boolean primitiveIds){
+        synchronized (Database.class){
+            primitiveIdMode = primitiveIds;
+        }
+    }
+
+    /**
+     * check whether this database is backed by concurrent maps
+     * @return true if this instance runs in concurrent mode
+     */
+    public boolean isConcurrent(){
+        return concurrent;
+    }
+
+    /**
+     * attach a log that records every later change made by admins and students
+     * @param mutationLog to append changes to, null to stop logging
+     */
+    public void setMutationLog(MutationLog mutationLog){
+        this.mutationLog = mutationLog;
+    }
+
+    /**
+     * get the attached mutation log
+     * @return the log, or null if changes are not logged
+     */
+    public MutationLog getMutationLog(){
+        return mutationLog;
+    }
+
+    /**
+     * append a change to the mutation log, if one is attached
+     * @param type of the change, see MutationLog
+     * @param fields of the change
+     */
+    public void logMutation(String type, String... fields){
+        MutationLog log = mutationLog;
+        if(log != null){
+            log.append(type, fields);
+        }
+    }
+
+    /**
+     * get the pool of shared strings, used while loading so that repeated values are kept once
+     * @return the string pool
+     */
+    public StringPool getStringPool(){
+        return stringPool;
+    }
+
+    /**
+     * get the store holding the grades of all students
+     * @return the grade store
+     */
+    public GradeStore getGradeStore(){
+        return gradeStore;
+    }
+
+    /**
+     * get the lock every change to the database holds while it runs.
+     * Changes share the lock with each other, only taking a snapshot view excludes them
+     * @return the lock to hold while changing courses, users, enrollments or grades
+     */
+    public Lock getMutationGate(){
+        return snapshotGate.readLock();
+    }
+
+    /**
+     * keep the enrollments and grades of the student for the running snapshot, if any.
+     * Must be called while holding the lock of the student, before changing it
+     * @param student that is about to change
+     */
+    public void preserve(Student student){
+        // a student read back from cold storage is about to change, so it becomes a regular student again
+        if(student.getGradeSlot() < 0){
+            promote(student);
+        }
+        SnapshotView view = activeSnapshot;
+        if(view != null){
+            view.imageOf(student);
+        }
+    }
+
+    /**
+     * move students who are not enrolled in any course out of the heap.
+     * They are serialized into off-heap buffers and read back on demand by getStudentById
+     * and getStudentByUsername, behind a small cache. A student read back goes back to the heap
+     * as soon as it enrolls, drops or gets a grade.
+     * Changes are held off while the students are moved
+     * @return the number of students moved, 0 if a snapshot is running
+     */
+    public int moveInactiveStudentsToColdStorage(){
+        Lock exclusive = snapshotGate.writeLock();
+        exclusive.lock();
+        try {
+            // the snapshot still reads the grades of the students it has listed
+            if(activeSnapshot != null){
+                System.out.println("Cannot move students while a snapshot is running");
+                return 0;
+            }
+            // students waiting for a seat are still active
+            Set<Student> waiting = Collections.newSetFromMap(new IdentityHashMap<>());
+            for(Course course : courseMap.values()){
+                waiting.addAll(course.getWaitlist());
+            }
+            List<Student> inactive = new ArrayList<>();
+            for(Student student : studentMap.values()){
+                if(student.getCoursesList().isEmpty() && student.getGradeSlot() >= 0 && !waiting.contains(student)){
+                    inactive.add(student);
+                }
+            }
+            // the moved students may still be used, e.g. by a session: they stay the object that lookups return
+            synchronized (studentLock){
+                synchronized (coldCache){
+                    for(Student student : inactive){
+                        coldStudents.put(student, student.getCoursesList(), student.getGrades());
+                        studentMap.remove(student.getId());
+                        studentUsernameToId.remove(student.getUsername(), student.getId());
+                        registerColdObject(student);
+                    }
+                }
+            }
+            // and keep their grades in a map of their own, so their slots can be reused safely
+            for(Student student : inactive){
+                gradeStore.release(student.detachGrades());
+            }
+            return inactive.size();
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    /**
+     * put a student read back from cold storage back into the student map, with its grades back in the grade store.
+     * Nothing happens for a student object that is not the one of cold storage, e.g. of a deleted student
+     */
+    private void promote(Student student){
+        synchronized (studentLock){
+            synchronized (coldCache){
+                ColdReference reference = coldObjects.get(student.getId());
+                if(reference == null || reference.get() != student || !coldStudents.remove(student.getId())){
+                    return;
+                }
+                coldObjects.remove(student.getId());
+                coldCache.remove(student.getId(), student);
+            }
+            student.attachGrades(gradeStore);
+            studentMap.put(student.getId(), student);
+            studentUsernameToId.put(student.getUsername(), student.getId());
+        }
+    }
+
+    /**
+     * remember the object of a cold student, the caller holds the lock of coldCache
+     */
+    private void registerColdObject(Student student){
+        // forget the objects no longer used
+        for(Reference<? extends Student> collected = collectedColdObjects.poll(); collected != null;
+            collected = collectedColdObjects.poll()){
+            coldObjects.remove(((ColdReference) collected).id, collected);
+        }
+        coldObjects.put(student.getId(), new ColdReference(student, collectedColdObjects));
+    }
+
+    /**
+     * read a student back from cold storage, through the cache
+     * @param id of the student, or null to look up by username
+     * @param username of the student, used if id is null
+     * @return the student, or null if it is not in cold storage
+     */
+    private Student getColdStudent(String id, String username){
+        synchronized (coldCache){
+            Student student = id == null ? null : coldCache.get(id);
+            if(student != null){
+                return student;
+            }
+            student = id != null ? coldStudents.getById(id) : coldStudents.getByUsername(username);
+            if(student == null){
+                return null;
+            }
+            // an object of the student still in use wins over the one just read
+            ColdReference reference = coldObjects.get(student.getId());
+            Student used = reference == null ? null : reference.get();
+            if(used != null){
+                student = used;
+            } else {
+                registerColdObject(student);
+            }
+            coldCache.put(student.getId(), student);
+            return student;
+        }
+    }
+
+    /**
+     * get the number of students, including those in cold storage
+     * @return the number of students
+     */
+    public int getStudentCount(){
+        return studentMap.size() + coldStudents.size();
+    }
+
+    /**
+     * get the number of students in cold storage
+     * @return the number of cold students
+     */
+    public int getColdStudentCount(){
+        return coldStudents.size();
+    }
+
+    /**
+     * get the memory taken by cold storage outside of the heap
+     * @return the size of the off-heap buffers in bytes
+     */
+    public long getColdStorageBytes(){
+        return coldStudents.getOffHeapBytes();
+    }
+
+    /**
+     * run an action on every student, the students in cold storage are read back one at a time
+     * and are not cached. The students are listed while no change runs, so the caller must not hold the mutation gate
+     * @param action to run on each student
+     */
+    public void forEachStudent(Consumer<Student> action){
+        List<Student> students;
+        ColdStudentStore.Records cold;
+        Lock exclusive = snapshotGate.writeLock();
+        exclusive.lock();
+        try {
+            students = new ArrayList<>(studentMap.values());
+            cold = coldStudents.records();
+        } finally {
+            exclusive.unlock();
+        }
+        for(Student student : students){
+            action.accept(student);
+        }
+        for(int i = 0; i < cold.size(); i++){
+            action.accept(cold.read(i));
+        }
+    }
+
+    /**
+     * copy the admins while no change runs, e.g. to export them
+     * @return the admins
+     */
+    public List<Admin> copyAdmins(){
+        return copyValues(adminMap);
+    }
+
+    /**
+     * copy the professors while no change runs, e.g. to export them
+     * @return the professors
+     */
+    public List<Professor> copyProfessors(){
+        return copyValues(professorMap);
+    }
+
+    /**
+     * copy the courses while no change runs, e.g. to export them
+     * @return the courses
+     */
+    public List<Course> copyCourses(){
+        return copyValues(courseMap);
+    }
+
+    /**
+     * copy the values of a map while no change runs.
+     * The maps are not safe to iterate while they change, unless the database runs in concurrent mode
+     */
+    private <T> List<T> copyValues(Map<String, T> map){
+        Lock exclusive = snapshotGate.writeLock();
+        exclusive.lock();
+        try {
+            return new ArrayList<>(map.values());
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    /**
+     * get the store of the students in cold storage
+     * @return the cold store
+     */
+    ColdStudentStore getColdStudents(){
+        return coldStudents;
+    }
+
+    /**
+     * keep the roster of the course for the running snapshot, if any.
+     * Must be called before adding or removing a student
+     * @param course that is about to change
+     */
+    public void preserve(Course course){
+        SnapshotView view = activeSnapshot;
+        if(view != null){
+            view.rosterOf(course);
+        }
+    }
+
+    /**
+     * take a point-in-time view of the database for a snapshot.
+     * Changes are held off only while the entity lists are copied
+     * @return the view, to be released with endSnapshot
+     */
+    SnapshotView beginSnapshot(){
+        Lock exclusive = snapshotGate.writeLock();
+        long start = System.nanoTime();
+        exclusive.lock();
+        try {
+            if(activeSnapshot != null){
+                throw new IllegalStateException("A snapshot is already running");
+            }
+            SnapshotView view = new SnapshotView(this);
+            // the log is marked at the same point, so replaying it on top of the snapshot skips what it holds
+            view.markLog(mutationLog);
+            activeSnapshot = view;
+            view.setCapturePauseNanos(System.nanoTime() - start);
+            return view;
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    /**
+     * release the view once the snapshot is written
+     * @param view returned by beginSnapshot
+     */
+    void endSnapshot(SnapshotView view){
+        if(activeSnapshot == view){
+            activeSnapshot = null;
+        }
     }
 
     /**
@@ -81,26 +516,45 @@ public class Database {
             return false;
         }
 
-        // if the course is conflicted with another course, return false
-        if(courseMap.containsKey(course.getId())){
-            return false;
-        }
         // get professor of new course
         Professor courseProfessor = course.getProfessor();
         if(courseProfessor == null){
             System.out.println("Professor is null");
             return false;
         }
-        //String professorId = courseProfessor.getId();
-        // get course list from professor
-        List<Course> courseList = professorCourseList.getOrDefault(courseProfessor.getId(), new ArrayList<>());
 
-        courseMap.put(course.getId(), course);
-        courseList.add(course);
-        professorCourseList.put(courseProfessor.getId(), courseList);
+        Lock gate = getMutationGate();
+        gate.lock();
+        try {
+            synchronized (courseLock){
+                // if the course is conflicted with another course, return false
+                if(courseMap.containsKey(course.getId())){
+                    return false;
+                }
+                // get course list from professor
+                List<Course> courseList = professorCourseList.computeIfAbsent(courseProfessor.getId(), k -> newList());
+
+                courseMap.put(course.getId(), course);
+                courseList.add(course);
+                courseNameToIds.computeIfAbsent(course.getName(), k -> newList()).add(course.getId());
+            }
+        } finally {
+            gate.unlock();
+        }
         return true;
     }
 
+    /**
+     * create an empty list for an index entry
+     * @return a list that is safe to read while other threads write it in concurrent mode
+     */
+    private <T> List<T> newList(){
+        if(concurrent){
+            return new CopyOnWriteArrayList<>();
+        }
+        return new ArrayList<>();
+    }
+
     /**
      * get the professor course list from the professor ID
      * @param professorId of the professor
@@ -124,7 +578,95 @@ public class Database {
             return false;
         }
         // remove course from database
-        return courseMap.remove(courseId) != null;
+        Lock gate = getMutationGate();
+        gate.lock();
+        try {
+            Course course;
+            synchronized (courseLock){
+                course = courseMap.remove(courseId);
+                if(course == null){
+                    return false;
+                }
+                // keep the name index in sync with the course map
+                List<String> sameName = courseNameToIds.get(course.getName());
+                if(sameName != null){
+                    sameName.remove(courseId);
+                    if(sameName.isEmpty()){
+                        courseNameToIds.remove(course.getName());
+                    }
+                }
+            }
+            // the enrolled students no longer take the course
+            for(Student student : course.copyStudents()){
+                student.leaveDeletedCourse(course);
+            }
+            return true;
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /**
+     * replace a course with a new version of it, keeping its roster and waitlist.
+     * Registration is held off while the course is swapped, so no student enrolls in the old version meanwhile
+     * @param course the new version, with the same ID as the course it replaces
+     * @return the replaced course, or null if no course has that ID
+     */
+    public Course replaceCourse(Course course){
+        if(course == null || course.getProfessor() == null){
+            return null;
+        }
+        Lock exclusive = snapshotGate.writeLock();
+        exclusive.lock();
+        try {
+            Course previous;
+            synchronized (courseLock){
+                previous = courseMap.get(course.getId());
+                if(previous == null){
+                    return null;
+                }
+                courseMap.put(course.getId(), course);
+                List<Course> previousList = professorCourseList.get(previous.getProfessor().getId());
+                if(previousList != null){
+                    previousList.remove(previous);
+                }
+                professorCourseList.computeIfAbsent(course.getProfessor().getId(), k -> newList()).add(course);
+                if(!previous.getName().equals(course.getName())){
+                    List<String> sameName = courseNameToIds.get(previous.getName());
+                    if(sameName != null){
+                        sameName.remove(course.getId());
+                        if(sameName.isEmpty()){
+                            courseNameToIds.remove(previous.getName());
+                        }
+                    }
+                    courseNameToIds.computeIfAbsent(course.getName(), k -> newList()).add(course.getId());
+                }
+            }
+            course.takeOver(previous);
+            // the enrolled students follow the course to its new time
+            for(Student student : course.copyStudents()){
+                student.replaceEnrolledCourse(previous, course);
+            }
+            return previous;
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    /**
+     * get the IDs of all sections with the given course name
+     * @param name of the course
+     * @return a copy of the list of course IDs, empty if no course has that name
+     */
+    public List<String> getCourseIdsByName(String name){
+        if(name == null || name.isEmpty()){
+            return new ArrayList<>();
+        }
+        List<String> ids = courseNameToIds.get(name);
+        if(ids == null){
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(ids);
     }
 
     /**
@@ -176,46 +718,95 @@ public class Database {
         if(user == null){
             return false;
         }
-        if(user instanceof Student) {
-            if (studentMap.containsKey(user.getId())) {
-                System.out.printf("Add new %s failed: duplicated ID\n", user);
-                return false;
+        Lock gate = getMutationGate();
+        gate.lock();
+        try {
+            if(user instanceof Student) {
+                synchronized (studentLock){
+                    if (studentMap.containsKey(user.getId()) || coldStudents.containsId(user.getId())) {
+                        System.out.printf("Add new %s failed: duplicated ID\n", user);
+                        releaseGrades((Student) user);
+                        return false;
+                    }
+                    if(studentUsernameToId.containsKey(user.getUsername()) || coldStudents.containsUsername(user.getUsername())){
+                        System.out.printf("Add new %s failed: duplicated Username\n", user);
+                        releaseGrades((Student) user);
+                        return false;
+                    }
+                    studentMap.put(user.getId(), (Student) user);
+                    studentUsernameToId.put(user.getUsername(), user.getId());
+                }
             }
-            if(studentUsernameToId.containsKey(user.getUsername())){
-                System.out.printf("Add new %s failed: duplicated Username\n", user);
-                return false;
+            else if(user instanceof Professor){
+                synchronized (professorLock){
+                    if (professorMap.containsKey(user.getId())) {
+                        System.out.printf("Add new %s failed: duplicated ID\n", user);
+                        return false;
+                    }
+                    if(professorUsernameToId.containsKey(user.getUsername())){
+                        System.out.printf("Add new %s failed: duplicated Username\n", user);
+                        return false;
+                    }
+                    professorMap.put(user.getId(), (Professor) user);
+                    professorUsernameToId.put(user.getUsername(), user.getId());
+                    professorNameIndex.computeIfAbsent(user.getName(), k -> newList()).add((Professor) user);
+                }
             }
-            studentMap.put(user.getId(), (Student) user);
-            studentUsernameToId.put(user.getUsername(), user.getId());
-        }
-        else if(user instanceof Professor){
-            if (professorMap.containsKey(user.getId())) {
-                System.out.printf("Add new %s failed: duplicated ID\n", user);
-                return false;
+            else if(user instanceof Admin){
+                synchronized (adminLock){
+                    if (adminMap.containsKey(user.getId())) {
+                        System.out.printf("Add new %s failed: duplicated ID\n", user);
+                        return false;
+                    }
+                    if(adminUsernameToId.containsKey(user.getUsername())){
+                        System.out.printf("Add new %s failed: duplicated Username\n", user);
+                        return false;
+                    }
+                    adminMap.put(user.getId(), (Admin) user);
+                    adminUsernameToId.put(user.getUsername(), user.getId());
+                }
             }
-            if(professorUsernameToId.containsKey(user.getUsername())){
-                System.out.printf("Add new %s failed: duplicated Username\n", user);
-                return false;
-            }
-            professorMap.put(user.getId(), (Professor) user);
-            professorUsernameToId.put(user.getUsername(), user.getId());
-        }
-        else if(user instanceof Admin){
-            if (adminMap.containsKey(user.getId())) {
-                System.out.printf("Add new %s failed: duplicated ID\n", user);
-                return false;
-            }
-            if(adminUsernameToId.containsKey(user.getUsername())){
-                System.out.printf("Add new %s failed: duplicated Username\n", user);
-                return false;
-            }
-            adminMap.put(user.getId(), (Admin) user);
-            adminUsernameToId.put(user.getUsername(), user.getId());
+        } finally {
+            gate.unlock();
         }
         return true;
     }
 
 
+    /**
+     * add a batch of students, taking the gate and the student lock once for the whole batch.
+     * Students whose ID or username is already taken, also by an earlier student of the batch, are skipped
+     * and their grade slots are released
+     * @param students to add, in order
+     * @return the reason each student was skipped, or null for the added ones, in the order of the batch
+     */
+    public List<String> addStudents(List<Student> students){
+        List<String> reasons = new ArrayList<>(students.size());
+        Lock gate = getMutationGate();
+        gate.lock();
+        try {
+            synchronized (studentLock){
+                for(Student student : students){
+                    if(studentMap.containsKey(student.getId()) || coldStudents.containsId(student.getId())){
+                        reasons.add("duplicated ID " + student.getId());
+                        releaseGrades(student);
+                    } else if(studentUsernameToId.containsKey(student.getUsername())
+                            || coldStudents.containsUsername(student.getUsername())){
+                        reasons.add("duplicated username " + student.getUsername());
+                        releaseGrades(student);
+                    } else {
+                        studentMap.put(student.getId(), student);
+                        studentUsernameToId.put(student.getUsername(), student.getId());
+                        reasons.add(null);
+                    }
+                }
+            }
+        } finally {
+            gate.unlock();
+        }
+        return reasons;
+    }
+
     /**
      * get courses by their IDs
      * @param id of the course
@@ -263,19 +854,61 @@ public class Database {
     /**
      * get professor by their names
      * @param name of professor
-     * @return the professor object
+     * @return the professor object, or null if no professor or more than one professor has that name
      */
     public Professor getProfessorByName(String name){
         // return null if input is invalid
         if(name == null || name.isEmpty()){
             return null;
         }
-        for(Professor professor : professorMap.values()){
-            if (professor.getName().equals(name)){
-                return professor;
-            }
+        List<Professor> professors = professorNameIndex.get(name);
+        if(professors == null || professors.isEmpty()){
+            return null;
+        }
+        // the name doesn't identify a single professor, let the caller decide by ID
+        if(professors.size() > 1){
+            System.out.printf("Professor name %s is ambiguous: %d professors share it\n", name, professors.size());
+            return null;
+        }
+        return professors.get(0);
+    }
+
+    /**
+     * get all professors with the given name
+     * @param name of professor
+     * @return the list of professors with that name, empty if there is none
+     */
+    public List<Professor> getProfessorsByName(String name){
+        if(name == null || name.isEmpty()){
+            return new ArrayList<>();
+        }
+        List<Professor> professors = professorNameIndex.get(name);
+        if(professors == null){
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(professors);
+    }
+
+    /**
+     * get the professor named on a line of the course file.
+     * If several professors share the name, the first one added teaches the course, as before the name index.
+     * A shared name is written as the professor ID by FileInfoWriter, so the ID is tried if no professor has the name
+     * @param professor name or ID of the professor
+     * @return the professor object, or null if no professor has that name or ID
+     */
+    public Professor getCourseProfessor(String professor){
+        if(professor == null || professor.isEmpty()){
+            return null;
+        }
+        List<Professor> professors = professorNameIndex.get(professor);
+        if(professors == null || professors.isEmpty()){
+            return getProfessorById(professor);
         }
-        return null;
+        if(professors.size() > 1){
+            System.out.printf("Professor name %s is ambiguous: %d professors share it, using ID %s\n",
+                    professor, professors.size(), professors.get(0).getId());
+        }
+        return professors.get(0);
     }
 
     /**
@@ -288,7 +921,13 @@ public class Database {
         if(id == null || id.isEmpty()){
             return null;
         }
-        return studentMap.getOrDefault(id, null);
+        Student student = studentMap.get(id);
+        if(student != null || coldStudents.size() == 0){
+            return student;
+        }
+        student = getColdStudent(id, null);
+        // the student may have been promoted back meanwhile
+        return student != null ? student : studentMap.get(id);
     }
 
     /**
@@ -304,7 +943,7 @@ public class Database {
         // get student id
         String id = studentUsernameToId.get(username);
         if(id == null){
-            return null;
+            return coldStudents.size() == 0 ? null : getColdStudent(null, username);
         }
         return getStudentById(id);
     }
@@ -349,7 +988,74 @@ public class Database {
         if(id == null || id.isEmpty()){
             return false;
         }
-        return professorMap.remove(id) != null;
+        Lock gate = getMutationGate();
+        gate.lock();
+        try {
+            synchronized (professorLock){
+                Professor professor = professorMap.remove(id);
+                if(professor == null){
+                    return false;
+                }
+                // keep the username and name indexes in sync with the professor map
+                professorUsernameToId.remove(professor.getUsername(), id);
+                List<Professor> sameName = professorNameIndex.get(professor.getName());
+                if(sameName != null){
+                    sameName.remove(professor);
+                    if(sameName.isEmpty()){
+                        professorNameIndex.remove(professor.getName());
+                    }
+                }
+                return true;
+            }
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /**
+     * replace a professor with a new version of them, e.g. after their name changed.
+     * The courses of the professor are moved to the new version
+     * @param professor the new version, with the same ID as the professor it replaces
+     * @return the replaced professor, or null if no professor has that ID or the username is taken
+     */
+    public Professor replaceProfessor(Professor professor){
+        if(professor == null){
+            return null;
+        }
+        Lock exclusive = snapshotGate.writeLock();
+        exclusive.lock();
+        try {
+            Professor previous;
+            synchronized (professorLock){
+                previous = professorMap.get(professor.getId());
+                if(previous == null){
+                    return null;
+                }
+                String owner = professorUsernameToId.get(professor.getUsername());
+                if(owner != null && !owner.equals(professor.getId())){
+                    System.out.printf("Replace %s failed: duplicated Username\n", professor);
+                    return null;
+                }
+                professorMap.put(professor.getId(), professor);
+                professorUsernameToId.remove(previous.getUsername(), previous.getId());
+                professorUsernameToId.put(professor.getUsername(), professor.getId());
+                List<Professor> sameName = professorNameIndex.get(previous.getName());
+                if(sameName != null){
+                    sameName.remove(previous);
+                    if(sameName.isEmpty()){
+                        professorNameIndex.remove(previous.getName());
+                    }
+                }
+                professorNameIndex.computeIfAbsent(professor.getName(), k -> newList()).add(professor);
+            }
+            for(Course course : new ArrayList<>(getProfessorCourseList(professor.getId()))){
+                replaceCourse(new Course(course.getId(), course.getName(), professor, course.getWeekDay(),
+                        course.getStartTime(), course.getEndTime(), course.getCapacity()));
+            }
+            return previous;
+        } finally {
+            exclusive.unlock();
+        }
     }
 
     /**
@@ -361,7 +1067,45 @@ public class Database {
         if(id == null || id.isEmpty()){
             return false;
         }
-        return studentMap.remove(id) != null;
+        Lock gate = getMutationGate();
+        gate.lock();
+        try {
+            synchronized (studentLock){
+                Student student = studentMap.remove(id);
+                if(student == null){
+                    if(!coldStudents.remove(id)){
+                        return false;
+                    }
+                    synchronized (coldCache){
+                        coldCache.remove(id);
+                        coldObjects.remove(id);
+                    }
+                    return true;
+                }
+                // keep the username index in sync with the student map
+                studentUsernameToId.remove(student.getUsername(), id);
+                releaseGrades(student);
+                return true;
+            }
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /**
+     * give the grade slot of a student that is not, or no longer, in the database back to the grade store.
+     * The student keeps its grades in a map of its own, in case the object is still used
+     * @param student that was rejected or deleted
+     */
+    private void releaseGrades(Student student){
+        // the same student added twice is still in the database
+        if(studentMap.get(student.getId()) == student){
+            return;
+        }
+        int slot = student.detachGrades();
+        if(slot >= 0){
+            gradeStore.release(slot);
+        }
     }
 
     /**
@@ -373,7 +1117,21 @@ public class Database {
         if(id == null || id.isEmpty()){
             return false;
         }
-        return adminMap.remove(id) != null;
+        Lock gate = getMutationGate();
+        gate.lock();
+        try {
+            synchronized (adminLock){
+                Admin admin = adminMap.remove(id);
+                if(admin == null){
+                    return false;
+                }
+                // keep the username index in sync with the admin map
+                adminUsernameToId.remove(admin.getUsername(), id);
+                return true;
+            }
+        } finally {
+            gate.unlock();
+        }
     }
 
     /**
@@ -388,5 +1146,16 @@ public class Database {
         return professorCourseList.getOrDefault(professorId, new ArrayList<>());
     }
 
+    /**
+     * weak reference to the object of a cold student, knowing the ID it is registered under
+     */
+    private static class ColdReference extends WeakReference<Student> {
 
+        private final String id;
+
+        ColdReference(Student student, ReferenceQueue<Student> queue){
+            super(student, queue);
+            this.id = student.getId();
+        }
+    }
 }
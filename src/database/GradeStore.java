@@ -0,0 +1,564 @@
+package database;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * columnar store of the grades of all students.
+ * Course IDs are kept once in a dictionary and grades are coded as single bytes.
+ * The grades of a student are one range of two primitive columns, the course code and the grade code,
+ * so a grade costs five bytes instead of a map entry and its strings.
+ * Each student owns a slot holding the start and length of its range.
+ * The slots are striped over segments with columns and a lock of their own,
+ * so students of different segments read and write their grades without waiting for each other
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class GradeStore {
+
+    // constants
+    // usual letter grades, coded in this order
+    private static final String[] KNOWN_GRADES = {
+            "A+", "A", "A-", "B+", "B", "B-", "C+", "C", "C-", "D+", "D", "D-", "F", "P", "NP", "I", "W"
+    };
+    // at most this many different grades are coded, so new grades from outside must be known ones
+    private static final int MAX_GRADES = 256;
+    private static final Set<String> KNOWN_GRADE_SET = new HashSet<>(Arrays.asList(KNOWN_GRADES));
+    private static final int INITIAL_CAPACITY = 1024;
+    // number of segments, a power of two
+    private static final int SEGMENTS = 16;
+    private static final int SEGMENT_BITS = Integer.numberOfTrailingZeros(SEGMENTS);
+
+    // instance variables
+    // course IDs and their codes, shared by the segments. Codes are only added, under the lock of the map
+    private final Map<String, Integer> courseCodes = new ConcurrentHashMap<>();
+    private volatile String[] courseIds = new String[INITIAL_CAPACITY];
+    // grades and their codes, shared by the segments in the same way
+    private final Map<String, Integer> gradeCodes = new ConcurrentHashMap<>();
+    private final String[] grades = new String[MAX_GRADES];
+    private final Segment[] segments = new Segment[SEGMENTS];
+    // segment of the next new slot
+    private final AtomicInteger nextSegment = new AtomicInteger();
+
+    /**
+     * check a grade given by a user, e.g. through the API or an import, before it reaches a store.
+     * Only the usual letter grades are accepted, so users cannot fill up the codes of the grades
+     * @param grade to check
+     * @return true if it is one of the usual letter grades
+     */
+    public static boolean isKnownGrade(String grade){
+        return KNOWN_GRADE_SET.contains(grade);
+    }
+
+    /**
+     * create an empty store, with the usual letter grades already coded
+     */
+    public GradeStore(){
+        for(String grade : KNOWN_GRADES){
+            codeOfGrade(grade);
+        }
+        for(int i = 0; i < SEGMENTS; i++){
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * create the slot of a new student
+     * @return the slot, used by the other methods
+     */
+    public int newSlot(){
+        int segment = nextSegment.getAndIncrement() & (SEGMENTS - 1);
+        return (segments[segment].newSlot() << SEGMENT_BITS) | segment;
+    }
+
+    /**
+     * drop the grades of a slot and let a new student reuse it.
+     * Only for students whose grades were moved out of the store first, see Student.detachGrades
+     * @param slot to release
+     */
+    public void release(int slot){
+        segmentOf(slot).release(slot >>> SEGMENT_BITS);
+    }
+
+    /**
+     * get the grade of a course
+     * @param slot of the student
+     * @param courseId of the course
+     * @return the grade, or null if the student has no grade for the course
+     */
+    public String get(int slot, String courseId){
+        Integer code = courseCodes.get(courseId);
+        if(code == null){
+            return null;
+        }
+        int grade = segmentOf(slot).get(slot >>> SEGMENT_BITS, code);
+        return grade < 0 ? null : grades[grade];
+    }
+
+    /**
+     * get the number of grades of a student
+     * @param slot of the student
+     * @return the number of grades
+     */
+    public int size(int slot){
+        return segmentOf(slot).size(slot >>> SEGMENT_BITS);
+    }
+
+    /**
+     * set the grade of a course, replacing the previous grade if any
+     * @param slot of the student
+     * @param courseId of the course
+     * @param grade of the course
+     * @return the previous grade, or null if there was none
+     */
+    public String put(int slot, String courseId, String grade){
+        if(courseId == null || grade == null){
+            throw new NullPointerException("course and grade cannot be null");
+        }
+        byte gradeCode = codeOfGrade(grade);
+        int previous = segmentOf(slot).put(slot >>> SEGMENT_BITS, codeOfCourse(courseId), gradeCode);
+        return previous < 0 ? null : grades[previous];
+    }
+
+    /**
+     * remove the grade of a course
+     * @param slot of the student
+     * @param courseId of the course
+     * @return the removed grade, or null if there was none
+     */
+    public String remove(int slot, String courseId){
+        Integer code = courseCodes.get(courseId);
+        if(code == null){
+            return null;
+        }
+        int previous = segmentOf(slot).remove(slot >>> SEGMENT_BITS, code);
+        return previous < 0 ? null : grades[previous];
+    }
+
+    /**
+     * copy the grades of a student
+     * @param slot of the student
+     * @return course IDs and grades, alternating
+     */
+    String[] copy(int slot){
+        int[] codes = segmentOf(slot).copy(slot >>> SEGMENT_BITS);
+        String[] ids = courseIds;
+        String[] result = new String[codes.length];
+        for(int i = 0; i < codes.length; i += 2){
+            result[i] = ids[codes[i]];
+            result[i + 1] = grades[codes[i + 1]];
+        }
+        return result;
+    }
+
+    /**
+     * get a live map view of the grades of a student
+     * @param slot of the student
+     * @return the grades keyed by course ID, changes to the map go to the store
+     */
+    public Map<String, String> view(int slot){
+        return new StudentGrades(this, slot);
+    }
+
+    /**
+     * get the number of grades in the store
+     * @return the number of grades of all students
+     */
+    public int getGradeCount(){
+        int count = 0;
+        for(Segment segment : segments){
+            count += segment.getGradeCount();
+        }
+        return count;
+    }
+
+    /**
+     * get the approximate memory taken by the columns
+     * @return the size of the arrays in bytes
+     */
+    public long getColumnBytes(){
+        long bytes = (long) courseIds.length * 4;
+        for(Segment segment : segments){
+            bytes += segment.getColumnBytes();
+        }
+        return bytes;
+    }
+
+    private Segment segmentOf(int slot){
+        return segments[slot & (SEGMENTS - 1)];
+    }
+
+    private int codeOfCourse(String courseId){
+        Integer code = courseCodes.get(courseId);
+        if(code != null){
+            return code;
+        }
+        synchronized (courseCodes){
+            code = courseCodes.get(courseId);
+            if(code == null){
+                code = courseCodes.size();
+                // the ID is in the array before its code is published in the map
+                String[] ids = courseIds;
+                if(code == ids.length){
+                    ids = Arrays.copyOf(ids, code + (code >> 1));
+                }
+                ids[code] = courseId;
+                courseIds = ids;
+                courseCodes.put(courseId, code);
+            }
+            return code;
+        }
+    }
+
+    private byte codeOfGrade(String grade){
+        Integer code = gradeCodes.get(grade);
+        if(code != null){
+            return (byte) (int) code;
+        }
+        synchronized (gradeCodes){
+            code = gradeCodes.get(grade);
+            if(code == null){
+                code = gradeCodes.size();
+                if(code == MAX_GRADES){
+                    throw new IllegalArgumentException("More than " + MAX_GRADES + " different grades: " + grade);
+                }
+                grades[code] = grade;
+                gradeCodes.put(grade, code);
+            }
+            return (byte) (int) code;
+        }
+    }
+
+    /**
+     * columns and slots of one stripe of the students, guarded by a lock of its own.
+     * Slots and codes here are local to the segment
+     */
+    private static class Segment {
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        // range of every slot in the entry columns
+        private int[] slotStart = new int[INITIAL_CAPACITY / SEGMENTS];
+        private int[] slotLength = new int[INITIAL_CAPACITY / SEGMENTS];
+        private int slots;
+        // entry columns: course code and grade code of every grade
+        private int[] entryCourse = new int[INITIAL_CAPACITY];
+        private byte[] entryGrade = new byte[INITIAL_CAPACITY];
+        private int entries;
+        // entries no slot refers to any more, reclaimed by compact
+        private int garbage;
+        // released slots, reused by newSlot
+        private int[] freeSlots = new int[16];
+        private int freeCount;
+
+        int newSlot(){
+            lock.writeLock().lock();
+            try {
+                if(freeCount > 0){
+                    int slot = freeSlots[--freeCount];
+                    slotStart[slot] = entries;
+                    slotLength[slot] = 0;
+                    return slot;
+                }
+                if(slots == slotStart.length){
+                    slotStart = Arrays.copyOf(slotStart, slots + (slots >> 1));
+                    slotLength = Arrays.copyOf(slotLength, slotStart.length);
+                }
+                slotStart[slots] = entries;
+                return slots++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void release(int slot){
+            lock.writeLock().lock();
+            try {
+                int start = slotStart[slot];
+                int length = slotLength[slot];
+                if(start + length == entries){
+                    entries -= length;
+                } else {
+                    garbage += length;
+                }
+                slotLength[slot] = 0;
+                if(freeCount == freeSlots.length){
+                    freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+                }
+                freeSlots[freeCount++] = slot;
+                if(garbage > INITIAL_CAPACITY && garbage > entries / 2){
+                    compact();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * @return the grade code of the course, or -1 if there is none
+         */
+        int get(int slot, int course){
+            lock.readLock().lock();
+            try {
+                int index = find(slot, course);
+                return index < 0 ? -1 : entryGrade[index] & 0xFF;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int size(int slot){
+            lock.readLock().lock();
+            try {
+                return slotLength[slot];
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * @return the previous grade code of the course, or -1 if there was none
+         */
+        int put(int slot, int course, byte grade){
+            lock.writeLock().lock();
+            try {
+                int index = find(slot, course);
+                if(index >= 0){
+                    int previous = entryGrade[index] & 0xFF;
+                    entryGrade[index] = grade;
+                    return previous;
+                }
+                int start = slotStart[slot];
+                int length = slotLength[slot];
+                // a range can only grow at the end of the columns, move it there first
+                if(start + length != entries){
+                    ensureEntryCapacity(entries + length + 1);
+                    System.arraycopy(entryCourse, start, entryCourse, entries, length);
+                    System.arraycopy(entryGrade, start, entryGrade, entries, length);
+                    start = entries;
+                    slotStart[slot] = start;
+                    entries += length;
+                    garbage += length;
+                }
+                ensureEntryCapacity(entries + 1);
+                entryCourse[entries] = course;
+                entryGrade[entries] = grade;
+                entries++;
+                slotLength[slot] = length + 1;
+                if(garbage > INITIAL_CAPACITY && garbage > entries / 2){
+                    compact();
+                }
+                return -1;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * @return the removed grade code, or -1 if there was none
+         */
+        int remove(int slot, int course){
+            lock.writeLock().lock();
+            try {
+                int index = find(slot, course);
+                if(index < 0){
+                    return -1;
+                }
+                int previous = entryGrade[index] & 0xFF;
+                // keep the range contiguous by moving its last grade into the gap
+                int last = slotStart[slot] + slotLength[slot] - 1;
+                entryCourse[index] = entryCourse[last];
+                entryGrade[index] = entryGrade[last];
+                slotLength[slot]--;
+                if(last == entries - 1){
+                    entries--;
+                } else {
+                    garbage++;
+                }
+                return previous;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * @return course codes and grade codes, alternating
+         */
+        int[] copy(int slot){
+            lock.readLock().lock();
+            try {
+                int start = slotStart[slot];
+                int length = slotLength[slot];
+                int[] result = new int[length * 2];
+                for(int i = 0; i < length; i++){
+                    result[2 * i] = entryCourse[start + i];
+                    result[2 * i + 1] = entryGrade[start + i] & 0xFF;
+                }
+                return result;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int getGradeCount(){
+            lock.readLock().lock();
+            try {
+                return entries - garbage;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        long getColumnBytes(){
+            lock.readLock().lock();
+            try {
+                return (long) entryCourse.length * 5 + (long) slotStart.length * 8;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * find the entry of a course in the range of a slot, the caller holds the lock
+         */
+        private int find(int slot, int course){
+            int start = slotStart[slot];
+            int end = start + slotLength[slot];
+            for(int i = start; i < end; i++){
+                if(entryCourse[i] == course){
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void ensureEntryCapacity(int capacity){
+            if(capacity > entryCourse.length){
+                int size = Math.max(capacity, entryCourse.length + (entryCourse.length >> 1));
+                entryCourse = Arrays.copyOf(entryCourse, size);
+                entryGrade = Arrays.copyOf(entryGrade, size);
+            }
+        }
+
+        /**
+         * copy the ranges of all slots next to each other, dropping the moved-away entries
+         */
+        private void compact(){
+            int live = entries - garbage;
+            int[] courses = new int[Math.max(INITIAL_CAPACITY, live + (live >> 1))];
+            byte[] codes = new byte[courses.length];
+            int next = 0;
+            for(int slot = 0; slot < slots; slot++){
+                int length = slotLength[slot];
+                System.arraycopy(entryCourse, slotStart[slot], courses, next, length);
+                System.arraycopy(entryGrade, slotStart[slot], codes, next, length);
+                slotStart[slot] = next;
+                next += length;
+            }
+            entryCourse = courses;
+            entryGrade = codes;
+            entries = next;
+            garbage = 0;
+        }
+    }
+
+    /**
+     * map view of the grades of one student
+     */
+    private static class StudentGrades extends AbstractMap<String, String> {
+
+        private final GradeStore store;
+        private final int slot;
+
+        StudentGrades(GradeStore store, int slot){
+            this.store = store;
+            this.slot = slot;
+        }
+
+        @Override
+        public String get(Object key){
+            return key instanceof String ? store.get(slot, (String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key){
+            return get(key) != null;
+        }
+
+        @Override
+        public String put(String key, String value){
+            return store.put(slot, key, value);
+        }
+
+        @Override
+        public String remove(Object key){
+            return key instanceof String ? store.remove(slot, (String) key) : null;
+        }
+
+        @Override
+        public int size(){
+            return store.size(slot);
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet(){
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator(){
+                    return new GradeIterator(store, slot);
+                }
+
+                @Override
+                public int size(){
+                    return store.size(slot);
+                }
+            };
+        }
+    }
+
+    /**
+     * iterate over a copy of the grades of one student, removing goes to the store
+     */
+    private static class GradeIterator implements Iterator<Map.Entry<String, String>> {
+
+        private final GradeStore store;
+        private final int slot;
+        private final String[] pairs;
+        private int next;
+
+        GradeIterator(GradeStore store, int slot){
+            this.store = store;
+            this.slot = slot;
+            this.pairs = store.copy(slot);
+        }
+
+        @Override
+        public boolean hasNext(){
+            return next < pairs.length;
+        }
+
+        @Override
+        public Map.Entry<String, String> next(){
+            if(!hasNext()){
+                throw new NoSuchElementException();
+            }
+            next += 2;
+            return new AbstractMap.SimpleImmutableEntry<>(pairs[next - 2], pairs[next - 1]);
+        }
+
+        @Override
+        public void remove(){
+            if(next == 0){
+                throw new IllegalStateException();
+            }
+            store.remove(slot, pairs[next - 2]);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package database;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * map from user IDs to users, keyed by primitive longs for numeric IDs.
+ * A numeric ID is encoded as its number of digits and its value, so "001" and "1" stay different keys.
+ * The keys live in one long array with linear probing, the users in a parallel array,
+ * so a lookup hashes a long and compares longs instead of strings.
+ * IDs that are not numeric, or have more than 16 digits, are kept in an ordinary map.
+ * Not safe for concurrent writers, like HashMap
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class IdMap<V> extends AbstractMap<String, V> {
+
+    // constants
+    private static final int MAX_DIGITS = 16;
+    // 0 is never a valid key, since every key has at least one digit
+    private static final long EMPTY = 0;
+    private static final int INITIAL_CAPACITY = 64;
+
+    // instance variables
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size;
+    // users whose ID is not a short number
+    private final Map<String, V> others = new HashMap<>();
+
+    /**
+     * encode a numeric ID as a long
+     * @param id to encode
+     * @return the number of digits in the top byte and the value below it, or -1 if the ID is not numeric
+     */
+    public static long encode(String id){
+        int length = id.length();
+        if(length == 0 || length > MAX_DIGITS){
+            return -1;
+        }
+        long value = 0;
+        for(int i = 0; i < length; i++){
+            char c = id.charAt(i);
+            if(c < '0' || c > '9'){
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return ((long) length << 56) | value;
+    }
+
+    /**
+     * turn an encoded key back into the ID, with its leading zeros
+     * @param key returned by encode
+     * @return the ID
+     */
+    public static String decode(long key){
+        int length = (int) (key >>> 56);
+        long value = key & ((1L << 56) - 1);
+        char[] digits = new char[length];
+        for(int i = length - 1; i >= 0; i--){
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object id){
+        if(!(id instanceof String)){
+            return null;
+        }
+        long key = encode((String) id);
+        if(key < 0){
+            return others.get(id);
+        }
+        int index = indexOf(key);
+        return index < 0 ? null : (V) values[index];
+    }
+
+    @Override
+    public boolean containsKey(Object id){
+        if(!(id instanceof String)){
+            return false;
+        }
+        long key = encode((String) id);
+        if(key < 0){
+            return others.containsKey(id);
+        }
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(String id, V value){
+        long key = encode(id);
+        if(key < 0){
+            return others.put(id, value);
+        }
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while(keys[i] != EMPTY){
+            if(keys[i] == key){
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+        // keep the table at most half full
+        if(size * 2 > keys.length){
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object id){
+        if(!(id instanceof String)){
+            return null;
+        }
+        long key = encode((String) id);
+        if(key < 0){
+            return others.remove(id);
+        }
+        int index = indexOf(key);
+        if(index < 0){
+            return null;
+        }
+        V previous = (V) values[index];
+        deleteAt(index);
+        return previous;
+    }
+
+    @Override
+    public int size(){
+        return size + others.size();
+    }
+
+    @Override
+    public void clear(){
+        keys = new long[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+        size = 0;
+        others.clear();
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet(){
+        return new AbstractSet<Entry<String, V>>() {
+            @Override
+            public Iterator<Entry<String, V>> iterator(){
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size(){
+                return IdMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values(){
+        // the users are read straight from the array, without turning the keys back into strings
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator(){
+                EntryIterator entries = new EntryIterator();
+                return new Iterator<V>() {
+                    @Override
+                    public boolean hasNext(){
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public V next(){
+                        return entries.nextValue();
+                    }
+                };
+            }
+
+            @Override
+            public int size(){
+                return IdMap.this.size();
+            }
+        };
+    }
+
+    private int indexOf(long key){
+        int mask = keys.length - 1;
+        for(int i = slot(key, mask); keys[i] != EMPTY; i = (i + 1) & mask){
+            if(keys[i] == key){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * remove the entry at index and move later entries of the probe sequence back,
+     * so lookups never need a marker for deleted entries
+     */
+    private void deleteAt(int index){
+        int mask = keys.length - 1;
+        int gap = index;
+        int i = (index + 1) & mask;
+        while(keys[i] != EMPTY){
+            int home = slot(keys[i], mask);
+            // move the entry into the gap if its home slot is not between the gap and its position
+            if(((i - home) & mask) >= ((i - gap) & mask)){
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        values[gap] = null;
+        size--;
+    }
+
+    private void resize(int capacity){
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        int mask = capacity - 1;
+        for(int j = 0; j < oldKeys.length; j++){
+            if(oldKeys[j] != EMPTY){
+                int i = slot(oldKeys[j], mask);
+                while(keys[i] != EMPTY){
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int slot(long key, int mask){
+        // mix the bits, sequential IDs would otherwise fill neighbouring slots
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * iterate over the numeric entries, then the others
+     */
+    private class EntryIterator implements Iterator<Entry<String, V>> {
+
+        private int next = advance(0);
+        private final Iterator<Entry<String, V>> rest = others.entrySet().iterator();
+
+        private int advance(int from){
+            int i = from;
+            while(i < keys.length && keys[i] == EMPTY){
+                i++;
+            }
+            return i;
+        }
+
+        @Override
+        public boolean hasNext(){
+            return next < keys.length || rest.hasNext();
+        }
+
+        @SuppressWarnings("unchecked")
+        V nextValue(){
+            if(next < keys.length){
+                V value = (V) values[next];
+                next = advance(next + 1);
+                return value;
+            }
+            if(!rest.hasNext()){
+                throw new NoSuchElementException();
+            }
+            return rest.next().getValue();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Entry<String, V> next(){
+            if(next < keys.length){
+                Entry<String, V> entry = new SimpleImmutableEntry<>(decode(keys[next]), (V) values[next]);
+                next = advance(next + 1);
+                return entry;
+            }
+            if(!rest.hasNext()){
+                throw new NoSuchElementException();
+            }
+            return rest.next();
+        }
+    }
+}
@@ -0,0 +1,504 @@
+package database;
+
+import courses.Course;
+import files.RecordReader;
+import roles.Professor;
+import roles.Student;
+import roles.UserBase;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * append-only log of the changes made to the database after loading the data files.
+ * Records are buffered in memory and written with one fsync per sync interval (group commit),
+ * so many enrollments share a single disk sync. At startup the log is replayed after the
+ * data files to restore the changes.
+ * A snapshot marks its point in the log with a checkpoint record. Replaying on top of that snapshot
+ * starts after the checkpoint, and the records before it are cut off once the snapshot is written
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class MutationLog implements Closeable {
+
+    // record types
+    public static final String ADD_COURSE = "ADD_COURSE";
+    public static final String DELETE_COURSE = "DELETE_COURSE";
+    public static final String ADD_STUDENT = "ADD_STUDENT";
+    public static final String DELETE_STUDENT = "DELETE_STUDENT";
+    public static final String ADD_PROFESSOR = "ADD_PROFESSOR";
+    public static final String DELETE_PROFESSOR = "DELETE_PROFESSOR";
+    public static final String ENROLL = "ENROLL";
+    public static final String DROP = "DROP";
+    public static final String GRADE = "GRADE";
+    public static final String PASSWORD = "PASSWORD";
+    public static final String CHECKPOINT = "CHECKPOINT";
+
+    // instance variables
+    private final Path file;
+    // held while a batch is written or the log is cut, so batches reach the disk in the order they were taken
+    private final Object syncLock = new Object();
+    // replaced when the records before a checkpoint are cut off
+    private FileChannel channel;
+    private final ScheduledExecutorService syncer;
+    // records appended since the last sync
+    private ByteArrayOutputStream pending;
+    // sequence number of the last appended record
+    private long appendedSequence;
+    // sequence number of the last record on disk
+    private long durableSequence;
+    private long syncCount;
+    private boolean closed;
+
+    /**
+     * open the log for appending and start the background sync
+     * @param path of the log file
+     * @param syncIntervalMillis time between two group commits
+     * @throws IOException if the log cannot be opened
+     */
+    public MutationLog(String path, long syncIntervalMillis) throws IOException {
+        file = Paths.get(path);
+        // a crash may leave half a record at the end, new records must not be appended to it
+        dropTornRecord(file);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        pending = new ByteArrayOutputStream();
+        syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mutation-log-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, syncIntervalMillis);
+        syncer.scheduleWithFixedDelay(this::syncQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * add a record to the log. The record is on disk after the next sync
+     * @param type of the record
+     * @param fields of the record
+     * @return the sequence number of the record, see awaitDurable
+     */
+    public synchronized long append(String type, String... fields){
+        if(closed){
+            throw new IllegalStateException("Mutation log is closed");
+        }
+        StringBuilder line = new StringBuilder(type);
+        for(String field : fields){
+            line.append(';').append(encode(field));
+        }
+        line.append('\n');
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        pending.write(bytes, 0, bytes.length);
+        appendedSequence++;
+        return appendedSequence;
+    }
+
+    /**
+     * mark the current point of the log for a snapshot.
+     * Called while changes are held off, so the snapshot holds exactly the changes logged before the mark
+     * @return the name of the checkpoint, stored in the snapshot, or null if the log is closed
+     */
+    public synchronized String checkpoint(){
+        if(closed){
+            return null;
+        }
+        String name = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        append(CHECKPOINT, name);
+        return name;
+    }
+
+    /**
+     * cut off the records before a checkpoint, once the snapshot holding them is written.
+     * The rest of the log is copied to a new file that replaces the log, appending goes on meanwhile
+     * @param checkpoint returned by checkpoint
+     * @return true if records were cut off, false if the checkpoint is already the start of the log or was not found
+     * @throws IOException if the log cannot be rewritten
+     */
+    public boolean truncateBefore(String checkpoint) throws IOException {
+        synchronized (syncLock){
+            synchronized (this){
+                if(closed){
+                    return false;
+                }
+            }
+            writePending();
+            long offset = findCheckpoint(file, checkpoint);
+            if(offset <= 0){
+                return false;
+            }
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try(FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = in.size();
+                for(long position = offset; position < size; ){
+                    position += in.transferTo(position, size - position, out);
+                }
+                out.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            FileChannel previous = channel;
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            previous.close();
+            return true;
+        }
+    }
+
+    /**
+     * wait until the record with the given sequence number is on disk
+     * @param sequence returned by append
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized void awaitDurable(long sequence) throws InterruptedException {
+        while(durableSequence < sequence && !closed){
+            wait();
+        }
+    }
+
+    /**
+     * write all pending records and force them to disk
+     * @throws IOException if the log cannot be written
+     */
+    public void sync() throws IOException {
+        // one sync at a time, so batches reach the disk in the order they were taken
+        synchronized (syncLock){
+            writePending();
+        }
+    }
+
+    /**
+     * write the pending records as one batch, the caller holds the sync lock
+     */
+    private void writePending() throws IOException {
+        byte[] batch;
+        long sequence;
+        synchronized (this){
+            if(pending.size() == 0){
+                return;
+            }
+            batch = pending.toByteArray();
+            pending = new ByteArrayOutputStream();
+            sequence = appendedSequence;
+        }
+        // appenders can keep buffering while the batch goes to disk
+        ByteBuffer buffer = ByteBuffer.wrap(batch);
+        while(buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+        channel.force(false);
+        synchronized (this){
+            durableSequence = Math.max(durableSequence, sequence);
+            syncCount++;
+            notifyAll();
+        }
+    }
+
+    private void syncQuietly(){
+        try {
+            sync();
+        } catch (IOException e) {
+            System.out.println("Mutation log sync failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * get the number of group commits done so far
+     * @return the number of syncs that wrote records
+     */
+    public synchronized long getSyncCount(){
+        return syncCount;
+    }
+
+    /**
+     * get the sequence number of the last record on disk
+     * @return the durable sequence number
+     */
+    public synchronized long getDurableSequence(){
+        return durableSequence;
+    }
+
+    /**
+     * write the pending records and close the log
+     * @throws IOException if the log cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        syncer.shutdown();
+        try {
+            sync();
+        } finally {
+            synchronized (this){
+                closed = true;
+                notifyAll();
+            }
+            synchronized (syncLock){
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * apply the records of a log to the database, in order
+     * @param path of the log file
+     * @param database to apply the records to
+     * @return the number of records applied
+     */
+    public static int replay(String path, Database database){
+        return replay(path, database, null);
+    }
+
+    /**
+     * apply the records of a log to the database, in order, starting after the checkpoint of the loaded snapshot.
+     * A torn record at the end of the log is cut off the file and not applied
+     * @param path of the log file
+     * @param database to apply the records to
+     * @param checkpoint stored in the snapshot the database was loaded from, or null to apply the whole log
+     * @return the number of records applied
+     */
+    public static int replay(String path, Database database, String checkpoint){
+        Path file = Paths.get(path);
+        if(!Files.exists(file)){
+            return 0;
+        }
+        int applied = 0;
+        try {
+            dropTornRecord(file);
+            // the records before the checkpoint are already in the snapshot
+            long offset = checkpoint == null ? 0 : Math.max(0, findCheckpoint(file, checkpoint));
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                RecordReader reader = new RecordReader(Channels.newReader(channel.position(offset), StandardCharsets.UTF_8))) {
+                while(reader.nextRecord()){
+                    try {
+                        if(apply(reader, database)){
+                            applied++;
+                        }
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Skipped mutation log record: " + e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return applied;
+    }
+
+    /**
+     * apply the current record to the database
+     * @param reader positioned on the record
+     * @param database to apply the record to
+     * @return true if the record is a change, false for a checkpoint
+     */
+    private static boolean apply(RecordReader reader, Database database){
+        String type = reader.nextField(';');
+        switch(type){
+            case CHECKPOINT:
+                return false;
+            case ADD_COURSE: {
+                String id = decode(reader.nextField(';'));
+                String name = decode(reader.nextField(';'));
+                Professor professor = database.getProfessorById(decode(reader.nextField(';')));
+                String weekDay = decode(reader.nextField(';'));
+                int start = reader.nextMinuteOfDay(';');
+                int end = reader.nextMinuteOfDay(';');
+                int capacity = reader.nextInt(';');
+                database.addCourse(new Course(id, name, professor, weekDay,
+                        LocalTime.of(start / 60, start % 60), LocalTime.of(end / 60, end % 60), capacity));
+                break;
+            }
+            case DELETE_COURSE:
+                database.deleteCourse(decode(reader.nextField(';')));
+                break;
+            case ADD_STUDENT:
+                database.addUser(new Student(decode(reader.nextField(';')), decode(reader.nextField(';')),
+                        decode(reader.nextField(';')), decode(reader.nextField(';'))));
+                break;
+            case DELETE_STUDENT:
+                database.deleteStudent(decode(reader.nextField(';')));
+                break;
+            case ADD_PROFESSOR:
+                database.addUser(new Professor(decode(reader.nextField(';')), decode(reader.nextField(';')),
+                        decode(reader.nextField(';')), decode(reader.nextField(';'))));
+                break;
+            case DELETE_PROFESSOR:
+                database.deleteProfessor(decode(reader.nextField(';')));
+                break;
+            case PASSWORD: {
+                // the type of the user, its ID and the new hash of its password
+                String role = decode(reader.nextField(';'));
+                String id = decode(reader.nextField(';'));
+                UserBase user;
+                if("Admin".equals(role)){
+                    user = database.getAdminById(id);
+                } else if("Professor".equals(role)){
+                    user = database.getProfessorById(id);
+                } else {
+                    user = database.getStudentById(id);
+                }
+                if(user == null){
+                    throw new IllegalArgumentException("no such user on line " + reader.getLineNumber());
+                }
+                user.updatePassword(user.getPassword(), decode(reader.nextField(';')));
+                break;
+            }
+            case ENROLL:
+            case DROP:
+            case GRADE: {
+                Student student = database.getStudentById(decode(reader.nextField(';')));
+                String courseId = decode(reader.nextField(';'));
+                if(student == null){
+                    throw new IllegalArgumentException("no such student on line " + reader.getLineNumber());
+                }
+                if(ENROLL.equals(type)){
+                    student.enrollCourse(courseId);
+                } else if(DROP.equals(type)){
+                    student.dropCourse(courseId);
+                } else {
+                    student.addCourseWithGrade(courseId, decode(reader.nextField(';')));
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("unknown record " + type + " on line " + reader.getLineNumber());
+        }
+        return true;
+    }
+
+    /**
+     * format a time the same way as the data files, e.g. 9:05
+     * @param time to format
+     * @return the time as H:mm
+     */
+    public static String formatTime(LocalTime time){
+        int minute = time.getMinute();
+        return time.getHour() + (minute < 10 ? ":0" : ":") + minute;
+    }
+
+    /**
+     * escape the characters that would break a record
+     */
+    private static String encode(String field){
+        if(field == null){
+            return "";
+        }
+        StringBuilder result = null;
+        for(int i = 0; i < field.length(); i++){
+            char c = field.charAt(i);
+            String escaped = c == '%' ? "%25" : c == ';' ? "%3B" : c == '\n' ? "%0A" : c == '\r' ? "%0D" : null;
+            if(escaped != null && result == null){
+                result = new StringBuilder(field.substring(0, i));
+            }
+            if(result != null){
+                result.append(escaped != null ? escaped : String.valueOf(c));
+            }
+        }
+        return result == null ? field : result.toString();
+    }
+
+    /**
+     * undo encode
+     */
+    private static String decode(String field){
+        if(field.indexOf('%') < 0){
+            return field;
+        }
+        StringBuilder result = new StringBuilder(field.length());
+        for(int i = 0; i < field.length(); i++){
+            char c = field.charAt(i);
+            if(c == '%' && i + 2 < field.length()){
+                result.append((char) Integer.parseInt(field.substring(i + 1, i + 3), 16));
+                i += 2;
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * cut off a record that a crash left without its line end, its last field may be incomplete
+     * @param file of the log
+     * @throws IOException if the log cannot be read or cut
+     */
+    private static void dropTornRecord(Path file) throws IOException {
+        if(!Files.exists(file)){
+            return;
+        }
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            ByteBuffer chunk = ByteBuffer.allocate(4096);
+            long end = size;
+            // find the last line end, reading backwards
+            while(end > 0){
+                long start = Math.max(0, end - chunk.capacity());
+                chunk.clear().limit((int) (end - start));
+                while(chunk.hasRemaining()){
+                    if(channel.read(chunk, start + chunk.position()) < 0){
+                        break;
+                    }
+                }
+                int i = chunk.position() - 1;
+                while(i >= 0 && chunk.get(i) != '\n'){
+                    i--;
+                }
+                if(i >= 0){
+                    end = start + i + 1;
+                    break;
+                }
+                end = start;
+            }
+            if(end < size){
+                System.out.println("Dropped a torn record at the end of " + file);
+                channel.truncate(end);
+                channel.force(true);
+            }
+        }
+    }
+
+    /**
+     * find the record of a checkpoint
+     * @param file of the log
+     * @param checkpoint name of the checkpoint
+     * @return the offset of the record in the file, or -1 if the log doesn't hold it
+     * @throws IOException if the log cannot be read
+     */
+    private static long findCheckpoint(Path file, String checkpoint) throws IOException {
+        byte[] marker = (CHECKPOINT + ';' + checkpoint + '\n').getBytes(StandardCharsets.UTF_8);
+        try(InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            long position = 0;
+            long lineStart = 0;
+            // bytes of the marker matched by the current line so far, -1 once the line differs
+            int matched = 0;
+            int b;
+            while((b = in.read()) >= 0){
+                position++;
+                if(matched >= 0){
+                    matched = b == marker[matched] ? matched + 1 : -1;
+                    if(matched == marker.length){
+                        return lineStart;
+                    }
+                }
+                if(b == '\n'){
+                    lineStart = position;
+                    matched = 0;
+                }
+            }
+        }
+        return -1;
+    }
+}
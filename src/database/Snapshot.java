@@ -0,0 +1,430 @@
+package database;
+
+import courses.Course;
+import roles.Admin;
+import roles.Professor;
+import roles.Student;
+import roles.User;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * binary snapshot of the whole database.
+ * All strings are stored once in a table and records refer to them by index.
+ * Every record is prefixed by its length, numbers are stored as variable length integers
+ * and times as minutes of the day,
+ * so a snapshot loads with one sequential read and no text parsing.
+ * The records are streamed to the file as they are encoded and the string table follows them,
+ * found through its offset at the end of the file.
+ * The header holds the checkpoint of the mutation log taken with the snapshot, see MutationLog.checkpoint
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class Snapshot {
+
+    // constants
+    private static final int MAGIC = 0x534D5353;
+    public static final int VERSION = 3;
+
+    // instance variables
+    // strings of the snapshot and their index in the table
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    // file the records are streamed to
+    private final DataOutputStream out;
+    // record being encoded, moved to the file when complete
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+
+    /**
+     * prevents other classes from creating snapshots directly
+     * @param out to stream the records to
+     */
+    private Snapshot(DataOutputStream out){
+        this.out = out;
+    }
+
+    /**
+     * write the database to a snapshot file.
+     * The file is written next to the target and renamed when complete.
+     * Registration goes on while the file is written, the snapshot holds the state of the moment it started
+     * @param database to save
+     * @param path of the snapshot file
+     * @return the number of bytes written
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static long write(Database database, String path) throws IOException {
+        SnapshotView view = database.beginSnapshot();
+        try {
+            return write(view, path);
+        } finally {
+            database.endSnapshot(view);
+        }
+    }
+
+    /**
+     * write a view of the database to a snapshot file
+     * @param view taken by Database.beginSnapshot
+     * @param path of the snapshot file
+     * @return the number of bytes written
+     * @throws IOException if the snapshot cannot be written
+     */
+    static long write(SnapshotView view, String path) throws IOException {
+        Path target = Paths.get(path);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try(FileOutputStream file = new FileOutputStream(temp.toFile());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, view.getCheckpoint() == null ? "" : view.getCheckpoint());
+            Snapshot snapshot = new Snapshot(out);
+            snapshot.addUsers(view.getAdmins());
+            snapshot.addUsers(view.getProfessors());
+            snapshot.addCourses(view, view.getCourses());
+            snapshot.addStudents(view, view.getStudents());
+            out.flush();
+            snapshot.writeStringTable(file.getChannel().position());
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // the snapshot holds the logged changes before its checkpoint now
+        view.truncateLog();
+        return Files.size(target);
+    }
+
+    /**
+     * encode admins or professors, one section
+     */
+    private void addUsers(Collection<? extends User> users) throws IOException {
+        startSection(users.size());
+        for(User user : users){
+            writeUser(user);
+            endRecord();
+        }
+    }
+
+    /**
+     * encode the courses and their rosters, one section
+     */
+    private void addCourses(SnapshotView view, Collection<Course> courses) throws IOException {
+        startSection(courses.size());
+        for(Course course : courses){
+            writeVarInt(recordOut, indexOf(course.getId()));
+            writeVarInt(recordOut, indexOf(course.getName()));
+            writeVarInt(recordOut, indexOf(course.getProfessor().getId()));
+            writeVarInt(recordOut, indexOf(course.getWeekDay()));
+            writeVarInt(recordOut, minuteOf(course.getStartTime()));
+            writeVarInt(recordOut, minuteOf(course.getEndTime()));
+            writeVarInt(recordOut, course.getCapacity());
+            writeVarInt(recordOut, course.getWaitlistCapacity());
+            List<Student> students = view.rosterOf(course);
+            writeVarInt(recordOut, students.size());
+            for(Student student : students){
+                writeVarInt(recordOut, indexOf(student.getId()));
+            }
+            view.written(course);
+            endRecord();
+        }
+    }
+
+    /**
+     * encode the students with their enrolled courses and grades, one section
+     */
+    private void addStudents(SnapshotView view, Collection<Student> students) throws IOException {
+        int coldCount = view.getColdStudentCount();
+        startSection(students.size() + coldCount);
+        for(Student student : students){
+            SnapshotView.StudentImage image = view.imageOf(student);
+            writeStudent(student, image.courses, image.grades);
+            view.written(student);
+        }
+        // cold students are read back one at a time and written as they are stored
+        for(int i = 0; i < coldCount; i++){
+            Student student = view.readColdStudent(i);
+            writeStudent(student, student.getCoursesList(), student.getGrades());
+        }
+    }
+
+    private void writeStudent(Student student, List<String> courses, Map<String, String> grades) throws IOException {
+        writeUser(student);
+        writeVarInt(recordOut, courses.size());
+        for(String courseId : courses){
+            writeVarInt(recordOut, indexOf(courseId));
+        }
+        writeVarInt(recordOut, grades.size());
+        for(Map.Entry<String, String> grade : grades.entrySet()){
+            writeVarInt(recordOut, indexOf(grade.getKey()));
+            writeVarInt(recordOut, indexOf(grade.getValue()));
+        }
+        endRecord();
+    }
+
+    private void writeUser(User user) throws IOException {
+        writeVarInt(recordOut, indexOf(user.getId()));
+        writeVarInt(recordOut, indexOf(user.getName()));
+        writeVarInt(recordOut, indexOf(user.getUsername()));
+        writeVarInt(recordOut, indexOf(user.getPassword()));
+    }
+
+    private void startSection(int count) throws IOException {
+        writeVarInt(out, count);
+    }
+
+    /**
+     * move the current record to the file, prefixed by its length
+     */
+    private void endRecord() throws IOException {
+        recordOut.flush();
+        writeVarInt(out, record.size());
+        record.writeTo(out);
+        record.reset();
+    }
+
+    /**
+     * get the index of a string in the table, adding it the first time
+     */
+    private int indexOf(String value){
+        Integer index = stringIndex.get(value);
+        if(index == null){
+            index = strings.size();
+            strings.add(value);
+            stringIndex.put(value, index);
+        }
+        return index;
+    }
+
+    /**
+     * write the string table after the records, then its offset as the last eight bytes of the file
+     * @param offset of the table in the file
+     */
+    private void writeStringTable(long offset) throws IOException {
+        writeVarInt(out, strings.size());
+        for(String value : strings){
+            writeString(out, value);
+        }
+        out.writeLong(offset);
+    }
+
+    /**
+     * rebuild the database from a snapshot file.
+     * The maps and indexes are filled through the usual database methods
+     * @param path of the snapshot file
+     * @param database to fill, expected to be empty
+     * @return the checkpoint of the mutation log taken with the snapshot, or null if there is none
+     * @throws IOException if the snapshot cannot be read, is not a snapshot or a record is malformed
+     */
+    public static String load(String path, Database database) throws IOException {
+        try(FileInputStream file = new FileInputStream(path);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16))) {
+            if(file.getChannel().size() < 8 || in.readInt() != MAGIC){
+                throw new IOException(path + " is not a snapshot");
+            }
+            int version = in.readInt();
+            if(version < 1 || version > VERSION){
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            // version 1 has no checkpoint
+            String checkpoint = version == 1 ? "" : readString(in);
+            String[] table;
+            if(version < 3){
+                // older versions write the table before the records
+                table = readStringTable(in);
+            } else {
+                table = readStringTable(file.getChannel());
+            }
+
+            int admins = readVarInt(in);
+            for(int i = 0; i < admins; i++){
+                DataInputStream record = readRecord(in);
+                database.addUser(new Admin(table[readVarInt(record)], table[readVarInt(record)], table[readVarInt(record)], table[readVarInt(record)]));
+                endRecord(record);
+            }
+            int professors = readVarInt(in);
+            for(int i = 0; i < professors; i++){
+                DataInputStream record = readRecord(in);
+                database.addUser(new Professor(table[readVarInt(record)], table[readVarInt(record)], table[readVarInt(record)], table[readVarInt(record)]));
+                endRecord(record);
+            }
+
+            // rosters refer to students, so they are filled in after the students are loaded
+            int courses = readVarInt(in);
+            List<Course> courseOrder = new ArrayList<>(courses);
+            List<int[]> rosters = new ArrayList<>(courses);
+            for(int i = 0; i < courses; i++){
+                DataInputStream record = readRecord(in);
+                String id = table[readVarInt(record)];
+                String name = table[readVarInt(record)];
+                Professor professor = database.getProfessorById(table[readVarInt(record)]);
+                String weekDay = table[readVarInt(record)];
+                LocalTime start = timeOf(readVarInt(record));
+                LocalTime end = timeOf(readVarInt(record));
+                Course course = new Course(id, name, professor, weekDay, start, end, readVarInt(record));
+                course.setWaitlistCapacity(readVarInt(record));
+                int[] roster = new int[readVarInt(record)];
+                for(int j = 0; j < roster.length; j++){
+                    roster[j] = readVarInt(record);
+                }
+                endRecord(record);
+                database.addCourse(course);
+                courseOrder.add(course);
+                rosters.add(roster);
+            }
+
+            int students = readVarInt(in);
+            for(int i = 0; i < students; i++){
+                DataInputStream record = readRecord(in);
+                Student student = new Student(table[readVarInt(record)], table[readVarInt(record)], table[readVarInt(record)], table[readVarInt(record)]);
+                database.addUser(student);
+                int enrolled = readVarInt(record);
+                for(int j = 0; j < enrolled; j++){
+                    student.restoreEnrolledCourse(database.getCourseById(table[readVarInt(record)]));
+                }
+                int grades = readVarInt(record);
+                for(int j = 0; j < grades; j++){
+                    student.addCourseWithGrade(table[readVarInt(record)], table[readVarInt(record)]);
+                }
+                endRecord(record);
+            }
+
+            // the rosters are put back as they were, even if a course is over its capacity
+            for(int i = 0; i < courseOrder.size(); i++){
+                Course course = courseOrder.get(i);
+                for(int studentIndex : rosters.get(i)){
+                    Student student = database.getStudentById(table[studentIndex]);
+                    if(student != null && student.getCoursesList().contains(course.getId())){
+                        course.restoreStudent(student);
+                    }
+                }
+            }
+            return checkpoint.isEmpty() ? null : checkpoint;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Malformed snapshot " + path + ": unknown string " + e.getMessage());
+        }
+    }
+
+    /**
+     * read the string table at the current position
+     */
+    private static String[] readStringTable(DataInputStream in) throws IOException {
+        String[] table = new String[readVarInt(in)];
+        for(int i = 0; i < table.length; i++){
+            table[i] = readString(in);
+        }
+        return table;
+    }
+
+    /**
+     * read the string table found through the offset at the end of the file, the position of the file is kept
+     */
+    private static String[] readStringTable(FileChannel file) throws IOException {
+        long position = file.position();
+        ByteBuffer footer = ByteBuffer.allocate(8);
+        while(footer.hasRemaining()){
+            if(file.read(footer, file.size() - 8 + footer.position()) < 0){
+                throw new IOException("Snapshot is truncated");
+            }
+        }
+        long offset = footer.getLong(0);
+        if(offset < 0 || offset > file.size() - 8){
+            throw new IOException("Snapshot is truncated");
+        }
+        // the channel is shared with the record stream, read the table through a stream of its own
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(file.position(offset)), 1 << 16));
+        String[] table = readStringTable(in);
+        file.position(position);
+        return table;
+    }
+
+    /**
+     * read the next record, checked against its length prefix
+     * @param in positioned on the length prefix of the record
+     * @return a stream over the bytes of the record
+     */
+    private static DataInputStream readRecord(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * make sure a record was read completely, a record with bytes left over doesn't match its format
+     */
+    private static void endRecord(DataInputStream record) throws IOException {
+        if(record.available() > 0){
+            throw new IOException("Malformed record in snapshot: " + record.available() + " bytes left over");
+        }
+    }
+
+    /**
+     * write a non-negative number in as few bytes as needed, 7 bits per byte
+     */
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while((value & ~0x7F) != 0){
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * write a string as its length and UTF-8 bytes
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * read a string written by writeString
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * read a number written by writeVarInt
+     */
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7){
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0){
+                return value;
+            }
+        }
+        throw new IOException("Malformed number in snapshot");
+    }
+
+    private static int minuteOf(LocalTime time){
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    private static LocalTime timeOf(int minuteOfDay){
+        return LocalTime.of(minuteOfDay / 60, minuteOfDay % 60);
+    }
+}
@@ -0,0 +1,188 @@
+package database;
+
+import courses.Course;
+import roles.Admin;
+import roles.Professor;
+import roles.Student;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * point-in-time view of the database used while a snapshot is written.
+ * Only the entity lists are copied when the view is taken. The enrollments of a student
+ * and the roster of a course are copied the first time they are needed: by a registration
+ * that is about to change them, or by the snapshot writer, whichever comes first.
+ * Either way the copy holds the state of the moment the view was taken
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+class SnapshotView {
+
+    // constants
+    // placeholder for rosters that are already written
+    private static final List<Student> WRITTEN_ROSTER = new ArrayList<>(0);
+
+    // instance variables
+    private final List<Admin> admins;
+    private final List<Professor> professors;
+    private final List<Course> courses;
+    private final List<Student> students;
+    // students in cold storage, their records are never changed so they need no copy
+    private final ColdStudentStore.Records coldStudents;
+    // state of the students and courses at the moment the view was taken, keyed by identity
+    private final Map<Student, StudentImage> studentImages = new ConcurrentHashMap<>();
+    private final Map<Course, List<Student>> courseImages = new ConcurrentHashMap<>();
+    // time taken to capture the entity lists, in nanoseconds
+    private long capturePauseNanos;
+    // log marked at the moment the view was taken, null if changes are not logged
+    private MutationLog mutationLog;
+    private String checkpoint;
+
+    /**
+     * copy the entity lists, the caller makes sure nothing is changed meanwhile
+     * @param database to take the view of
+     */
+    SnapshotView(Database database){
+        this.admins = new ArrayList<>(database.getAdminMap().values());
+        this.professors = new ArrayList<>(database.getProfessorMap().values());
+        this.courses = new ArrayList<>(database.getCourseMap().values());
+        this.students = new ArrayList<>(database.getStudentMap().values());
+        this.coldStudents = database.getColdStudents().records();
+    }
+
+    /**
+     * mark the log at the moment the view is taken, the caller makes sure nothing is logged meanwhile
+     * @param mutationLog attached to the database, or null
+     */
+    void markLog(MutationLog mutationLog){
+        if(mutationLog != null){
+            this.checkpoint = mutationLog.checkpoint();
+            this.mutationLog = checkpoint == null ? null : mutationLog;
+        }
+    }
+
+    /**
+     * get the checkpoint of the log marking the view
+     * @return the name of the checkpoint, or null if changes are not logged
+     */
+    String getCheckpoint(){
+        return checkpoint;
+    }
+
+    /**
+     * cut off the logged changes that the written snapshot holds
+     * @throws IOException if the log cannot be rewritten
+     */
+    void truncateLog() throws IOException {
+        if(mutationLog != null){
+            mutationLog.truncateBefore(checkpoint);
+        }
+    }
+
+    List<Admin> getAdmins(){
+        return admins;
+    }
+
+    List<Professor> getProfessors(){
+        return professors;
+    }
+
+    List<Course> getCourses(){
+        return courses;
+    }
+
+    List<Student> getStudents(){
+        return students;
+    }
+
+    /**
+     * get the number of students in cold storage when the view was taken
+     * @return the number of cold students
+     */
+    int getColdStudentCount(){
+        return coldStudents.size();
+    }
+
+    /**
+     * read a student of cold storage as it was when the view was taken
+     * @param index of the student, below getColdStudentCount
+     * @return a new student object
+     */
+    Student readColdStudent(int index){
+        return coldStudents.read(index);
+    }
+
+    long getCapturePauseNanos(){
+        return capturePauseNanos;
+    }
+
+    void setCapturePauseNanos(long capturePauseNanos){
+        this.capturePauseNanos = capturePauseNanos;
+    }
+
+    /**
+     * get the enrollments and grades of the student when the view was taken
+     * @param student to look up
+     * @return the state of the student in the view
+     */
+    StudentImage imageOf(Student student){
+        // same lock order as the registration methods: the student first, then the image map
+        synchronized (student){
+            return studentImages.computeIfAbsent(student, StudentImage::new);
+        }
+    }
+
+    /**
+     * get the roster of the course when the view was taken
+     * @param course to look up
+     * @return the students of the course in the view
+     */
+    List<Student> rosterOf(Course course){
+        return courseImages.computeIfAbsent(course, Course::copyStudents);
+    }
+
+    /**
+     * drop the copy of a student once it is written, later changes need no copy either
+     * @param student that is written
+     */
+    void written(Student student){
+        studentImages.put(student, StudentImage.WRITTEN);
+    }
+
+    /**
+     * drop the copy of a roster once it is written, later changes need no copy either
+     * @param course that is written
+     */
+    void written(Course course){
+        courseImages.put(course, WRITTEN_ROSTER);
+    }
+
+    /**
+     * enrollments and grades of a student at the moment the view was taken
+     */
+    static class StudentImage {
+
+        // placeholder for students that are already written
+        static final StudentImage WRITTEN = new StudentImage();
+
+        final List<String> courses;
+        final Map<String, String> grades;
+
+        private StudentImage(){
+            this.courses = new ArrayList<>(0);
+            this.grades = new HashMap<>(0);
+        }
+
+        /**
+         * copy the state of the student, the caller holds the lock of the student
+         */
+        StudentImage(Student student){
+            this.courses = new ArrayList<>(student.getCoursesList());
+            this.grades = new HashMap<>(student.getGrades());
+        }
+    }
+}
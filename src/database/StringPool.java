@@ -0,0 +1,128 @@
+package database;
+
+/**
+ * pool of shared strings for values that repeat across the data files,
+ * such as course IDs, day patterns, grades and professor names.
+ * A value can be looked up straight from a character buffer, so a repeated token
+ * is never copied into a new string. Lookups don't lock, only adding a new value does
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class StringPool {
+
+    // constants
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // instance variables
+    // open addressing table, replaced as a whole when it grows
+    private volatile String[] table = new String[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * get the pooled copy of a string, adding it the first time
+     * @param value to look up
+     * @return the shared string equal to value, null if value is null
+     */
+    public String intern(String value){
+        if(value == null){
+            return null;
+        }
+        String[] current = table;
+        int mask = current.length - 1;
+        for(int i = spread(value.hashCode()) & mask; ; i = (i + 1) & mask){
+            String candidate = current[i];
+            if(candidate == null){
+                break;
+            }
+            if(candidate.equals(value)){
+                return candidate;
+            }
+        }
+        return add(value);
+    }
+
+    /**
+     * get the pooled string with the given characters, adding it the first time
+     * @param chars buffer holding the characters
+     * @param start of the characters in the buffer
+     * @param length number of characters
+     * @return the shared string
+     */
+    public String intern(char[] chars, int start, int length){
+        int hash = 0;
+        for(int i = 0; i < length; i++){
+            // same hash as String.hashCode
+            hash = 31 * hash + chars[start + i];
+        }
+        String[] current = table;
+        int mask = current.length - 1;
+        for(int i = spread(hash) & mask; ; i = (i + 1) & mask){
+            String candidate = current[i];
+            if(candidate == null){
+                break;
+            }
+            if(candidate.length() == length && candidate.hashCode() == hash && matches(candidate, chars, start)){
+                return candidate;
+            }
+        }
+        return add(new String(chars, start, length));
+    }
+
+    /**
+     * get the number of pooled strings
+     * @return the number of different strings in the pool
+     */
+    public synchronized int size(){
+        return size;
+    }
+
+    /**
+     * add a value that was not found, another thread may have added it meanwhile
+     */
+    private synchronized String add(String value){
+        String[] current = table;
+        int mask = current.length - 1;
+        int i = spread(value.hashCode()) & mask;
+        while(current[i] != null){
+            if(current[i].equals(value)){
+                return current[i];
+            }
+            i = (i + 1) & mask;
+        }
+        // keep the table at most half full, so probe sequences stay short
+        if((size + 1) * 2 > current.length){
+            String[] larger = new String[current.length * 2];
+            for(String existing : current){
+                if(existing != null){
+                    int j = spread(existing.hashCode()) & (larger.length - 1);
+                    while(larger[j] != null){
+                        j = (j + 1) & (larger.length - 1);
+                    }
+                    larger[j] = existing;
+                }
+            }
+            i = spread(value.hashCode()) & (larger.length - 1);
+            while(larger[i] != null){
+                i = (i + 1) & (larger.length - 1);
+            }
+            larger[i] = value;
+            table = larger;
+        } else {
+            current[i] = value;
+        }
+        size++;
+        return value;
+    }
+
+    private static boolean matches(String candidate, char[] chars, int start){
+        for(int i = 0; i < candidate.length(); i++){
+            if(candidate.charAt(i) != chars[start + i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash){
+        return hash ^ (hash >>> 16);
+    }
+}
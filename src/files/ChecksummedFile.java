@@ -0,0 +1,688 @@
+package files;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * checksummed container for the data files.
+ * The text of a data file is cut into blocks of whole lines, each stored as its length,
+ * its CRC32C and its bytes. A footer at the end lists the offset, length and CRC32C of every
+ * block, and the last twelve bytes point to the footer, so a file missing its footer
+ * was not completely written.
+ * Reading checks every block and skips the corrupt ones, their bytes are saved once next to
+ * the file with the ".quarantine" suffix, each after a line "# offset N length N crc N",
+ * so one bad block never stops the loading
+ *
+ * Layout: "CSDF" version | blocks: length crc bytes | "CSDX" count (offset length crc)* crc | footer offset "CSDX"
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class ChecksummedFile {
+
+    // constants
+    private static final int MAGIC = 0x43534446;
+    private static final int FOOTER_MAGIC = 0x43534458;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int BLOCK_HEADER_SIZE = 8;
+    private static final int TRAILER_SIZE = 12;
+    private static final int INDEX_ENTRY_SIZE = 16;
+    // blocks are cut at the first line break after this many characters
+    private static final int BLOCK_CHARS = 32 * 1024;
+    // larger lengths can only come from a damaged block header
+    private static final int MAX_BLOCK_SIZE = 64 * 1024 * 1024;
+    // size of the reads of a streaming pass
+    private static final int READ_SIZE = 1024 * 1024;
+    public static final String QUARANTINE_SUFFIX = ".quarantine";
+
+    private ChecksummedFile(){
+    }
+
+    /**
+     * check whether a file starts like a checksummed container
+     * @param path of the file
+     * @return true if the file is a container, false for a plain text file
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isChecksummed(Path path) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            while(header.hasRemaining() && channel.read(header) > 0){
+                // keep reading until the magic number is complete
+            }
+            return !header.hasRemaining() && header.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * create a writer that stores text as a checksummed container.
+     * The footer is written when the writer is closed, which also closes the stream
+     * @param out stream of the container file
+     * @return the writer
+     * @throws IOException if the header cannot be written
+     */
+    public static Writer newWriter(OutputStream out) throws IOException {
+        return new BlockWriter(out);
+    }
+
+    /**
+     * open a checksummed container as text, skipping and quarantining corrupt blocks
+     * @param path of the container
+     * @return a reader over the text of the valid blocks
+     * @throws IOException if the file cannot be opened
+     */
+    public static Reader openReader(Path path) throws IOException {
+        return new BlockReader(path, 0, -1);
+    }
+
+    /**
+     * open part of a checksummed container as text
+     * @param path of the container
+     * @param start offset of the first block, as returned by splitOnBlocks
+     * @param end offset after the last block
+     * @return a reader over the text of the valid blocks in the region
+     * @throws IOException if the file cannot be opened
+     */
+    static Reader openReader(Path path, long start, long end) throws IOException {
+        return new BlockReader(path, start, end);
+    }
+
+    /**
+     * cut a container into regions of whole blocks of about the same size
+     * @param path of the container
+     * @param count number of regions wanted
+     * @return the region boundaries, from the first block to the end of the last one
+     * @throws IOException if the file cannot be read
+     */
+    static long[] splitOnBlocks(Path path, int count) throws IOException {
+        long[] offsets;
+        long end;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Index index = readIndex(channel);
+            if(index != null){
+                offsets = index.offsets;
+                end = index.footerOffset;
+            } else {
+                // without a footer the blocks are found by walking the block headers
+                List<Long> found = new ArrayList<>();
+                try(BlockScanner scanner = new BlockScanner(channel, HEADER_SIZE, -1, false)) {
+                    while(scanner.next()){
+                        found.add(scanner.offset);
+                    }
+                    end = scanner.position;
+                }
+                offsets = new long[found.size()];
+                for(int i = 0; i < offsets.length; i++){
+                    offsets[i] = found.get(i);
+                }
+            }
+        }
+        List<Long> bounds = new ArrayList<>();
+        bounds.add((long) HEADER_SIZE);
+        for(int i = 1; i < count; i++){
+            long offset = offsets.length == 0 ? end : offsets[(int) ((long) offsets.length * i / count)];
+            if(offset > bounds.get(bounds.size() - 1) && offset < end){
+                bounds.add(offset);
+            }
+        }
+        bounds.add(end);
+        long[] result = new long[bounds.size()];
+        for(int i = 0; i < result.length; i++){
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * check a container in one streaming pass: the header, the CRC32C and the header of every block
+     * and the footer against the blocks actually found
+     * @param path of the container
+     * @return the result of the check
+     * @throws IOException if the file cannot be read
+     */
+    public static Verification verify(Path path) throws IOException {
+        Verification result = new Verification(path);
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            result.bytes = channel.size();
+            if(!hasHeader(channel)){
+                result.torn = true;
+                return result;
+            }
+            // the footer finds the blocks past a damaged block header, as when the file is read
+            Index index = readIndex(channel);
+            List<Long> offsets = new ArrayList<>();
+            try(BlockScanner scanner = new BlockScanner(channel, HEADER_SIZE, -1, true)) {
+                scanner.index = index;
+                while(scanner.next()){
+                    offsets.add(scanner.offset);
+                    if(!scanner.valid || !scanner.headerIntact){
+                        result.corruptOffsets.add(scanner.offset);
+                    }
+                }
+                result.blocks = offsets.size();
+                result.torn = scanner.torn;
+            }
+            result.footerValid = index != null && index.offsets.length == offsets.size();
+            for(int i = 0; result.footerValid && i < index.offsets.length; i++){
+                result.footerValid = index.offsets[i] == offsets.get(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * check the magic number and version at the start of the file
+     */
+    private static boolean hasHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        return !header.hasRemaining() && header.getInt(0) == MAGIC && header.getInt(4) == VERSION;
+    }
+
+    /**
+     * read the footer index
+     * @return the index, or null if the file has no valid footer
+     */
+    private static Index readIndex(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if(size < HEADER_SIZE + TRAILER_SIZE + 12){
+            return null;
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+        readFully(channel, trailer, size - TRAILER_SIZE);
+        long footerOffset = trailer.getLong(0);
+        if(trailer.getInt(8) != FOOTER_MAGIC || footerOffset < HEADER_SIZE || footerOffset > size - TRAILER_SIZE - 12){
+            return null;
+        }
+        long footerSize = size - TRAILER_SIZE - footerOffset;
+        if(footerSize > Integer.MAX_VALUE){
+            return null;
+        }
+        ByteBuffer footer = ByteBuffer.allocate((int) footerSize);
+        readFully(channel, footer, footerOffset);
+        int count = footer.getInt(4);
+        if(footer.getInt(0) != FOOTER_MAGIC || count < 0 || 8 + (long) count * INDEX_ENTRY_SIZE + 4 != footerSize){
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(footer.array(), 0, (int) footerSize - 4);
+        if((int) crc.getValue() != footer.getInt((int) footerSize - 4)){
+            return null;
+        }
+        Index index = new Index(count, footerOffset);
+        for(int i = 0; i < count; i++){
+            int entry = 8 + i * INDEX_ENTRY_SIZE;
+            index.offsets[i] = footer.getLong(entry);
+            index.lengths[i] = footer.getInt(entry + 8);
+            index.checksums[i] = footer.getInt(entry + 12);
+        }
+        return index;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()){
+            int read = channel.read(buffer, position);
+            if(read < 0){
+                return;
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * save the bytes of a corrupt block next to the data file, unless they are already saved
+     * because the file was read before
+     */
+    private static synchronized void quarantine(Path path, long offset, ByteBuffer bytes){
+        Path target = Paths.get(path + QUARANTINE_SUFFIX);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes.duplicate());
+        String header = "# offset " + offset + " length " + bytes.remaining() + " crc " + Integer.toHexString((int) crc.getValue()) + "\n";
+        try {
+            if(Files.exists(target) && isQuarantined(target, header)){
+                System.out.println("Skipped corrupt block at offset " + offset + " of " + path + ", already saved in " + target);
+                return;
+            }
+            System.out.println("Skipped corrupt block at offset " + offset + " of " + path + ", saved to " + target);
+            try(FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer line = ByteBuffer.wrap(header.getBytes(StandardCharsets.UTF_8));
+                while(line.hasRemaining()){
+                    out.write(line);
+                }
+                while(bytes.hasRemaining()){
+                    out.write(bytes);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Cannot save the corrupt block: " + e.getMessage());
+        }
+    }
+
+    /**
+     * look for a block in a quarantine file, walking the header lines of the saved blocks
+     * @param target quarantine file
+     * @param header line of the block
+     * @return true if the block is already saved
+     */
+    private static boolean isQuarantined(Path target, String header) throws IOException {
+        try(InputStream in = new BufferedInputStream(Files.newInputStream(target))) {
+            StringBuilder line = new StringBuilder();
+            while(true){
+                line.setLength(0);
+                for(int b = in.read(); b != '\n'; b = in.read()){
+                    if(b < 0){
+                        return false;
+                    }
+                    line.append((char) b);
+                }
+                if(header.equals(line + "\n")){
+                    return true;
+                }
+                // "# offset N length N crc N", anything else was not written by quarantine
+                String[] fields = line.toString().split(" ");
+                if(fields.length != 7 || !fields[0].equals("#") || !fields[3].equals("length")){
+                    return false;
+                }
+                long length;
+                try {
+                    length = Long.parseLong(fields[4]);
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+                while(length > 0){
+                    long skipped = in.skip(length);
+                    if(skipped <= 0){
+                        return false;
+                    }
+                    length -= skipped;
+                }
+            }
+        }
+    }
+
+    /**
+     * result of verify
+     */
+    public static class Verification {
+
+        private final Path path;
+        private long bytes;
+        private int blocks;
+        private final List<Long> corruptOffsets = new ArrayList<>();
+        private boolean torn;
+        private boolean footerValid;
+
+        private Verification(Path path){
+            this.path = path;
+        }
+
+        /**
+         * check whether the file is complete and every block is intact
+         * @return true if nothing is wrong with the file
+         */
+        public boolean isValid(){
+            return !torn && footerValid && corruptOffsets.isEmpty();
+        }
+
+        /**
+         * get the size of the checked file
+         * @return the number of bytes read
+         */
+        public long getBytes(){
+            return bytes;
+        }
+
+        /**
+         * get the number of blocks found
+         * @return the number of blocks
+         */
+        public int getBlocks(){
+            return blocks;
+        }
+
+        /**
+         * get the blocks whose bytes do not match their checksum
+         * @return the offsets of the corrupt blocks
+         */
+        public List<Long> getCorruptOffsets(){
+            return corruptOffsets;
+        }
+
+        /**
+         * check whether the file ends in the middle of a block or has no header
+         * @return true if the file was not completely written
+         */
+        public boolean isTorn(){
+            return torn;
+        }
+
+        /**
+         * check whether the footer is present and lists exactly the blocks found
+         * @return true if the footer is valid
+         */
+        public boolean isFooterValid(){
+            return footerValid;
+        }
+
+        @Override
+        public String toString(){
+            if(isValid()){
+                return path + ": " + blocks + " blocks OK";
+            }
+            return path + ": " + blocks + " blocks, " + corruptOffsets.size() + " corrupt"
+                    + (torn ? ", incomplete" : "") + (footerValid ? "" : ", no valid footer");
+        }
+    }
+
+    /**
+     * offsets and checksums of the blocks, as listed by the footer
+     */
+    private static class Index {
+        final long[] offsets;
+        final int[] lengths;
+        final int[] checksums;
+        final long footerOffset;
+
+        Index(int count, long footerOffset){
+            this.offsets = new long[count];
+            this.lengths = new int[count];
+            this.checksums = new int[count];
+            this.footerOffset = footerOffset;
+        }
+    }
+
+    /**
+     * walk the blocks of a container in order with large sequential reads
+     */
+    private static class BlockScanner implements Closeable {
+
+        private final FileChannel channel;
+        private final boolean ownsChannel;
+        // offset after the region to scan
+        private final long end;
+        // false to only walk the headers, without reading the bytes of the blocks
+        private final boolean checkBlocks;
+        // footer of the file if it is valid, its lengths and checksums win over damaged block headers
+        private Index index;
+        private final CRC32C crc = new CRC32C();
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(READ_SIZE);
+        // file offset of the first byte in the buffer
+        private long bufferStart;
+        // file offset of the next block
+        long position;
+        // current block
+        long offset;
+        int storedCrc;
+        boolean valid;
+        // false if the block header disagrees with the footer
+        boolean headerIntact;
+        ByteBuffer payload;
+        // true if the file ended inside a block or a block header is damaged
+        boolean torn;
+
+        BlockScanner(FileChannel channel, long start, long end, boolean checkBlocks) throws IOException {
+            this(channel, false, start, end, checkBlocks);
+        }
+
+        BlockScanner(FileChannel channel, boolean ownsChannel, long start, long end, boolean checkBlocks) throws IOException {
+            this.channel = channel;
+            this.ownsChannel = ownsChannel;
+            this.end = end < 0 ? channel.size() : Math.min(end, channel.size());
+            this.checkBlocks = checkBlocks;
+            this.position = start;
+            this.bufferStart = start;
+            buffer.limit(0);
+        }
+
+        /**
+         * move to the next block
+         * @return false at the end of the region, the footer, or a damaged block header
+         */
+        boolean next() throws IOException {
+            if(position >= end || (index != null && position >= index.footerOffset)){
+                return false;
+            }
+            if(position + BLOCK_HEADER_SIZE > end || !fill(position, BLOCK_HEADER_SIZE)){
+                torn = true;
+                return false;
+            }
+            int headerLength = buffer.getInt((int) (position - bufferStart));
+            int headerCrc = buffer.getInt((int) (position - bufferStart) + 4);
+            int indexed = index == null ? -1 : Arrays.binarySearch(index.offsets, position);
+            if(indexed < 0 && headerLength == FOOTER_MAGIC){
+                return false;
+            }
+            int length = indexed >= 0 ? index.lengths[indexed] : headerLength;
+            storedCrc = indexed >= 0 ? index.checksums[indexed] : headerCrc;
+            headerIntact = headerLength == length && headerCrc == storedCrc;
+            if(length < 0 || length > MAX_BLOCK_SIZE || position + BLOCK_HEADER_SIZE + length > end){
+                torn = true;
+                return false;
+            }
+            offset = position;
+            position += BLOCK_HEADER_SIZE + length;
+            if(!checkBlocks){
+                return true;
+            }
+            if(!fill(offset, BLOCK_HEADER_SIZE + length)){
+                torn = true;
+                return false;
+            }
+            int from = (int) (offset - bufferStart) + BLOCK_HEADER_SIZE;
+            payload = buffer.duplicate();
+            payload.limit(from + length).position(from);
+            crc.reset();
+            crc.update(payload.duplicate());
+            valid = (int) crc.getValue() == storedCrc;
+            return true;
+        }
+
+        /**
+         * make sure the buffer holds the bytes from an offset on
+         * @return false if the file ends first
+         */
+        private boolean fill(long from, int length) throws IOException {
+            long bufferEnd = bufferStart + buffer.limit();
+            if(from >= bufferStart && from + length <= bufferEnd){
+                return true;
+            }
+            // keep the bytes already read from the offset on, then read after them
+            int kept = from >= bufferStart && from < bufferEnd ? (int) (bufferEnd - from) : 0;
+            if(length > buffer.capacity()){
+                ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(length, buffer.capacity() * 2));
+                ByteBuffer rest = buffer.duplicate();
+                rest.position(rest.limit() - kept);
+                larger.put(rest);
+                buffer = larger;
+            } else {
+                buffer.position(buffer.limit() - kept);
+                buffer.compact();
+            }
+            bufferStart = from;
+            long next = from + kept;
+            buffer.limit(buffer.capacity());
+            while(buffer.position() < length){
+                int read = channel.read(buffer, next);
+                if(read < 0){
+                    break;
+                }
+                next += read;
+            }
+            buffer.flip();
+            return buffer.limit() >= length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(ownsChannel){
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * text of the valid blocks of a region, decoded one block at a time
+     */
+    private static class BlockReader extends Reader {
+
+        private final Path path;
+        private final BlockScanner scanner;
+        private CharBuffer chars = CharBuffer.allocate(0);
+        private boolean finished;
+
+        BlockReader(Path path, long start, long end) throws IOException {
+            this.path = path;
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            if(start == 0){
+                if(!hasHeader(channel)){
+                    channel.close();
+                    throw new IOException("Not a checksummed data file: " + path);
+                }
+                start = HEADER_SIZE;
+            }
+            this.scanner = new BlockScanner(channel, true, start, end, true);
+            scanner.index = readIndex(channel);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if(length == 0){
+                return 0;
+            }
+            while(!chars.hasRemaining()){
+                if(finished || !scanner.next()){
+                    if(!finished && scanner.torn){
+                        System.out.println("Data file " + path + " ends with an incomplete block at offset "
+                                + scanner.position + ", the rest is skipped");
+                    }
+                    finished = true;
+                    return -1;
+                }
+                if(!scanner.valid){
+                    quarantine(path, scanner.offset, scanner.payload);
+                    continue;
+                }
+                // blocks end on line breaks, so no character is split between two blocks
+                chars = StandardCharsets.UTF_8.decode(scanner.payload);
+            }
+            int count = Math.min(length, chars.remaining());
+            chars.get(buffer, offset, count);
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            scanner.close();
+        }
+    }
+
+    /**
+     * cut the text into blocks of whole lines and write the footer on close
+     */
+    private static class BlockWriter extends Writer {
+
+        private final OutputStream out;
+        private final StringBuilder pending = new StringBuilder(BLOCK_CHARS * 2);
+        private final CRC32C crc = new CRC32C();
+        private final ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        // offset, length and checksum of the blocks written so far
+        private long[] offsets = new long[64];
+        private int[] lengths = new int[64];
+        private int[] checksums = new int[64];
+        private int blocks;
+        private long position;
+        private boolean closed;
+
+        BlockWriter(OutputStream out) throws IOException {
+            this.out = out;
+            ByteBuffer fileHeader = ByteBuffer.allocate(HEADER_SIZE);
+            fileHeader.putInt(MAGIC).putInt(VERSION);
+            out.write(fileHeader.array());
+            position = HEADER_SIZE;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            if(closed){
+                throw new IOException("Writer is closed");
+            }
+            pending.append(buffer, offset, length);
+            if(pending.length() >= BLOCK_CHARS){
+                int cut = pending.lastIndexOf("\n") + 1;
+                if(cut > 0){
+                    writeBlock(cut);
+                }
+            }
+        }
+
+        /**
+         * write the first characters of the pending text as one block
+         */
+        private void writeBlock(int length) throws IOException {
+            byte[] bytes = pending.substring(0, length).getBytes(StandardCharsets.UTF_8);
+            pending.delete(0, length);
+            crc.reset();
+            crc.update(bytes, 0, bytes.length);
+            if(blocks == offsets.length){
+                offsets = Arrays.copyOf(offsets, blocks * 2);
+                lengths = Arrays.copyOf(lengths, blocks * 2);
+                checksums = Arrays.copyOf(checksums, blocks * 2);
+            }
+            offsets[blocks] = position;
+            lengths[blocks] = bytes.length;
+            checksums[blocks] = (int) crc.getValue();
+            header.clear();
+            header.putInt(bytes.length).putInt(checksums[blocks]);
+            out.write(header.array());
+            out.write(bytes);
+            position += BLOCK_HEADER_SIZE + bytes.length;
+            blocks++;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(closed){
+                return;
+            }
+            closed = true;
+            try {
+                if(pending.length() > 0){
+                    writeBlock(pending.length());
+                }
+                ByteBuffer footer = ByteBuffer.allocate(8 + blocks * INDEX_ENTRY_SIZE + 4 + TRAILER_SIZE);
+                footer.putInt(FOOTER_MAGIC).putInt(blocks);
+                for(int i = 0; i < blocks; i++){
+                    footer.putLong(offsets[i]).putInt(lengths[i]).putInt(checksums[i]);
+                }
+                crc.reset();
+                crc.update(footer.array(), 0, footer.position());
+                footer.putInt((int) crc.getValue());
+                footer.putLong(position).putInt(FOOTER_MAGIC);
+                out.write(footer.array());
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package files;
+
+import courses.Course;
+import database.Database;
+import database.StringPool;
+import roles.Professor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * watch the course and professor files and apply edits to the running database.
+ * Each file is compared with the version read before, and only the records that were
+ * added, removed or changed are applied. Enrollments, rosters and waitlists stay in place
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class DataFileWatcher implements Closeable {
+
+    // constants
+    // editors often write a file in several steps, wait until it is quiet before reloading
+    private static final long SETTLE_MILLIS = 200;
+
+    // instance variables
+    private final Database database;
+    private final Path directory;
+    // records of the files as last read, keyed by ID, in file order
+    private Map<String, CourseRecord> courses;
+    private Map<String, ProfessorRecord> professors;
+    private WatchService watchService;
+    private Thread watcherThread;
+    private long reloadCount;
+
+    /**
+     * remember the current course and professor files of the directory
+     * @param directory holding the data files
+     */
+    public DataFileWatcher(Path directory){
+        this.database = Database.getInstance();
+        this.directory = directory;
+        this.courses = readCourses(locate(FileInfoReader.COURSE_FILE_PATH));
+        this.professors = readProfessors(locate(FileInfoReader.PROFESSOR_FILE_PATH));
+    }
+
+    /**
+     * start watching the directory on a background thread
+     * @throws IOException if the directory cannot be watched
+     */
+    public synchronized void start() throws IOException {
+        if(watchService != null){
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watcherThread = new Thread(this::watch, "data-file-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    /**
+     * wait for changes and reload the changed files once they settle
+     */
+    private void watch(){
+        WatchService service = watchService;
+        try {
+            while(true){
+                Set<String> changed = new HashSet<>();
+                WatchKey key = service.take();
+                // collect events until the files are quiet
+                while(key != null){
+                    for(WatchEvent<?> event : key.pollEvents()){
+                        if(event.context() instanceof Path){
+                            changed.add(((Path) event.context()).getFileName().toString().toLowerCase());
+                        }
+                    }
+                    key.reset();
+                    key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if(changed.contains(FileInfoReader.PROFESSOR_FILE_PATH)){
+                    reloadProfessors();
+                }
+                if(changed.contains(FileInfoReader.COURSE_FILE_PATH)){
+                    reloadCourses();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // the watcher is closed
+        }
+    }
+
+    /**
+     * apply the changes of the course file
+     * @return the number of courses added, removed or changed
+     */
+    public synchronized int reloadCourses(){
+        Map<String, CourseRecord> current;
+        try {
+            current = readCourses(locate(FileInfoReader.COURSE_FILE_PATH));
+        } catch (RuntimeException e) {
+            // the file may be half written, the next change reloads it again
+            System.out.println("Reload of " + FileInfoReader.COURSE_FILE_PATH + " skipped: " + e.getMessage());
+            return 0;
+        }
+        int added = 0;
+        int removed = 0;
+        int changed = 0;
+        for(String id : courses.keySet()){
+            if(!current.containsKey(id) && database.deleteCourse(id)){
+                removed++;
+            }
+        }
+        for(CourseRecord record : current.values()){
+            CourseRecord previous = courses.get(record.id);
+            if(record.equals(previous)){
+                continue;
+            }
+            Course course = record.toCourse(database);
+            if(database.getCourseById(record.id) != null){
+                if(database.replaceCourse(course) != null){
+                    changed++;
+                }
+            } else if(database.addCourse(course)){
+                added++;
+            }
+        }
+        courses = current;
+        reloadCount++;
+        System.out.println("Reloaded " + FileInfoReader.COURSE_FILE_PATH + ": " + added + " added, "
+                + removed + " removed, " + changed + " changed");
+        return added + removed + changed;
+    }
+
+    /**
+     * apply the changes of the professor file
+     * @return the number of professors added, removed or changed
+     */
+    public synchronized int reloadProfessors(){
+        Map<String, ProfessorRecord> current;
+        try {
+            current = readProfessors(locate(FileInfoReader.PROFESSOR_FILE_PATH));
+        } catch (RuntimeException e) {
+            System.out.println("Reload of " + FileInfoReader.PROFESSOR_FILE_PATH + " skipped: " + e.getMessage());
+            return 0;
+        }
+        int added = 0;
+        int removed = 0;
+        int changed = 0;
+        for(String id : professors.keySet()){
+            if(!current.containsKey(id) && database.deleteProfessor(id)){
+                removed++;
+            }
+        }
+        for(ProfessorRecord record : current.values()){
+            ProfessorRecord previous = professors.get(record.id);
+            if(record.equals(previous)){
+                continue;
+            }
+            Professor professor = new Professor(record.id, record.name, record.username, record.password);
+            if(database.getProfessorById(record.id) != null){
+                if(database.replaceProfessor(professor) != null){
+                    changed++;
+                }
+            } else if(database.addUser(professor)){
+                added++;
+            }
+        }
+        professors = current;
+        reloadCount++;
+        System.out.println("Reloaded " + FileInfoReader.PROFESSOR_FILE_PATH + ": " + added + " added, "
+                + removed + " removed, " + changed + " changed");
+        return added + removed + changed;
+    }
+
+    /**
+     * get the number of reloads done so far
+     * @return the number of files reloaded
+     */
+    public synchronized long getReloadCount(){
+        return reloadCount;
+    }
+
+    /**
+     * stop watching the directory
+     * @throws IOException if the watch service cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(watchService != null){
+            watchService.close();
+            watchService = null;
+        }
+    }
+
+    /**
+     * find a data file in the directory, the name is matched ignoring case
+     */
+    private Path locate(String fileName){
+        File[] files = directory.toFile().listFiles();
+        if(files != null){
+            for(File file : files){
+                if(file.getName().equalsIgnoreCase(fileName)){
+                    return file.toPath();
+                }
+            }
+        }
+        return directory.resolve(fileName);
+    }
+
+    private Map<String, CourseRecord> readCourses(Path path){
+        Map<String, CourseRecord> records = new LinkedHashMap<>();
+        if(!path.toFile().exists()){
+            return records;
+        }
+        try(RecordReader reader = new RecordReader(FileInfoReader.openDataFile(path))) {
+            while(reader.nextRecord()){
+                CourseRecord record = new CourseRecord();
+                StringPool pool = database.getStringPool();
+                record.id = reader.nextField(';', pool);
+                record.name = reader.nextField(';', pool);
+                record.professorName = reader.nextField(';', pool);
+                record.weekDay = reader.nextField(';', pool);
+                record.start = reader.nextMinuteOfDay(';');
+                record.end = reader.nextMinuteOfDay(';');
+                record.capacity = reader.nextInt(';');
+                records.put(record.id, record);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return records;
+    }
+
+    private static Map<String, ProfessorRecord> readProfessors(Path path){
+        Map<String, ProfessorRecord> records = new LinkedHashMap<>();
+        if(!path.toFile().exists()){
+            return records;
+        }
+        try(RecordReader reader = new RecordReader(FileInfoReader.openDataFile(path))) {
+            while(reader.nextRecord()){
+                ProfessorRecord record = new ProfessorRecord();
+                record.name = reader.nextField(';');
+                record.id = reader.nextField(';');
+                record.username = reader.nextField(';');
+                record.password = reader.nextField(';');
+                records.put(record.id, record);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return records;
+    }
+
+    /**
+     * one line of the course file
+     */
+    private static class CourseRecord {
+        String id;
+        String name;
+        String professorName;
+        String weekDay;
+        int start;
+        int end;
+        int capacity;
+
+        Course toCourse(Database database){
+            Professor professor = database.getCourseProfessor(professorName);
+            return new Course(id, name, professor, weekDay,
+                    FileInfoReader.timeOf(start), FileInfoReader.timeOf(end), capacity);
+        }
+
+        @Override
+        public boolean equals(Object other){
+            if(!(other instanceof CourseRecord)){
+                return false;
+            }
+            CourseRecord record = (CourseRecord) other;
+            return id.equals(record.id) && name.equals(record.name) && professorName.equals(record.professorName)
+                    && weekDay.equals(record.weekDay) && start == record.start && end == record.end
+                    && capacity == record.capacity;
+        }
+
+        @Override
+        public int hashCode(){
+            return Objects.hash(id, name, professorName, weekDay, start, end, capacity);
+        }
+    }
+
+    /**
+     * one line of the professor file
+     */
+    private static class ProfessorRecord {
+        String name;
+        String id;
+        String username;
+        String password;
+
+        @Override
+        public boolean equals(Object other){
+            if(!(other instanceof ProfessorRecord)){
+                return false;
+            }
+            ProfessorRecord record = (ProfessorRecord) other;
+            return id.equals(record.id) && name.equals(record.name) && username.equals(record.username)
+                    && password.equals(record.password);
+        }
+
+        @Override
+        public int hashCode(){
+            return Objects.hash(id, name, username, password);
+        }
+    }
+}
@@ -5,19 +5,24 @@ package files;
 
 import courses.Course;
 import database.Database;
+import database.StringPool;
 import roles.Admin;
 import roles.User;
 import roles.Student;
 import roles.Professor;
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 
 /**
@@ -28,17 +33,44 @@ public class FileInfoReader {
 	
 	// instance variables
     private final Database database;
-    private final String COURSE_FILE_PATH = "courseinfo.txt";
-    private final String STUDENT_FILE_PATH = "studentinfo.txt";
-    private final String PROFESSOR_FILE_PATH = "profinfo.txt";
-    private final String ADMIN_FILE_PATH = "admininfo.txt";
+    public static final String COURSE_FILE_PATH = "courseinfo.txt";
+    public static final String STUDENT_FILE_PATH = "studentinfo.txt";
+    public static final String PROFESSOR_FILE_PATH = "profinfo.txt";
+    public static final String ADMIN_FILE_PATH = "admininfo.txt";
+    // times already created by timeOf, one per minute of the day
+    private static final LocalTime[] TIMES = new LocalTime[24 * 60];
+    // true to read files through memory mapping instead of a file reader
+    private final boolean memoryMapped;
+    // number of threads parsing the student file, 1 parses it on the calling thread
+    private final int parallelism;
 
     // constructor
     /**
      * initialize a single instance of database to be populated with data
      */
     public FileInfoReader(){
+        this(false);
+    }
+
+    /**
+     * initialize a single instance of database to be populated with data
+     * @param memoryMapped true to memory map the files and decode them as UTF-8,
+     *                     which is faster for very large files
+     */
+    public FileInfoReader(boolean memoryMapped){
+        this(memoryMapped, 1);
+    }
+
+    /**
+     * initialize a single instance of database to be populated with data
+     * @param memoryMapped true to memory map the files and decode them as UTF-8,
+     *                     which is faster for very large files
+     * @param parallelism number of threads parsing the student file
+     */
+    public FileInfoReader(boolean memoryMapped, int parallelism){
         database = Database.getInstance();
+        this.memoryMapped = memoryMapped;
+        this.parallelism = Math.max(1, parallelism);
     }
 
     /**
@@ -49,7 +81,11 @@ public class FileInfoReader {
         parseAdmin(ADMIN_FILE_PATH);
         parseProfessor(PROFESSOR_FILE_PATH);
         parseCourse(COURSE_FILE_PATH);
-        parseStudent(STUDENT_FILE_PATH);
+        if(parallelism > 1){
+            parseStudentParallel(STUDENT_FILE_PATH);
+        } else {
+            parseStudent(STUDENT_FILE_PATH);
+        }
     }
 
 
@@ -58,56 +94,144 @@ public class FileInfoReader {
      * @param path of student data
      */
     private void parseStudent(String path){
-        File file = new File(path);
-        try(FileReader fileReader = new FileReader(file)) {
-            BufferedReader bufferedReader = new BufferedReader(fileReader);
-            String line = bufferedReader.readLine();
-            while (line != null) {
-                // split text to tokens
-                String[] tokens = line.split(";");
-                // parse each filed
-                String id = tokens[0].trim();
-                String name = tokens[1].trim();
-                String username = tokens[2].trim();
-                String password = tokens[3].trim();
-                Student student = new Student(id, name, username, password);
+        try(RecordReader reader = new RecordReader(openReader(path))) {
+            while (reader.nextRecord()) {
                 // add user to database
-                database.addUser(student);
-                // process student's grade
-                Map<String, String> courseMap = parseStudentCourses(tokens[4]);
-                for(String courseId: courseMap.keySet()){
-                    String grade = courseMap.get(courseId);
-                    student.addCourseWithGrade(courseId, grade);
+                database.addUser(readStudent(reader));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * parse student information on several threads and add it to the database.
+     * The file is cut into chunks on line boundaries and each chunk is parsed on a fork-join pool.
+     * The parsed students are added in file order, so duplicated IDs and usernames
+     * are handled exactly as in the single threaded path
+     * @param path of student data
+     */
+    private void parseStudentParallel(String path){
+        Path file = Paths.get(path);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // a checksummed file is cut between its blocks, which always end on a line break
+            boolean checksummed = ChecksummedFile.isChecksummed(file);
+            long[] bounds = checksummed ? ChecksummedFile.splitOnBlocks(file, parallelism) : splitOnLines(file, parallelism);
+            List<ForkJoinTask<List<Student>>> chunks = new ArrayList<>();
+            for(int i = 0; i + 1 < bounds.length; i++){
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                chunks.add(pool.submit(() -> parseStudentChunk(file, checksummed, start, end)));
+            }
+            // merge the chunks in file order
+            for(ForkJoinTask<List<Student>> chunk : chunks){
+                for(Student student : chunk.join()){
+                    database.addUser(student);
                 }
-                // read next line
-                line = bufferedReader.readLine();
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            pool.shutdown();
         }
     }
 
     /**
-     * parse students data from tokens array
-     * @param token containing course data of student
-     * @return a map of course IDs and grades
+     * parse the students in one chunk of the student file
+     * @param file of student data
+     * @param checksummed true if the file is a checksummed container
+     * @param start offset of the chunk
+     * @param end offset after the chunk
+     * @return the students of the chunk, in file order
      */
-    private Map<String, String> parseStudentCourses(String token){
-        // split course
-        String[] courses = token.split(",");
-        // parse courses
-        List<String[]> courseList = new ArrayList<>();
-
-        for (String course : courses) {
-            courseList.add(course.trim().split(":"));
+    private List<Student> parseStudentChunk(Path file, boolean checksummed, long start, long end){
+        List<Student> students = new ArrayList<>();
+        Reader chunk;
+        try {
+            chunk = checksummed ? ChecksummedFile.openReader(file, start, end) : new MappedFileReader(file, start, end);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        try(RecordReader reader = new RecordReader(chunk)) {
+            while (reader.nextRecord()) {
+                students.add(readStudent(reader));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
+        return students;
+    }
 
-        Map<String, String> courseMap = new HashMap<>();
+    /**
+     * cut a file into chunks of about the same size, each ending right after a line break
+     * @param file to cut
+     * @param count number of chunks wanted
+     * @return the chunk boundaries, from 0 up to the file size
+     * @throws IOException if the file cannot be read
+     */
+    private static long[] splitOnLines(Path file, int count) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Long> bounds = new ArrayList<>();
+            bounds.add(0L);
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            for(int i = 1; i < count; i++){
+                long offset = Math.max(size * i / count, bounds.get(bounds.size() - 1));
+                // move the boundary forward to the byte after the next line break
+                long boundary = size;
+                while(offset < size){
+                    buffer.clear();
+                    int read = channel.read(buffer, offset);
+                    if(read <= 0){
+                        break;
+                    }
+                    int newline = -1;
+                    for(int j = 0; j < read; j++){
+                        if(buffer.get(j) == '\n'){
+                            newline = j;
+                            break;
+                        }
+                    }
+                    if(newline >= 0){
+                        boundary = offset + newline + 1;
+                        break;
+                    }
+                    offset += read;
+                }
+                if(boundary > bounds.get(bounds.size() - 1) && boundary < size){
+                    bounds.add(boundary);
+                }
+            }
+            bounds.add(size);
+            long[] result = new long[bounds.size()];
+            for(int i = 0; i < result.length; i++){
+                result[i] = bounds.get(i);
+            }
+            return result;
+        }
+    }
 
-        for (String[] strings : courseList) {
-            courseMap.put(strings[0].trim(), strings[1].trim());
+    /**
+     * parse one student line, including the grades
+     * @param reader positioned on the line
+     * @return the student with their grades
+     */
+    private Student readStudent(RecordReader reader){
+        StringPool pool = database.getStringPool();
+        // parse each filed
+        String id = reader.nextField(';');
+        String name = reader.nextField(';');
+        String username = reader.nextField(';');
+        String password = reader.nextField(';');
+        Student student = new Student(id, name, username, password);
+        // process student's grades, e.g. "CIT592: A, CIT593: A-"
+        while (reader.hasNextField()) {
+            String courseId = reader.nextField(':', pool);
+            String grade = reader.nextField(',', pool);
+            student.addCourseWithGrade(courseId, grade);
         }
-        return courseMap;
+        return student;
     }
 
     /**
@@ -115,19 +239,14 @@ public class FileInfoReader {
      * @param path of professor data
      */
     private void parseProfessor(String path){
-        File file = new File(path);
-        try(FileReader fileReader = new FileReader(file)) {
-            BufferedReader bufferedReader = new BufferedReader(fileReader);
-            String line = bufferedReader.readLine();
-            while (line != null) {
-                String[] tokens = line.split(";");
-                String name = tokens[0].trim();
-                String id = tokens[1].trim();
-                String username = tokens[2].trim();
-                String password = tokens[3].trim();
+        try(RecordReader reader = new RecordReader(openReader(path))) {
+            while (reader.nextRecord()) {
+                String name = reader.nextField(';', database.getStringPool());
+                String id = reader.nextField(';');
+                String username = reader.nextField(';');
+                String password = reader.nextField(';');
                 Professor professor = new Professor(id, name, username, password);
                 database.addUser(professor);
-                line = bufferedReader.readLine();
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -139,19 +258,14 @@ public class FileInfoReader {
      * @param path of administrator data
      */
     private void parseAdmin(String path){
-        File file = new File(path);
-        try(FileReader fileReader = new FileReader(file)) {
-            BufferedReader bufferedReader = new BufferedReader(fileReader);
-            String line = bufferedReader.readLine();
-            while (line != null) {
-                String[] tokens = line.split(";");
-                String id = tokens[0].trim();
-                String name = tokens[1].trim();
-                String username = tokens[2].trim();
-                String password = tokens[3].trim();
+        try(RecordReader reader = new RecordReader(openReader(path))) {
+            while (reader.nextRecord()) {
+                String id = reader.nextField(';');
+                String name = reader.nextField(';');
+                String username = reader.nextField(';');
+                String password = reader.nextField(';');
                 Admin admin = new Admin(id, name, username, password);
                 database.addUser(admin);
-                line = bufferedReader.readLine();
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -163,28 +277,65 @@ public class FileInfoReader {
      * @param path of course list data
      */
     private void parseCourse(String path){
-        File file = new File(path);
-        try(FileReader fileReader = new FileReader(file)) {
-            BufferedReader bufferedReader = new BufferedReader(fileReader);
-            String line = bufferedReader.readLine();
-            while (line != null) {
-                String[] tokens = line.split(";");
-                String id = tokens[0].trim();
-                String name = tokens[1].trim();
-                String professorName = tokens[2].trim();
-                String weekDay = tokens[3].trim();
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("H:mm");
-                LocalTime startTime = LocalTime.parse(tokens[4].trim(), formatter);
-                LocalTime endTime = LocalTime.parse(tokens[5].trim(), formatter);
-                int capacity = Integer.parseInt(tokens[6].trim());
-
-                Professor professor = database.getProfessorByName(professorName);
+        try(RecordReader reader = new RecordReader(openReader(path))) {
+            while (reader.nextRecord()) {
+                // course values repeat in the grades and on other sections, keep one copy of each
+                StringPool pool = database.getStringPool();
+                String id = reader.nextField(';', pool);
+                String name = reader.nextField(';', pool);
+                String professorName = reader.nextField(';', pool);
+                String weekDay = reader.nextField(';', pool);
+                LocalTime startTime = timeOf(reader.nextMinuteOfDay(';'));
+                LocalTime endTime = timeOf(reader.nextMinuteOfDay(';'));
+                int capacity = reader.nextInt(';');
+
+                Professor professor = database.getCourseProfessor(professorName);
                 Course course = new Course(id, name, professor, weekDay, startTime, endTime, capacity);
                 database.addCourse(course);
-                line = bufferedReader.readLine();
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * open a data file in the configured mode
+     * @param path of the file
+     * @return a reader over the file's characters
+     * @throws IOException if the file cannot be opened
+     */
+    private Reader openReader(String path) throws IOException {
+        Path file = Paths.get(path);
+        if(memoryMapped && !ChecksummedFile.isChecksummed(file)){
+            return new MappedFileReader(file);
+        }
+        return openDataFile(file);
+    }
+
+    /**
+     * open a data file written either as plain text or as a checksummed container
+     * @param path of the file
+     * @return a reader over the file's characters
+     * @throws IOException if the file cannot be opened
+     */
+    static Reader openDataFile(Path path) throws IOException {
+        if(ChecksummedFile.isChecksummed(path)){
+            return ChecksummedFile.openReader(path);
+        }
+        return new FileReader(path.toFile());
+    }
+
+    /**
+     * get the time for a minute of the day, shared so that parsing doesn't create new times
+     * @param minuteOfDay minutes since midnight
+     * @return the time
+     */
+    static LocalTime timeOf(int minuteOfDay){
+        LocalTime time = TIMES[minuteOfDay];
+        if(time == null){
+            time = LocalTime.of(minuteOfDay / 60, minuteOfDay % 60);
+            TIMES[minuteOfDay] = time;
+        }
+        return time;
+    }
 }
@@ -0,0 +1,223 @@
+package files;
+
+import courses.Course;
+import database.Database;
+import database.MutationLog;
+import roles.Professor;
+import roles.Student;
+import roles.User;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * write the database back to the four data files read by FileInfoReader.
+ * Records are streamed from copies of the database lists through a large buffer, one line at a time,
+ * so the maps are never iterated while they change. Each file is written next to
+ * the target and renamed when complete, readers never see a half written file
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class FileInfoWriter {
+
+    // constants
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // instance variables
+    private final Database database;
+    // line being built, reused for every record
+    private final StringBuilder line = new StringBuilder(256);
+    // true to write the files as checksummed containers
+    private final boolean checksummed;
+
+    /**
+     * create a writer for the single instance of database
+     */
+    public FileInfoWriter(){
+        this(false);
+    }
+
+    /**
+     * create a writer for the single instance of database
+     * @param checksummed true to write the files as checksummed containers, see ChecksummedFile
+     */
+    public FileInfoWriter(boolean checksummed){
+        database = Database.getInstance();
+        this.checksummed = checksummed;
+    }
+
+    /**
+     * write all four data files
+     * @param directory to write the files to
+     * @return the number of records written
+     */
+    public long writeFiles(String directory){
+        Path base = Paths.get(directory);
+        long records = 0;
+        records += writeAdmins(base.resolve(FileInfoReader.ADMIN_FILE_PATH));
+        records += writeProfessors(base.resolve(FileInfoReader.PROFESSOR_FILE_PATH));
+        records += writeCourses(base.resolve(FileInfoReader.COURSE_FILE_PATH));
+        records += writeStudents(base.resolve(FileInfoReader.STUDENT_FILE_PATH));
+        return records;
+    }
+
+    /**
+     * write the admins as "id; name; username; password"
+     * @param path of the admin file
+     * @return the number of admins written
+     */
+    public long writeAdmins(Path path){
+        return write(path, out -> {
+            long count = 0;
+            for(User admin : database.copyAdmins()){
+                line.append(admin.getId()).append("; ").append(admin.getName()).append("; ")
+                        .append(admin.getUsername()).append("; ").append(admin.getPassword());
+                endLine(out);
+                count++;
+            }
+            return count;
+        });
+    }
+
+    /**
+     * write the professors as "name; id; username; password"
+     * @param path of the professor file
+     * @return the number of professors written
+     */
+    public long writeProfessors(Path path){
+        return write(path, out -> {
+            long count = 0;
+            for(User professor : database.copyProfessors()){
+                line.append(professor.getName()).append("; ").append(professor.getId()).append("; ")
+                        .append(professor.getUsername()).append("; ").append(professor.getPassword());
+                endLine(out);
+                count++;
+            }
+            return count;
+        });
+    }
+
+    /**
+     * write the courses as "id; name; professor name; days; start; end; capacity".
+     * The professor ID is written instead of a name several professors share, see Database.getCourseProfessor
+     * @param path of the course file
+     * @return the number of courses written
+     */
+    public long writeCourses(Path path){
+        return write(path, out -> {
+            long count = 0;
+            for(Course course : database.copyCourses()){
+                Professor professor = course.getProfessor();
+                boolean sharedName = database.getProfessorsByName(professor.getName()).size() > 1;
+                line.append(course.getId()).append("; ").append(course.getName()).append("; ")
+                        .append(sharedName ? professor.getId() : professor.getName()).append("; ")
+                        .append(course.getWeekDay()).append("; ")
+                        .append(MutationLog.formatTime(course.getStartTime())).append("; ")
+                        .append(MutationLog.formatTime(course.getEndTime())).append("; ")
+                        .append(course.getCapacity());
+                endLine(out);
+                count++;
+            }
+            return count;
+        });
+    }
+
+    /**
+     * write the students as "id; name; username; password; COURSE: GRADE, ..."
+     * @param path of the student file
+     * @return the number of students written
+     */
+    public long writeStudents(Path path){
+        return write(path, out -> {
+            long[] count = new long[1];
+            List<Map.Entry<String, String>> grades = new ArrayList<>();
+            try {
+                // students in cold storage are read back one at a time
+                database.forEachStudent(student -> {
+                    line.append(student.getId()).append("; ").append(student.getName()).append("; ")
+                            .append(student.getUsername()).append("; ").append(student.getPassword());
+                    // copy the grades of one student at a time, so a grade given meanwhile is not half read
+                    grades.clear();
+                    synchronized (student){
+                        grades.addAll(student.getGrades().entrySet());
+                    }
+                    for(int i = 0; i < grades.size(); i++){
+                        line.append(i == 0 ? "; " : ", ").append(grades.get(i).getKey()).append(": ").append(grades.get(i).getValue());
+                    }
+                    try {
+                        endLine(out);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return count[0];
+        });
+    }
+
+    /**
+     * move the current line to the output
+     */
+    private void endLine(Writer out) throws IOException {
+        line.append('\n');
+        out.append(line);
+        line.setLength(0);
+    }
+
+    /**
+     * write one file to a temporary file and rename it over the target when complete
+     * @param target of the file
+     * @param records writes the records and returns how many were written
+     * @return the number of records written
+     */
+    private synchronized long write(Path target, RecordWriter records){
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            long count;
+            OutputStream stream = Files.newOutputStream(temp);
+            Writer text = checksummed ? ChecksummedFile.newWriter(new BufferedOutputStream(stream, BUFFER_SIZE))
+                    : new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+            try(BufferedWriter out = new BufferedWriter(text, BUFFER_SIZE)) {
+                line.setLength(0);
+                count = records.write(out);
+            }
+            // the file reaches the disk before it replaces the target, so a crash leaves one or the other
+            try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return count;
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // the original exception is more useful
+            }
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * writes the records of one file
+     */
+    private interface RecordWriter {
+        long write(Writer out) throws IOException;
+    }
+}
@@ -0,0 +1,138 @@
+package files;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * read a UTF-8 file through memory mapped windows.
+ * The bytes are decoded straight from the mapping into the caller's buffer,
+ * so a whole file can be read without copying it through an input stream
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class MappedFileReader extends Reader {
+
+    // constants
+    // files larger than one window are mapped piece by piece
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    // instance variables
+    private final FileChannel channel;
+    // end of the region to read, exclusive
+    private final long end;
+    private final CharsetDecoder decoder;
+    private MappedByteBuffer window;
+    // file offset of the first byte in the window
+    private long windowStart;
+    // file offset of the first byte not yet decoded
+    private long nextOffset;
+    private boolean finished;
+
+    /**
+     * read the whole file
+     * @param path of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedFileReader(Path path) throws IOException {
+        this(path, 0, -1);
+    }
+
+    /**
+     * read part of a file
+     * @param path of the file
+     * @param start offset of the first byte to read
+     * @param end offset after the last byte to read, or -1 for the end of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedFileReader(Path path, long start, long end) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.end = end < 0 ? channel.size() : Math.min(end, channel.size());
+        this.nextOffset = start;
+        this.decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    /**
+     * decode characters into the buffer
+     * @param buffer to fill
+     * @param offset of the first character to write
+     * @param length maximum number of characters to write
+     * @return the number of characters read, or -1 at the end of the region
+     * @throws IOException if the file cannot be read or is not valid UTF-8
+     */
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        if(length == 0){
+            return 0;
+        }
+        CharBuffer out = CharBuffer.wrap(buffer, offset, length);
+        while(out.hasRemaining() && !finished){
+            if(window == null && !mapNextWindow()){
+                // all bytes are decoded, write out anything the decoder still holds
+                CoderResult result = decoder.decode(ByteBuffer.allocate(0), out, true);
+                if(result.isOverflow()){
+                    break;
+                }
+                if(decoder.flush(out).isOverflow()){
+                    break;
+                }
+                finished = true;
+                break;
+            }
+            boolean lastWindow = windowStart + window.limit() >= end;
+            CoderResult result = decoder.decode(window, out, lastWindow);
+            if(result.isError()){
+                result.throwException();
+            }
+            if(result.isOverflow()){
+                break;
+            }
+            // the window is used up, an incomplete character at its end is mapped again with the next window
+            nextOffset = windowStart + window.position();
+            window = null;
+            if(lastWindow){
+                nextOffset = end;
+            }
+        }
+        int read = out.position() - offset;
+        if(read == 0 && finished){
+            return -1;
+        }
+        return read;
+    }
+
+    /**
+     * map the next window of the region
+     * @return false if there are no bytes left to map
+     * @throws IOException if the file cannot be mapped
+     */
+    private boolean mapNextWindow() throws IOException {
+        if(nextOffset >= end){
+            return false;
+        }
+        long size = Math.min(WINDOW_SIZE, end - nextOffset);
+        windowStart = nextOffset;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, size);
+        return true;
+    }
+
+    /**
+     * close the file
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
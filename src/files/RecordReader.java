@@ -0,0 +1,285 @@
+package files;
+
+import database.StringPool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * read delimited records, one per line, straight from a character buffer.
+ * Lines are never turned into strings: fields are scanned in place and only the
+ * fields the caller asks for as text are copied out. Numbers and H:mm times are
+ * parsed from the buffer directly
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class RecordReader implements Closeable {
+
+    // constants
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    // instance variables
+    private final Reader reader;
+    private char[] buffer;
+    // number of valid characters in the buffer
+    private int limit;
+    // start of the next unread line
+    private int next;
+    private boolean endOfInput;
+    // bounds of the current line, end exclusive
+    private int lineStart;
+    private int lineEnd;
+    // cursor of the next field, lineEnd + 1 once the last field is consumed
+    private int position;
+    private int lineNumber;
+
+    /**
+     * create a record reader on top of a character stream
+     * @param reader to read records from
+     */
+    public RecordReader(Reader reader){
+        this.reader = reader;
+        this.buffer = new char[INITIAL_BUFFER_SIZE];
+    }
+
+    /**
+     * move to the next non-blank line
+     * @return true if there is a line to read, false at the end of the input
+     * @throws IOException if the underlying reader fails
+     */
+    public boolean nextRecord() throws IOException {
+        while(true){
+            // look for the end of the next line in the buffered characters
+            int newline = -1;
+            for(int i = next; i < limit; i++){
+                if(buffer[i] == '\n'){
+                    newline = i;
+                    break;
+                }
+            }
+            if(newline < 0 && !endOfInput){
+                fill();
+                continue;
+            }
+            if(newline < 0 && next >= limit){
+                return false;
+            }
+            int end = newline < 0 ? limit : newline;
+            int start = next;
+            next = newline < 0 ? limit : newline + 1;
+            lineNumber++;
+            // ignore the carriage return of windows line endings
+            if(end > start && buffer[end - 1] == '\r'){
+                end--;
+            }
+            if(isBlank(start, end)){
+                continue;
+            }
+            lineStart = start;
+            lineEnd = end;
+            position = start;
+            return true;
+        }
+    }
+
+    /**
+     * move the unread characters to the front of the buffer and read more after them
+     * @throws IOException if the underlying reader fails
+     */
+    private void fill() throws IOException {
+        if(next > 0){
+            System.arraycopy(buffer, next, buffer, 0, limit - next);
+            limit -= next;
+            next = 0;
+        }
+        // a line longer than the buffer, make room for it
+        if(limit == buffer.length){
+            char[] larger = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, limit);
+            buffer = larger;
+        }
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        if(read < 0){
+            endOfInput = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    /**
+     * check whether the current line has another non-blank field
+     * @return true if a field is left
+     */
+    public boolean hasNextField(){
+        return position <= lineEnd && !isBlank(position, lineEnd);
+    }
+
+    /**
+     * read the next field as trimmed text
+     * @param delimiter that ends the field, the end of the line also ends it
+     * @return the field
+     */
+    public String nextField(char delimiter){
+        int start = skipWhitespace(fieldStart());
+        int end = findDelimiter(start, delimiter);
+        position = end < lineEnd ? end + 1 : lineEnd + 1;
+        while(end > start && Character.isWhitespace(buffer[end - 1])){
+            end--;
+        }
+        return new String(buffer, start, end - start);
+    }
+
+    /**
+     * read the next field as trimmed text, shared through a string pool.
+     * A value already in the pool is returned without copying the characters
+     * @param delimiter that ends the field, the end of the line also ends it
+     * @param pool to look the field up in
+     * @return the pooled field
+     */
+    public String nextField(char delimiter, StringPool pool){
+        int start = skipWhitespace(fieldStart());
+        int end = findDelimiter(start, delimiter);
+        position = end < lineEnd ? end + 1 : lineEnd + 1;
+        while(end > start && Character.isWhitespace(buffer[end - 1])){
+            end--;
+        }
+        return pool.intern(buffer, start, end - start);
+    }
+
+    /**
+     * read the next field as a decimal integer
+     * @param delimiter that ends the field, the end of the line also ends it
+     * @return the value of the field
+     */
+    public int nextInt(char delimiter){
+        int i = skipWhitespace(fieldStart());
+        boolean negative = false;
+        if(i < lineEnd && (buffer[i] == '-' || buffer[i] == '+')){
+            negative = buffer[i] == '-';
+            i++;
+        }
+        int digitsStart = i;
+        long value = 0;
+        while(i < lineEnd && buffer[i] >= '0' && buffer[i] <= '9'){
+            value = value * 10 + (buffer[i] - '0');
+            if(value > Integer.MAX_VALUE + 1L){
+                throw error("number too large");
+            }
+            i++;
+        }
+        if(i == digitsStart){
+            throw error("expected a number");
+        }
+        endField(i, delimiter);
+        value = negative ? -value : value;
+        if(value > Integer.MAX_VALUE){
+            throw error("number too large");
+        }
+        return (int) value;
+    }
+
+    /**
+     * read the next field as a time in H:mm format
+     * @param delimiter that ends the field, the end of the line also ends it
+     * @return minutes since midnight
+     */
+    public int nextMinuteOfDay(char delimiter){
+        int i = skipWhitespace(fieldStart());
+        int hour = 0;
+        int digits = 0;
+        while(i < lineEnd && buffer[i] >= '0' && buffer[i] <= '9' && digits < 2){
+            hour = hour * 10 + (buffer[i] - '0');
+            digits++;
+            i++;
+        }
+        // the hour must be followed by ':' and two minute digits
+        if(digits == 0 || i + 2 >= lineEnd || buffer[i] != ':'){
+            throw error("expected a time like 9:30");
+        }
+        i++;
+        char tens = buffer[i];
+        char ones = buffer[i + 1];
+        if(tens < '0' || tens > '5' || ones < '0' || ones > '9' || hour > 23){
+            throw error("expected a time like 9:30");
+        }
+        int minute = (tens - '0') * 10 + (ones - '0');
+        endField(i + 2, delimiter);
+        return hour * 60 + minute;
+    }
+
+    /**
+     * get the number of the current line, starting from 1
+     * @return the line number
+     */
+    public int getLineNumber(){
+        return lineNumber;
+    }
+
+    /**
+     * get the current line as text, e.g. for error messages
+     * @return the whole current line
+     */
+    public String getLine(){
+        return new String(buffer, lineStart, lineEnd - lineStart);
+    }
+
+    /**
+     * close the underlying reader
+     * @throws IOException if the underlying reader fails
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * get the start of the next field, failing if the line has no fields left
+     */
+    private int fieldStart(){
+        if(position > lineEnd){
+            throw error("missing field");
+        }
+        return position;
+    }
+
+    /**
+     * make sure only whitespace is left before the delimiter and move past it
+     */
+    private void endField(int from, char delimiter){
+        int i = skipWhitespace(from);
+        if(i < lineEnd && buffer[i] != delimiter){
+            throw error("unexpected character '" + buffer[i] + "'");
+        }
+        position = i < lineEnd ? i + 1 : lineEnd + 1;
+    }
+
+    private int findDelimiter(int from, char delimiter){
+        for(int i = from; i < lineEnd; i++){
+            if(buffer[i] == delimiter){
+                return i;
+            }
+        }
+        return lineEnd;
+    }
+
+    private int skipWhitespace(int from){
+        int i = from;
+        while(i < lineEnd && Character.isWhitespace(buffer[i])){
+            i++;
+        }
+        return i;
+    }
+
+    private boolean isBlank(int from, int to){
+        for(int i = from; i < to; i++){
+            if(!Character.isWhitespace(buffer[i])){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private IllegalArgumentException error(String message){
+        return new IllegalArgumentException(message + " on line " + lineNumber + ": " + getLine());
+    }
+}
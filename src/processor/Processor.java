@@ -1,31 +1,106 @@
 package processor;
 
 import courses.Course;
-import database.Database;
-import constant.Constant;
-import files.FileInfoReader;
-import roles.*;
+import database.MutationLog;
+import files.DataFileWatcher;
+import roles.Student;
+import roles.User;
 
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
- * process level of the management system
+ * process level of the management system.
+ * A processor is the handle of one user: the data is loaded once by the shared
+ * RegistrationService and the logged-in user is kept in the processor's own session
  * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
  */
 public class Processor {
 
     // instance variables
-    private User user;
-    private final Database database;
-    FileInfoReader fileInfoReader;
+    private final RegistrationService service;
+    // session of the logged-in user, null before the first successful login
+    private volatile Session session;
 
     // constructor
     public Processor(){
-        this.database = Database.getInstance();
-        fileInfoReader = new FileInfoReader();
-        fileInfoReader.readFiles();
+        this.service = RegistrationService.getInstance();
+    }
+
+    /**
+     * construct the processor from a binary snapshot, which starts much faster than parsing the data files.
+     * If the snapshot doesn't exist yet the data files are read instead.
+     * Nothing is loaded if the shared service already loaded the database
+     * @param snapshotPath of the snapshot file
+     */
+    public Processor(String snapshotPath){
+        this.service = RegistrationService.getInstance(snapshotPath);
+    }
+
+    /**
+     * get the shared service behind the processor
+     * @return the service
+     */
+    public RegistrationService getService(){
+        return service;
+    }
+
+    /**
+     * save the whole database to a binary snapshot
+     * @param snapshotPath of the snapshot file
+     * @return the number of bytes written
+     */
+    public long saveSnapshot(String snapshotPath){
+        return service.saveSnapshot(snapshotPath);
     }
     
+    /**
+     * replay the changes recorded in a mutation log, then record every later change in it
+     * @param path of the log file
+     * @param syncIntervalMillis time between two group commits to disk
+     * @return the opened log, to be closed on shutdown
+     */
+    public MutationLog openMutationLog(String path, long syncIntervalMillis){
+        return service.openMutationLog(path, syncIntervalMillis);
+    }
+
+    /**
+     * apply later edits of the course and professor files without a restart
+     * @param directory holding the data files
+     * @return the started watcher, to be closed on shutdown
+     */
+    public DataFileWatcher watchDataFiles(String directory){
+        return service.watchDataFiles(directory);
+    }
+
+    /**
+     * write the database back to the data files, e.g. to keep the changes made by admins
+     * @param directory to write the files to
+     * @return the number of records written
+     */
+    public long exportDataFiles(String directory){
+        return service.exportDataFiles(directory, false);
+    }
+
+    /**
+     * write the database back to the data files
+     * @param directory to write the files to
+     * @param checksummed true to write checksummed containers, which are verified on every load
+     * @return the number of records written
+     */
+    public long exportDataFiles(String directory, boolean checksummed){
+        return service.exportDataFiles(directory, checksummed);
+    }
+
+    /**
+     * check the integrity of the checksummed data files of a directory, printing one line per file
+     * @param directory holding the data files
+     * @return true if no checksummed data file is damaged
+     */
+    public boolean verifyDataFiles(String directory){
+        return service.verifyDataFiles(directory);
+    }
+
     /**
      *  user authentication
      * @param type of the user
@@ -34,35 +109,26 @@ public class Processor {
      * @return  true if the user could successfully login, false otherwise
      */
     public boolean login(String type, String username, String password){
-        // return false if input is invalid
-        if(type == null || username == null || password == null){
+        Session loggedIn;
+        try {
+            loggedIn = service.login(type, username, password);
+        } catch (RejectedExecutionException e) {
+            System.out.println("Too many logins at the moment, please try again later.");
             return false;
         }
-
-        // if the user is an admin, check if the password is correct        
-        if(type.equals(Constant.ADMIN_TYPE)){
-            Admin admin = database.getAdminByUsername(username);
-            if(admin != null && admin.getPassword().equals(password)){
-                user = admin;
-                return true;
-            }
-        // if the user is a professor, check if the password is correct
-        } else if (type.equals(Constant.PROFESSOR_TYPE)){
-            Professor professor = database.getProfessorByUsername(username);
-            if(professor != null && professor.getPassword().equals(password)){
-                user = professor;
-                return true;
-            }
-
-        // if the user is a student, check if the password is correct
-        } else if (type.equals(Constant.STUDENT_TYPE)){
-            Student student = database.getStudentByUsername(username);
-            if(student != null && student.getPassword().equals(password)){
-                user = student;
-                return true;
-            }
+        if(loggedIn == null){
+            return false;
         }
-        return false;
+        session = loggedIn;
+        return true;
+    }
+
+    /**
+     * getter for the session of the logged-in user
+     * @return the session, or null if nobody logged in
+     */
+    public Session getSession(){
+        return session;
     }
 
     /**
@@ -70,7 +136,8 @@ public class Processor {
      * @return  the user
      */    
     public User getUser(){
-        return this.user;
+        Session current = session;
+        return current == null ? null : current.getUser();
     }
 
     /**
@@ -78,7 +145,7 @@ public class Processor {
      * @return all courses information
      */
     public Map<String, Course> getAllCourses(){
-        return database.getAllCourses();
+        return service.getAllCourses();
     }
 
     /**
@@ -87,10 +154,7 @@ public class Processor {
      * @return the course
      */
     public Course getCourseById(String courseId){
-        if(courseId == null || courseId.isEmpty()){
-            return null;
-        }
-        return database.getCourseById(courseId);
+        return service.getCourseById(courseId);
     }
 
     /**
@@ -99,10 +163,7 @@ public class Processor {
      * @return the student
      */
     public Student getStudentById(String studentId){
-        if(studentId == null || studentId.isEmpty()){
-            return null;
-        }
-        return database.getStudentById(studentId);
+        return service.getStudentById(studentId);
     }
 
     
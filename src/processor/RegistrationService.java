@@ -0,0 +1,304 @@
+package processor;
+
+import constant.Constant;
+import courses.Course;
+import database.Database;
+import database.MutationLog;
+import database.Snapshot;
+import files.ChecksummedFile;
+import files.DataFileWatcher;
+import files.FileInfoReader;
+import files.FileInfoWriter;
+import roles.Admin;
+import roles.Professor;
+import roles.Student;
+import roles.User;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * shared service of the management system.
+ * The data is loaded once into the database and every user works through a Session,
+ * so many users can be logged in at the same time without reloading anything.
+ * The service is loaded again only if the database instance changes, e.g. after Database.reset()
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class RegistrationService {
+
+    // the shared service, loaded for the current database instance
+    private static volatile RegistrationService instance;
+
+    // checks the passwords of all services. The key derivation is slow on purpose, so it gets one thread
+    // per core and a bounded queue: a burst of logins is turned away instead of holding every request thread
+    private static final ThreadPoolExecutor PASSWORD_VERIFIER = newPasswordVerifier();
+
+    // instance variables
+    private final Database database;
+    // checkpoint of the mutation log stored in the loaded snapshot, null if the data files were read
+    private final String snapshotCheckpoint;
+
+    /**
+     * load the data into the database
+     * @param database to load
+     * @param snapshotPath of a binary snapshot to load instead of the data files, or null
+     */
+    private RegistrationService(Database database, String snapshotPath){
+        this.database = database;
+        if(snapshotPath != null && new File(snapshotPath).exists()){
+            try {
+                snapshotCheckpoint = Snapshot.load(snapshotPath, database);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        } else {
+            snapshotCheckpoint = null;
+            new FileInfoReader().readFiles();
+        }
+    }
+
+    /**
+     * get the shared service, reading the data files the first time
+     * @return the service of the current database instance
+     */
+    public static RegistrationService getInstance(){
+        return getInstance(null);
+    }
+
+    /**
+     * get the shared service, loading a binary snapshot the first time,
+     * which starts much faster than parsing the data files.
+     * If the snapshot doesn't exist yet the data files are read instead
+     * @param snapshotPath of the snapshot file, or null to read the data files
+     * @return the service of the current database instance
+     */
+    public static RegistrationService getInstance(String snapshotPath){
+        RegistrationService result = instance;
+        if(result != null && result.database == Database.getInstance()){
+            return result;
+        }
+        // load under the class lock so that only one thread loads the data
+        synchronized (RegistrationService.class){
+            Database database = Database.getInstance();
+            if(instance == null || instance.database != database){
+                instance = new RegistrationService(database, snapshotPath);
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * create the pool checking the passwords, its threads stop when they are idle
+     * @return the pool
+     */
+    private static ThreadPoolExecutor newPasswordVerifier(){
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Constant.PASSWORD_VERIFY_QUEUE_SIZE), runnable -> {
+                    Thread thread = new Thread(runnable, "password-verifier-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * get the database the service works on
+     * @return the database
+     */
+    public Database getDatabase(){
+        return database;
+    }
+
+    /**
+     * user authentication
+     * @param type of the user
+     * @param username of the user
+     * @param password of the user
+     * @return the session of the user, or null if the login failed
+     * @throws RejectedExecutionException if too many logins are waiting for their password check
+     */
+    public Session login(String type, String username, String password){
+        // return null if input is invalid
+        if(type == null || username == null || password == null){
+            return null;
+        }
+        User user = null;
+        if(type.equals(Constant.ADMIN_TYPE)){
+            user = database.getAdminByUsername(username);
+        } else if(type.equals(Constant.PROFESSOR_TYPE)){
+            user = database.getProfessorByUsername(username);
+        } else if(type.equals(Constant.STUDENT_TYPE)){
+            user = database.getStudentByUsername(username);
+        }
+        if(user == null){
+            return null;
+        }
+        // check if the password is correct, on the verifier pool
+        User found = user;
+        Future<Boolean> verified = PASSWORD_VERIFIER.submit(() -> found.checkPassword(password));
+        try {
+            return verified.get() ? new Session(user) : null;
+        } catch (InterruptedException e) {
+            verified.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * check that the user of a session is still in the database, e.g. before a request is served with its token
+     * @param session of a login
+     * @return false if the user was deleted meanwhile
+     */
+    public boolean isActive(Session session){
+        User user = session.getUser();
+        User current = null;
+        if(user instanceof Admin){
+            current = database.getAdminById(user.getId());
+        } else if(user instanceof Professor){
+            current = database.getProfessorById(user.getId());
+        } else if(user instanceof Student){
+            current = database.getStudentById(user.getId());
+        }
+        // a user added later under the same ID is someone else
+        return current != null && current.getUsername().equals(user.getUsername());
+    }
+
+    /**
+     * save the whole database to a binary snapshot
+     * @param snapshotPath of the snapshot file
+     * @return the number of bytes written
+     */
+    public long saveSnapshot(String snapshotPath){
+        try {
+            return Snapshot.write(database, snapshotPath);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * replay the changes recorded in a mutation log, then record every later change in it.
+     * On top of a snapshot only the changes after its checkpoint are replayed
+     * @param path of the log file
+     * @param syncIntervalMillis time between two group commits to disk
+     * @return the opened log, to be closed on shutdown
+     */
+    public MutationLog openMutationLog(String path, long syncIntervalMillis){
+        if(path == null || path.isEmpty()){
+            return null;
+        }
+        // the log replays on top of the data files or the snapshot, without logging the replayed changes again
+        database.setMutationLog(null);
+        int applied = MutationLog.replay(path, database, snapshotCheckpoint);
+        if(applied > 0){
+            System.out.println("Replayed " + applied + " changes from " + path);
+        }
+        try {
+            MutationLog mutationLog = new MutationLog(path, syncIntervalMillis);
+            database.setMutationLog(mutationLog);
+            return mutationLog;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * apply later edits of the course and professor files without a restart
+     * @param directory holding the data files
+     * @return the started watcher, to be closed on shutdown
+     */
+    public DataFileWatcher watchDataFiles(String directory){
+        try {
+            DataFileWatcher watcher = new DataFileWatcher(Paths.get(directory));
+            watcher.start();
+            return watcher;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * write the database back to the data files
+     * @param directory to write the files to
+     * @param checksummed true to write checksummed containers, which are verified on every load
+     * @return the number of records written
+     */
+    public long exportDataFiles(String directory, boolean checksummed){
+        return new FileInfoWriter(checksummed).writeFiles(directory);
+    }
+
+    /**
+     * check the integrity of the checksummed data files of a directory, printing one line per file.
+     * Plain text data files have no checksums and are not checked
+     * @param directory holding the data files
+     * @return true if no checksummed data file is damaged
+     */
+    public boolean verifyDataFiles(String directory){
+        boolean valid = true;
+        String[] names = {FileInfoReader.ADMIN_FILE_PATH, FileInfoReader.PROFESSOR_FILE_PATH,
+                FileInfoReader.COURSE_FILE_PATH, FileInfoReader.STUDENT_FILE_PATH};
+        try {
+            for(String name : names){
+                Path path = Paths.get(directory, name);
+                if(!Files.exists(path) || !ChecksummedFile.isChecksummed(path)){
+                    continue;
+                }
+                ChecksummedFile.Verification verification = ChecksummedFile.verify(path);
+                System.out.println(verification);
+                valid &= verification.isValid();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return valid;
+    }
+
+    /**
+     * get all courses information
+     * @return all courses information
+     */
+    public Map<String, Course> getAllCourses(){
+        return database.getAllCourses();
+    }
+
+    /**
+     * get course by its id
+     * @param courseId of the course
+     * @return the course
+     */
+    public Course getCourseById(String courseId){
+        if(courseId == null || courseId.isEmpty()){
+            return null;
+        }
+        return database.getCourseById(courseId);
+    }
+
+    /**
+     * get student by their id
+     * @param studentId of student
+     * @return the student
+     */
+    public Student getStudentById(String studentId){
+        if(studentId == null || studentId.isEmpty()){
+            return null;
+        }
+        return database.getStudentById(studentId);
+    }
+}
@@ -0,0 +1,61 @@
+package processor;
+
+import roles.User;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * handle of one logged-in user.
+ * Sessions are created by RegistrationService.login and only carry the authenticated user,
+ * so any number of them can share the one loaded database
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class Session {
+
+    // constants
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    // instance variables
+    private final long id;
+    private final User user;
+    private final long createdMillis;
+
+    /**
+     * create the session of an authenticated user
+     * @param user who logged in
+     */
+    Session(User user){
+        this.id = NEXT_ID.getAndIncrement();
+        this.user = user;
+        this.createdMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * get the number of the session, unique within the JVM
+     * @return the session ID
+     */
+    public long getId(){
+        return id;
+    }
+
+    /**
+     * get the user of the session
+     * @return the logged-in user
+     */
+    public User getUser(){
+        return user;
+    }
+
+    /**
+     * get the time of the login
+     * @return the login time, in milliseconds since the epoch
+     */
+    public long getCreatedMillis(){
+        return createdMillis;
+    }
+
+    @Override
+    public String toString(){
+        return "Session " + id + " of " + user.getUsername();
+    }
+}
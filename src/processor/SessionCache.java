@@ -0,0 +1,108 @@
+package processor;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * short-lived tokens of verified sessions, so that a client logs in once and then sends the token
+ * instead of a password that would run the key derivation again on every request.
+ * A token expires after it was not used for the time to live
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class SessionCache {
+
+    // constants
+    private static final int TOKEN_BYTES = 24;
+    // tokens added between two sweeps of the expired tokens
+    private static final int SWEEP_INTERVAL = 1024;
+
+    // instance variables
+    private final long ttlMillis;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicInteger addedSinceSweep = new AtomicInteger();
+
+    /**
+     * a session with the time it was last used
+     */
+    private static class Entry {
+        final Session session;
+        volatile long lastUsedMillis;
+
+        Entry(Session session, long lastUsedMillis){
+            this.session = session;
+            this.lastUsedMillis = lastUsedMillis;
+        }
+    }
+
+    /**
+     * create an empty cache
+     * @param ttlMillis time a token stays valid after it was last used
+     */
+    public SessionCache(long ttlMillis){
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * add a verified session under a new random token
+     * @param session of a successful login
+     * @return the token of the session
+     */
+    public String add(Session session){
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        long now = System.currentTimeMillis();
+        entries.put(token, new Entry(session, now));
+        // expired tokens nobody asks for again are dropped from time to time
+        if(addedSinceSweep.incrementAndGet() >= SWEEP_INTERVAL){
+            addedSinceSweep.set(0);
+            entries.values().removeIf(entry -> now - entry.lastUsedMillis > ttlMillis);
+        }
+        return token;
+    }
+
+    /**
+     * get the session of a token and keep the token alive
+     * @param token sent by the client
+     * @return the session, or null if the token is unknown or expired
+     */
+    public Session get(String token){
+        if(token == null){
+            return null;
+        }
+        Entry entry = entries.get(token);
+        if(entry == null){
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if(now - entry.lastUsedMillis > ttlMillis){
+            entries.remove(token, entry);
+            return null;
+        }
+        entry.lastUsedMillis = now;
+        return entry.session;
+    }
+
+    /**
+     * forget a token, e.g. on logout
+     * @param token to forget
+     * @return true if the token was known
+     */
+    public boolean remove(String token){
+        return token != null && entries.remove(token) != null;
+    }
+
+    /**
+     * get the number of tokens that have not expired yet
+     * @return the number of live tokens
+     */
+    public int size(){
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> now - entry.lastUsedMillis > ttlMillis);
+        return entries.size();
+    }
+}
@@ -1,9 +1,20 @@
 package roles;
+import constant.Constant;
 import courses.Course;
+import database.GradeStore;
+import database.MutationLog;
+import database.StringPool;
+import files.RecordReader;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalTime;
 import java.util.Map;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
 
 
 /**
@@ -12,6 +23,10 @@ import java.util.*;
  */
 public class Admin extends UserBase{
 
+    // constants
+    // hasher of imported passwords, cheap on purpose, its hashes are not current so the first login replaces them
+    private static final PasswordHasher IMPORT_HASHER = new Pbkdf2PasswordHasher(Constant.IMPORT_PASSWORD_HASH_ITERATIONS);
+
     // constructor
     /**
      * admin constructor
@@ -50,23 +65,45 @@ public class Admin extends UserBase{
         // create new course
         Course course = new Course(id, name, professor, weekDay, startTime, endTime, capacity);
 
-        List<Course> courseList = database.getProfessorCourseList(professorId);
+        // if new course has conflict with other course, return false
+        Course c = findConflict(course);
+        if (c != null){
+            System.out.println("The new added course has time conflict with course: " +
+                    c.getId() + "|" + c.getName() + ", " + c.getStartTime() + " on " + c.getWeekDay() + ", " +
+                    " with course capacity: " + c.getCapacity() + ", " + "students: " + c.getStudentCount() + ", lecturer: Professor " +
+                    c.getProfessor().getName());
+            return false;
+        }
 
-        // traverse professor's course list
-        for(Course c : courseList){
-            // if new course has conflict with other course, return false
-            if (course.conflictWith(c)){
-                System.out.println("The new added course has time conflict with course: " +
-                        c.getId() + "|" + c.getName() + ", " + c.getStartTime() + " on " + c.getWeekDay() + ", " +
-                        " with course capacity: " + c.getCapacity() + ", " + "students: " + c.getStudents().size() + ", lecturer: Professor " +
-                        c.getProfessor().getName());
+
+        // add new course into database, logged under the gate so a snapshot holds both or neither
+        Lock gate = database.getMutationGate();
+        gate.lock();
+        try {
+            if(!database.addCourse(course)){
                 return false;
             }
+            database.logMutation(MutationLog.ADD_COURSE, id, name, professorId, weekDay,
+                    MutationLog.formatTime(startTime), MutationLog.formatTime(endTime), String.valueOf(capacity));
+        } finally {
+            gate.unlock();
         }
+        return true;
+    }
 
-
-        // add new course into database
-        return database.addCourse(course);
+    /**
+     * find a course of the same professor taught at the same time
+     * @param course to check
+     * @return the conflicting course, or null if there is none
+     */
+    private Course findConflict(Course course){
+        // traverse professor's course list
+        for(Course c : database.getProfessorCourseList(course.getProfessor().getId())){
+            if (course.conflictWith(c)){
+                return c;
+            }
+        }
+        return null;
     }
 
     /**
@@ -79,7 +116,17 @@ public class Admin extends UserBase{
         if(courseId == null || courseId.isEmpty()){
             return false;
         }
-        return database.deleteCourse(courseId);
+        Lock gate = database.getMutationGate();
+        gate.lock();
+        try {
+            if(!database.deleteCourse(courseId)){
+                return false;
+            }
+            database.logMutation(MutationLog.DELETE_COURSE, courseId);
+        } finally {
+            gate.unlock();
+        }
+        return true;
     }
 
 
@@ -95,8 +142,18 @@ public class Admin extends UserBase{
         if(name == null || name.isEmpty() || username == null || username.isEmpty() || id == null || id.isEmpty() || password == null || password.isEmpty()){
             return false;
         }
-        Professor professor = new Professor(id, name, username, password);
-        return database.addUser(professor);
+        Professor professor = new Professor(id, name, username, getPasswordHasher().hash(password));
+        Lock gate = database.getMutationGate();
+        gate.lock();
+        try {
+            if(!database.addUser(professor)){
+                return false;
+            }
+            database.logMutation(MutationLog.ADD_PROFESSOR, id, name, username, professor.getPassword());
+        } finally {
+            gate.unlock();
+        }
+        return true;
     }
 
     /**
@@ -111,8 +168,209 @@ public class Admin extends UserBase{
         if(name == null || name.isEmpty() || username == null || username.isEmpty() || id == null || id.isEmpty() || password == null || password.isEmpty()){
             return false;
         }
-        Student student = new Student(id, name, username, password);
-        return database.addUser(student);
+        Student student = new Student(id, name, username, getPasswordHasher().hash(password));
+        Lock gate = database.getMutationGate();
+        gate.lock();
+        try {
+            if(!database.addUser(student)){
+                return false;
+            }
+            database.logMutation(MutationLog.ADD_STUDENT, id, name, username, student.getPassword());
+        } finally {
+            gate.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * import students from a file in the format of the student data file,
+     * e.g. "001; StudentName1; testStudent01; password590; CIS191: A, CIS320: A"
+     * @param path of the file
+     * @return the number of imported students and the reasons of the rejected rows
+     */
+    public ImportResult importStudents(Path path){
+        try {
+            return importStudents(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * import students in the format of the student data file.
+     * Rows are parsed on a separate thread while earlier batches are inserted, and every batch
+     * is checked against the IDs and usernames in the database, and the rows before it, at once.
+     * Rows with missing fields, malformed or unknown grades or a duplicated ID or username are rejected.
+     * Only the hashes of the passwords are stored and logged. They are made with few iterations,
+     * so thousands of rows take seconds, and are replaced by full hashes at the first login of each student
+     * @param input to read, closed at the end
+     * @return the number of imported students and the reasons of the rejected rows
+     */
+    public ImportResult importStudents(Reader input){
+        StringPool pool = database.getStringPool();
+        return new BulkLoader<String[]>(reader -> {
+            // id, name, username, password, then course ID and grade pairs
+            List<String> fields = new ArrayList<>();
+            fields.add(requireField(reader.nextField(';'), "ID"));
+            fields.add(requireField(reader.nextField(';'), "name"));
+            fields.add(requireField(reader.nextField(';'), "username"));
+            // a cheap hash keeps large imports fast without storing the plaintext, the first login hashes it again
+            fields.add(IMPORT_HASHER.hash(requireField(reader.nextField(';'), "password")));
+            while (reader.hasNextField()) {
+                fields.add(requireField(reader.nextField(':', pool), "course ID of a grade"));
+                fields.add(requireGrade(requireField(reader.nextField(',', pool), "grade")));
+            }
+            return fields.toArray(new String[0]);
+        }, (rows, result) -> {
+            List<Student> students = new ArrayList<>(rows.size());
+            for(BulkLoader.Row<String[]> row : rows){
+                String[] fields = row.value;
+                Student student = new Student(fields[0], fields[1], fields[2], fields[3]);
+                // the student isn't in the database yet, so the grades need no lock
+                for(int i = 4; i < fields.length; i += 2){
+                    student.getGrades().put(fields[i], fields[i + 1]);
+                }
+                students.add(student);
+            }
+            // the batch is logged under the gate, so a snapshot holds the students and their records or neither
+            Lock gate = database.getMutationGate();
+            gate.lock();
+            try {
+                List<String> reasons = database.addStudents(students);
+                for(int i = 0; i < students.size(); i++){
+                    Student student = students.get(i);
+                    if(reasons.get(i) != null){
+                        result.reject(rows.get(i).line, reasons.get(i));
+                        continue;
+                    }
+                    database.logMutation(MutationLog.ADD_STUDENT, student.getId(), student.getName(),
+                            student.getUsername(), student.getPassword());
+                    String[] fields = rows.get(i).value;
+                    for(int j = 4; j < fields.length; j += 2){
+                        database.logMutation(MutationLog.GRADE, student.getId(), fields[j], fields[j + 1]);
+                    }
+                    result.addImported();
+                }
+            } finally {
+                gate.unlock();
+            }
+        }).load(input);
+    }
+
+    /**
+     * import courses from a file in the format of the course data file
+     * @param path of the file
+     * @return the number of imported courses and the reasons of the rejected rows
+     */
+    public ImportResult importCourses(Path path){
+        try {
+            return importCourses(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * import courses in the format of the course data file,
+     * e.g. "CIT590; Programming Languages and Techniques; Brandon L Krakowsky; MW; 16:30; 18:00; 110".
+     * Rows with missing fields, bad times, an unknown or ambiguous professor, a duplicated ID
+     * or a time conflict with another course of the professor are rejected
+     * @param input to read, closed at the end
+     * @return the number of imported courses and the reasons of the rejected rows
+     */
+    public ImportResult importCourses(Reader input){
+        StringPool pool = database.getStringPool();
+        return new BulkLoader<CourseRow>(reader -> {
+            CourseRow row = new CourseRow();
+            row.id = requireField(reader.nextField(';', pool), "ID");
+            row.name = requireField(reader.nextField(';', pool), "name");
+            row.professorName = requireField(reader.nextField(';', pool), "professor");
+            row.weekDay = requireField(reader.nextField(';', pool), "week day");
+            if(Course.toDayMask(row.weekDay) == 0){
+                throw new IllegalArgumentException("unknown week day " + row.weekDay);
+            }
+            int start = reader.nextMinuteOfDay(';');
+            int end = reader.nextMinuteOfDay(';');
+            if(end <= start){
+                throw new IllegalArgumentException("course ends before it starts");
+            }
+            row.startTime = LocalTime.of(start / 60, start % 60);
+            row.endTime = LocalTime.of(end / 60, end % 60);
+            row.capacity = reader.nextInt(';');
+            if(row.capacity <= 0){
+                throw new IllegalArgumentException("capacity must be positive");
+            }
+            return row;
+        }, (rows, result) -> {
+            for(BulkLoader.Row<CourseRow> parsed : rows){
+                CourseRow row = parsed.value;
+                // professors are looked up here rather than on the parser thread, next to the other writes
+                List<Professor> professors = database.getProfessorsByName(row.professorName);
+                if(professors.size() != 1){
+                    result.reject(parsed.line, (professors.isEmpty() ? "unknown professor " : "ambiguous professor ") + row.professorName);
+                    continue;
+                }
+                Professor professor = professors.get(0);
+                Course course = new Course(row.id, row.name, professor, row.weekDay, row.startTime, row.endTime, row.capacity);
+                Course conflict = findConflict(course);
+                if(conflict != null){
+                    result.reject(parsed.line, "time conflict with " + conflict.getId());
+                    continue;
+                }
+                Lock gate = database.getMutationGate();
+                gate.lock();
+                try {
+                    if(!database.addCourse(course)){
+                        result.reject(parsed.line, "duplicated ID " + course.getId());
+                    } else {
+                        database.logMutation(MutationLog.ADD_COURSE, course.getId(), course.getName(), professor.getId(),
+                                course.getWeekDay(), MutationLog.formatTime(course.getStartTime()),
+                                MutationLog.formatTime(course.getEndTime()), String.valueOf(course.getCapacity()));
+                        result.addImported();
+                    }
+                } finally {
+                    gate.unlock();
+                }
+            }
+        }).load(input);
+    }
+
+    /**
+     * fields of an imported course row, before its professor is looked up
+     */
+    private static class CourseRow {
+        String id;
+        String name;
+        String professorName;
+        String weekDay;
+        LocalTime startTime;
+        LocalTime endTime;
+        int capacity;
+    }
+
+    /**
+     * make sure a field of an imported row isn't empty
+     * @param value of the field
+     * @param field name used in the rejection reason
+     * @return the value
+     */
+    private static String requireField(String value, String field){
+        if(value.isEmpty()){
+            throw new IllegalArgumentException("missing " + field);
+        }
+        return value;
+    }
+
+    /**
+     * reject a row whose grade is not one of the usual letter grades
+     * @param grade of the row
+     * @return the grade
+     */
+    private static String requireGrade(String grade){
+        if(!GradeStore.isKnownGrade(grade)){
+            throw new IllegalArgumentException("unknown grade " + grade);
+        }
+        return grade;
     }
 
     /**
@@ -125,7 +383,17 @@ public class Admin extends UserBase{
         if(id == null || id.isEmpty()){
             return false;
         }
-        return database.deleteProfessor(id);
+        Lock gate = database.getMutationGate();
+        gate.lock();
+        try {
+            if(!database.deleteProfessor(id)){
+                return false;
+            }
+            database.logMutation(MutationLog.DELETE_PROFESSOR, id);
+        } finally {
+            gate.unlock();
+        }
+        return true;
     }
 
     /**
@@ -138,7 +406,17 @@ public class Admin extends UserBase{
         if(id == null || id.isEmpty()){
             return false;
         }
-        return database.deleteStudent(id);
+        Lock gate = database.getMutationGate();
+        gate.lock();
+        try {
+            if(!database.deleteStudent(id)){
+                return false;
+            }
+            database.logMutation(MutationLog.DELETE_STUDENT, id);
+        } finally {
+            gate.unlock();
+        }
+        return true;
     }
 
     /**
@@ -0,0 +1,155 @@
+package roles;
+
+import constant.Constant;
+import files.RecordReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * pipeline of a bulk import: a parser thread reads the rows of the input into batches
+ * while the calling thread inserts the batches parsed before, so reading and inserting overlap.
+ * Rows the parser rejects are recorded with their reason and never reach the writer
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+class BulkLoader<T> {
+
+    // constants
+    // batches parsed ahead of the writer, bounds the memory of the pipeline
+    private static final int BATCHES_AHEAD = 4;
+
+    /**
+     * parses one row, throws an IllegalArgumentException with the reason if the row is invalid.
+     * Any other RuntimeException rejects the row as well
+     */
+    interface Parser<T> {
+        T parse(RecordReader reader);
+    }
+
+    /**
+     * inserts a batch of parsed rows and records the outcome of each of them
+     */
+    interface Writer<T> {
+        void write(List<Row<T>> rows, ImportResult result);
+    }
+
+    /**
+     * one parsed row: its value, or the reason it was rejected
+     */
+    static class Row<T> {
+        final int line;
+        final T value;
+        final String reason;
+
+        Row(int line, T value, String reason){
+            this.line = line;
+            this.value = value;
+            this.reason = reason;
+        }
+    }
+
+    // instance variables
+    private final Parser<T> parser;
+    private final Writer<T> writer;
+    // marks the end of the input in the queue
+    private final List<Row<T>> end = new ArrayList<>();
+    private volatile Exception failure;
+
+    /**
+     * create a loader
+     * @param parser of the rows
+     * @param writer of the batches
+     */
+    BulkLoader(Parser<T> parser, Writer<T> writer){
+        this.parser = parser;
+        this.writer = writer;
+    }
+
+    /**
+     * import all rows of the input
+     * @param input to read, closed at the end
+     * @return the summary of the import
+     */
+    ImportResult load(Reader input){
+        ImportResult result = new ImportResult();
+        BlockingQueue<List<Row<T>>> batches = new ArrayBlockingQueue<>(BATCHES_AHEAD);
+        Thread parserThread = new Thread(() -> parse(input, batches), "bulk-import-parser");
+        parserThread.setDaemon(true);
+        parserThread.start();
+        try {
+            List<Row<T>> batch;
+            while((batch = batches.take()) != end){
+                List<Row<T>> valid = new ArrayList<>(batch.size());
+                for(Row<T> row : batch){
+                    if(row.reason != null){
+                        result.reject(row.line, row.reason);
+                    } else {
+                        valid.add(row);
+                    }
+                }
+                writer.write(valid, result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            // stops the parser if the writer failed
+            parserThread.interrupt();
+        }
+        if(failure != null){
+            // the rows read before the failure are already in the database
+            result.fail(describe(failure));
+        }
+        return result;
+    }
+
+    /**
+     * read the input on the parser thread and hand it over in batches
+     * @param input to read
+     * @param batches queue to the writer
+     */
+    private void parse(Reader input, BlockingQueue<List<Row<T>>> batches){
+        List<Row<T>> batch = new ArrayList<>(Constant.IMPORT_BATCH_SIZE);
+        try(RecordReader reader = new RecordReader(input)) {
+            while(reader.nextRecord()){
+                int line = reader.getLineNumber();
+                try {
+                    batch.add(new Row<>(line, parser.parse(reader), null));
+                } catch (RuntimeException e) {
+                    batch.add(new Row<>(line, null, describe(e)));
+                }
+                if(batch.size() == Constant.IMPORT_BATCH_SIZE){
+                    batches.put(batch);
+                    batch = new ArrayList<>(Constant.IMPORT_BATCH_SIZE);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            // the writer gave up, nobody is waiting for the end
+            return;
+        }
+        try {
+            // the rows read before a failure are still imported
+            if(!batch.isEmpty()){
+                batches.put(batch);
+            }
+            batches.put(end);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * get the reason to report for an exception
+     * @param e exception of a row or of the input
+     * @return its message, or its type if it has none
+     */
+    private static String describe(Exception e){
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+}
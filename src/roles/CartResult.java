@@ -0,0 +1,53 @@
+package roles;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * outcome of a batch of enrollments and drops made by Student.updateCourses.
+ * Either every item of the cart was applied, or none was and the rejected items carry a reason
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class CartResult {
+
+    // instance variables
+    // reasons of the rejected items, keyed by course ID, in cart order
+    private final Map<String, String> rejected = new LinkedHashMap<>();
+    private boolean committed;
+
+    /**
+     * record why an item of the cart cannot be applied
+     * @param courseId of the item
+     * @param reason of the rejection
+     */
+    void reject(String courseId, String reason){
+        // keep the first reason if an ID appears twice
+        rejected.putIfAbsent(courseId, reason);
+    }
+
+    void commit(){
+        committed = true;
+    }
+
+    /**
+     * check whether the whole cart was applied
+     * @return true if every enrollment and drop was made
+     */
+    public boolean isCommitted(){
+        return committed;
+    }
+
+    /**
+     * get the reasons of the rejected items
+     * @return the reasons keyed by course ID, empty if the cart was committed
+     */
+    public Map<String, String> getRejected(){
+        return Collections.unmodifiableMap(rejected);
+    }
+
+    @Override
+    public String toString(){
+        return committed ? "Cart committed" : "Cart rejected: " + rejected;
+    }
+}
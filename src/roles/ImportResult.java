@@ -0,0 +1,78 @@
+package roles;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * summary of a bulk import made by Admin.importStudents or Admin.importCourses:
+ * how many rows were added, and why each of the other rows was rejected
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class ImportResult {
+
+    // instance variables
+    private int imported;
+    // reasons of the rejected rows, keyed by line number
+    private final Map<Integer, String> rejected = new TreeMap<>();
+    // why the input could not be read to the end, null if it was
+    private String error;
+
+    void addImported(){
+        imported++;
+    }
+
+    /**
+     * record why a row was not imported
+     * @param line number of the row, starting from 1
+     * @param reason of the rejection
+     */
+    void reject(int line, String reason){
+        rejected.put(line, reason);
+    }
+
+    /**
+     * record that the input could not be read to the end
+     * @param error reason the import stopped
+     */
+    void fail(String error){
+        this.error = error;
+    }
+
+    /**
+     * get the number of rows added to the database
+     * @return the number of imported rows
+     */
+    public int getImported(){
+        return imported;
+    }
+
+    /**
+     * get the reasons of the rejected rows
+     * @return the reasons keyed by line number, in file order
+     */
+    public Map<Integer, String> getRejected(){
+        return Collections.unmodifiableMap(rejected);
+    }
+
+    /**
+     * get why the import stopped before the end of the input
+     * @return the reason, or null if the whole input was read
+     */
+    public String getError(){
+        return error;
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder summary = new StringBuilder();
+        summary.append(imported).append(" rows imported, ").append(rejected.size()).append(" rejected");
+        for(Map.Entry<Integer, String> row : rejected.entrySet()){
+            summary.append(System.lineSeparator()).append("line ").append(row.getKey()).append(": ").append(row.getValue());
+        }
+        if(error != null){
+            summary.append(System.lineSeparator()).append("import stopped early: ").append(error);
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package roles;
+
+/**
+ * turns passwords into the values stored with the users, and checks passwords against them
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public interface PasswordHasher {
+
+    /**
+     * hash a password with a new salt
+     * @param password to hash
+     * @return the value to store
+     */
+    String hash(String password);
+
+    /**
+     * check a password against a stored value, which may also be a plaintext password of the old data files
+     * @param password to check
+     * @param stored value of the user
+     * @return true if the password matches
+     */
+    boolean verify(String password, String stored);
+
+    /**
+     * check whether a stored value was made by this hasher with its current settings
+     * @param stored value of the user
+     * @return false if the value should be hashed again, e.g. a plaintext password
+     */
+    boolean isCurrent(String stored);
+}
@@ -0,0 +1,103 @@
+package roles;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * salted PBKDF2 with HMAC-SHA256 from the JDK.
+ * Hashes are stored as "pbkdf2$iterations$salt$hash", salt and hash in base64,
+ * so the iterations can be raised later without breaking the stored passwords.
+ * Any other stored value is a plaintext password of the old data files and is compared in constant time
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+
+    // constants
+    private static final String PREFIX = "pbkdf2$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    // instance variables
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * create a hasher
+     * @param iterations of new hashes, higher is slower to compute and to guess
+     */
+    public Pbkdf2PasswordHasher(int iterations){
+        if(iterations < 1){
+            throw new IllegalArgumentException("iterations must be positive");
+        }
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String hash(String password){
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(derive(password, salt, iterations));
+    }
+
+    @Override
+    public boolean verify(String password, String stored){
+        if(password == null || stored == null){
+            return false;
+        }
+        if(!stored.startsWith(PREFIX)){
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if(parts.length != 4){
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] hash = Base64.getDecoder().decode(parts[3]);
+            return storedIterations > 0 && MessageDigest.isEqual(hash, derive(password, salt, storedIterations));
+        } catch (IllegalArgumentException e) {
+            // a damaged hash never matches
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isCurrent(String stored){
+        if(stored == null || !stored.startsWith(PREFIX)){
+            return false;
+        }
+        int end = stored.indexOf('$', PREFIX.length());
+        try {
+            return end > 0 && Integer.parseInt(stored.substring(PREFIX.length(), end)) >= iterations;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * run the key derivation
+     * @param password to derive from
+     * @param salt of the hash
+     * @param iterations of the derivation
+     * @return the derived hash
+     */
+    private static byte[] derive(String password, byte[] salt, int iterations){
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
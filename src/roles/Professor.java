@@ -32,7 +32,7 @@ public class Professor extends UserBase{
     /**
      *  view all students of a given course
      * @param courseId of the course
-     * @return the list of all students of the given course
+     * @return a read-only copy of all students of the given course
      */
     public List<Student> getStudentListOfGivenCourse(String courseId){
         if(courseId == null || courseId.isEmpty()){
@@ -1,31 +1,66 @@
 package roles;
 
 import courses.Course;
+import courses.WeeklySchedule;
+import database.GradeStore;
+import database.MutationLog;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Student class is used to store information of a student user
  * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
  */
 public class Student extends UserBase{
+    // constants
+    // reason of a cart item whose course has no free seat
+    private static final String COURSE_FULL = "Course is full";
+
     // student enrolled courses
     List<String> coursesList;
-    // grade map for courses
+    // grade map for courses, a view over the grade store of the database
     Map<String, String> grades;
+    // minutes of the week taken by the enrolled courses
+    WeeklySchedule schedule;
+    // slot of the student in the grade store, -1 if the grades are kept in their own map
+    private volatile int gradeSlot;
+
     public Student(String id, String name, String username, String password) {
         super(id, name, username, password);
         coursesList = new ArrayList<>();
-        grades = new HashMap<>();
+        gradeSlot = database.getGradeStore().newSlot();
+        grades = database.getGradeStore().view(gradeSlot);
+        schedule = new WeeklySchedule();
+    }
+
+    /**
+     * construct a student whose grades are kept in the given map instead of the grade store,
+     * e.g. a student read back from cold storage
+     * @param id of the student
+     * @param name of the student
+     * @param username of the student
+     * @param password of the student
+     * @param grades of the student, keyed by course ID
+     */
+    public Student(String id, String name, String username, String password, Map<String, String> grades) {
+        super(id, name, username, password);
+        coursesList = new ArrayList<>();
+        gradeSlot = -1;
+        this.grades = grades;
+        schedule = new WeeklySchedule();
     }
 
 
 
     /**
-     * add course based on the course ID
+     * add course based on the course ID.
+     * The checks and the change hold the lock of the student, so concurrent sessions of different students
+     * never wait for each other
      * @param courseId of the course
      * @return true if the course if added successfully
      */
@@ -35,22 +70,44 @@ public class Student extends UserBase{
             System.out.println("course cannot be empty");
             return false;
         }
-        // finding course from database
-        Course addCourse = database.getCourseById(courseId);
-        // if failed, throw exception
-        if(addCourse == null){
-            System.out.println("no such course: " + courseId);
-            return false;
-        }
-        // check whether student can enroll that course
-        if(canEnroll(addCourse)){
-            // if could, add student to course
-            addCourse.addStudent(this);
-            // add course to the list, return whether success
-            return coursesList.add(courseId);
+        // the course is looked up under the gate, so a reload cannot replace it meanwhile
+        Lock gate = database.getMutationGate();
+        gate.lock();
+        try {
+            // finding course from database
+            Course addCourse = database.getCourseById(courseId);
+            // if failed, throw exception
+            if(addCourse == null){
+                System.out.println("no such course: " + courseId);
+                return false;
+            }
+            synchronized (this){
+                // check whether student can enroll that course
+                if(!canEnroll(addCourse)){
+                    // otherwise return false
+                    return false;
+                }
+                // keep the state seen by a running snapshot before changing it
+                database.preserve(this);
+                database.preserve(addCourse);
+                // if could, take a seat in the course
+                if(!addCourse.addStudent(this)){
+                    System.out.println("Course is full: " + courseId);
+                    if(addCourse.joinWaitlist(this)){
+                        System.out.println("Added to the waitlist of " + courseId);
+                    }
+                    return false;
+                }
+                schedule.add(addCourse);
+                // add course to the list, return whether success
+                // the ID of the course itself is kept, so every student shares the same string
+                coursesList.add(addCourse.getId());
+                database.logMutation(MutationLog.ENROLL, getId(), courseId);
+                return true;
+            }
+        } finally {
+            gate.unlock();
         }
-        // otherwise return false
-        return false;
     }
 
     /**
@@ -65,7 +122,17 @@ public class Student extends UserBase{
             return;
         }
 
-        grades.put(courseId, grade);
+        Lock gate = database.getMutationGate();
+        gate.lock();
+        try {
+            synchronized (this){
+                database.preserve(this);
+                grades.put(courseId, grade);
+            }
+            database.logMutation(MutationLog.GRADE, getId(), courseId, grade);
+        } finally {
+            gate.unlock();
+        }
 
 
 //        // try to enroll that course
@@ -90,16 +157,18 @@ public class Student extends UserBase{
         if(course == null){
             return false;
         }
-        // if course is duplicated, or course is conflict with another course, or courses have same name, return false
-        for(String courseId: coursesList){
-            Course c = database.getCourseById(courseId);
-            if(c.getId().equals(course.getId())){
-                System.out.println("Course ID conflicted");
-                return false;
-            } else if(course.conflictWith(c)){
-                System.out.println("Course schedule conflicted");
-                return false;
-            } else if(course.getName().equals(c.getName())){
+        // if course is duplicated, or course is conflict with another course, return false
+        if(coursesList.contains(course.getId())){
+            System.out.println("Course ID conflicted");
+            return false;
+        }
+        if(schedule.conflictsWith(course)){
+            System.out.println("Course schedule conflicted");
+            return false;
+        }
+        // warn if another section with the same name is already enrolled
+        for(String sectionId: database.getCourseIdsByName(course.getName())){
+            if(coursesList.contains(sectionId)){
                 System.out.println("Same course name conflicted");
             }
         }
@@ -131,10 +200,9 @@ public class Student extends UserBase{
             return false;
         }
 
-        Map<String, Course> allCourseMap = database.getAllCourses();
-
-        for(Course c: allCourseMap.values()){
-            if(course.getName().equals(c.getName()) && grades.containsKey(c.getId())){
+        // only the sections sharing the course name can be equivalent
+        for(String sectionId: database.getCourseIdsByName(course.getName())){
+            if(grades.containsKey(sectionId)){
                 return true;
             }
         }
@@ -143,22 +211,287 @@ public class Student extends UserBase{
     }
 
     /**
-     * drop the course based on the course ID
+     * drop the course based on the course ID.
+     * The freed seat goes to the students on the waitlist of the course.
+     * A student waiting for a seat of the course leaves its waitlist instead
      * @param courseId of the course
-     * @return true if the course is dropped successfully
+     * @return true if the course is dropped or the student left its waitlist
      */
     public boolean dropCourse(String courseId){
         if(courseId == null || courseId.isEmpty()){
             return false;
         }
-        Course dropCourse = database.getCourseById(courseId);
-        if(dropCourse == null){
+        Lock gate = database.getMutationGate();
+        gate.lock();
+        try {
+            Course dropCourse = database.getCourseById(courseId);
+            if(dropCourse == null){
+                return dropDeletedCourse(courseId);
+            }
+            synchronized (this){
+                if(!coursesList.contains(courseId)){
+                    dropCourse.removeStudent(this);
+                    if(dropCourse.leaveWaitlist(this)){
+                        System.out.println("Left the waitlist of " + courseId);
+                        return true;
+                    }
+                    return false;
+                }
+                database.preserve(this);
+                database.preserve(dropCourse);
+                dropCourse.removeStudent(this);
+                coursesList.remove(courseId);
+                schedule.remove(dropCourse);
+                database.logMutation(MutationLog.DROP, getId(), courseId);
+            }
+            // promote waiting students outside of this student's lock
+            fillFromWaitlist(dropCourse);
+        } finally {
+            gate.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * drop a course that no longer exists but is still in the list of courses
+     * @param courseId of the deleted course
+     * @return true if the course was in the list
+     */
+    private synchronized boolean dropDeletedCourse(String courseId){
+        if(!coursesList.contains(courseId)){
             return false;
         }
-        dropCourse.removeStudent(this);
-        return coursesList.remove(courseId);
+        database.preserve(this);
+        coursesList.remove(courseId);
+        // the deleted course is gone, so the schedule is built again from the courses left
+        WeeklySchedule rebuilt = new WeeklySchedule();
+        for(String id : coursesList){
+            rebuilt.add(database.getCourseById(id));
+        }
+        schedule = rebuilt;
+        database.logMutation(MutationLog.DROP, getId(), courseId);
+        return true;
     }
 
+    /**
+     * give the free seats of a course to the students on its waitlist.
+     * A student who can no longer take the course, e.g. after enrolling a conflicting one, is skipped
+     * and the seat goes to the next student
+     * @param course that has free seats
+     */
+    private static void fillFromWaitlist(Course course){
+        while(course.getAvailableSeats() > 0){
+            Student next = course.pollWaitlist();
+            if(next == null){
+                break;
+            }
+            CartResult result = next.enrollCourses(Collections.singletonList(course.getId()));
+            if(result.isCommitted()){
+                continue;
+            }
+            String reason = result.getRejected().get(course.getId());
+            if(COURSE_FULL.equals(reason)){
+                // another student took the seat meanwhile, this one keeps waiting
+                course.joinWaitlist(next);
+                break;
+            }
+            System.out.printf("Skipped %s on the waitlist of %s: %s%n", next.getId(), course.getId(), reason);
+        }
+    }
+
+    /**
+     * replace the stored password, a student read back from cold storage goes back to the heap to keep it
+     * @param expected stored password
+     * @param updated stored password
+     */
+    @Override
+    public void updatePassword(String expected, String updated){
+        Lock gate = database.getMutationGate();
+        gate.lock();
+        try {
+            synchronized (this){
+                database.preserve(this);
+                super.updatePassword(expected, updated);
+            }
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /**
+     * enroll several courses at once, all or none
+     * @param courseIds of the courses to enroll
+     * @return the result, with a reason for every rejected course
+     */
+    public CartResult enrollCourses(List<String> courseIds){
+        return updateCourses(courseIds, new ArrayList<>());
+    }
+
+    /**
+     * drop several courses at once, all or none
+     * @param courseIds of the courses to drop
+     * @return the result, with a reason for every rejected course
+     */
+    public CartResult dropCourses(List<String> courseIds){
+        return updateCourses(new ArrayList<>(), courseIds);
+    }
+
+    /**
+     * apply a whole shopping cart of enrollments and drops, all or none.
+     * Every item is checked in one pass under a single lock of the student: the drops must be enrolled,
+     * the enrollments must exist, not be enrolled or graded yet, fit the schedule left after the drops
+     * and each other, and have a free seat. Seats are reserved while checking, so the cart either
+     * commits completely or is rejected with a reason for every failing item.
+     * Full courses reject the cart instead of joining their waitlist
+     * @param enrollIds of the courses to enroll
+     * @param dropIds of the courses to drop
+     * @return the result, with a reason for every rejected item
+     */
+    public CartResult updateCourses(List<String> enrollIds, List<String> dropIds){
+        CartResult result = new CartResult();
+        List<Course> dropped = new ArrayList<>();
+        Lock gate = database.getMutationGate();
+        gate.lock();
+        try {
+            synchronized (this){
+                List<Course> drops = new ArrayList<>();
+                for(String courseId : dropIds){
+                    Course course = database.getCourseById(courseId);
+                    if(course == null){
+                        result.reject(courseId, "No such course");
+                    } else if(!coursesList.contains(courseId) || drops.contains(course)){
+                        result.reject(courseId, "Not enrolled");
+                    } else {
+                        drops.add(course);
+                    }
+                }
+                // the schedule the enrollments have to fit in: the courses kept after the drops
+                WeeklySchedule trial = new WeeklySchedule();
+                for(String courseId : coursesList){
+                    Course course = database.getCourseById(courseId);
+                    if(!drops.contains(course)){
+                        trial.add(course);
+                    }
+                }
+                List<Course> enrolls = new ArrayList<>();
+                for(String courseId : enrollIds){
+                    Course course = database.getCourseById(courseId);
+                    if(course == null){
+                        result.reject(courseId, "No such course");
+                    } else if(coursesList.contains(courseId) || enrolls.contains(course)){
+                        result.reject(courseId, "Already enrolled");
+                    } else if(isFinished(courseId)){
+                        result.reject(courseId, "Already graded");
+                    } else if(trial.conflictsWith(course)){
+                        result.reject(courseId, "Schedule conflict");
+                    } else if(!course.tryReserveSeat()){
+                        result.reject(courseId, COURSE_FULL);
+                    } else {
+                        enrolls.add(course);
+                        trial.add(course);
+                    }
+                }
+                if(!result.getRejected().isEmpty()){
+                    for(Course course : enrolls){
+                        course.releaseSeat();
+                    }
+                    return result;
+                }
+                // commit, nothing below can fail
+                database.preserve(this);
+                for(Course course : drops){
+                    database.preserve(course);
+                    course.removeStudent(this);
+                    coursesList.remove(course.getId());
+                    schedule.remove(course);
+                    database.logMutation(MutationLog.DROP, getId(), course.getId());
+                }
+                for(Course course : enrolls){
+                    database.preserve(course);
+                    course.addStudentToReservedSeat(this);
+                    schedule.add(course);
+                    coursesList.add(course.getId());
+                    database.logMutation(MutationLog.ENROLL, getId(), course.getId());
+                }
+                dropped.addAll(drops);
+                result.commit();
+            }
+            // promote waiting students outside of this student's lock
+            for(Course course : dropped){
+                fillFromWaitlist(course);
+            }
+        } finally {
+            gate.unlock();
+        }
+        return result;
+    }
+
+
+    /**
+     * move the student's seat to a new version of an enrolled course, e.g. after its time changed in the data file.
+     * A student whose other courses overlap the new time is dropped from the course
+     * @param previous version of the course
+     * @param course that replaces it
+     * @return true if the student keeps the course, false if it was dropped or not enrolled
+     */
+    public boolean replaceEnrolledCourse(Course previous, Course course){
+        Lock gate = database.getMutationGate();
+        gate.lock();
+        try {
+            synchronized (this){
+                if(!coursesList.contains(course.getId())){
+                    return false;
+                }
+                schedule.remove(previous);
+                if(schedule.add(course)){
+                    return true;
+                }
+                database.preserve(this);
+                database.preserve(course);
+                course.removeStudent(this);
+                coursesList.remove(course.getId());
+                database.logMutation(MutationLog.DROP, getId(), course.getId());
+                System.out.printf("Course schedule conflicted: %s dropped %s\n", getId(), course.getId());
+            }
+            // the freed seat goes to the waitlist, outside of this student's lock
+            fillFromWaitlist(course);
+            return false;
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /**
+     * take a deleted course out of the enrolled courses and the schedule.
+     * The caller holds the mutation gate
+     * @param course that was deleted
+     */
+    public synchronized void leaveDeletedCourse(Course course){
+        if(!coursesList.contains(course.getId())){
+            return;
+        }
+        database.preserve(this);
+        coursesList.remove(course.getId());
+        schedule.remove(course);
+    }
+
+    /**
+     * put back an enrolled course when the database is restored, e.g. from a snapshot.
+     * Only the schedule is checked and the roster of the course is restored separately
+     * @param course that the student was enrolled in
+     * @return true if the course was put back, false if it is missing, already enrolled or overlaps an enrolled course
+     */
+    public synchronized boolean restoreEnrolledCourse(Course course){
+        if(course == null || coursesList.contains(course.getId())){
+            return false;
+        }
+        if(!schedule.add(course)){
+            System.out.println("Course schedule conflicted: " + course.getId());
+            return false;
+        }
+        coursesList.add(course.getId());
+        return true;
+    }
 
     /**
      * get the list of courses
@@ -169,9 +502,48 @@ public class Student extends UserBase{
     }
 
 
+    /**
+     * get the slot of the student in the grade store
+     * @return the slot, -1 if the grades are kept in their own map
+     */
+    public int getGradeSlot(){
+        return gradeSlot;
+    }
+
+    /**
+     * move the grades back into the grade store, e.g. when a student of cold storage becomes active again
+     * @param store to keep the grades in
+     */
+    public synchronized void attachGrades(GradeStore store){
+        if(gradeSlot >= 0){
+            return;
+        }
+        int slot = store.newSlot();
+        Map<String, String> view = store.view(slot);
+        view.putAll(grades);
+        grades = view;
+        gradeSlot = slot;
+    }
+
+    /**
+     * move the grades out of the grade store into a map of the student's own, so the slot can be released
+     * while the object may still be used, e.g. by a session of a deleted student.
+     * Later changes of the grades go to the map and never reach a slot reused by another student
+     * @return the slot the grades were kept in, to be released by the caller, or -1 if there is none
+     */
+    public synchronized int detachGrades(){
+        int slot = gradeSlot;
+        if(slot < 0){
+            return -1;
+        }
+        grades = new HashMap<>(grades);
+        gradeSlot = -1;
+        return slot;
+    }
+
     /**
      * get the map of grades
-     * @return map of grades
+     * @return live view of the grades in the grade store, keyed by course ID
      */
     public Map<String, String> getGrades(){
         return grades;
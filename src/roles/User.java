@@ -8,4 +8,5 @@ public interface User {
     String getId();
     String getPassword();
     String getUsername();
+    boolean checkPassword(String password);
 }
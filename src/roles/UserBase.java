@@ -1,6 +1,10 @@
 package roles;
 
+import constant.Constant;
 import database.Database;
+import database.MutationLog;
+
+import java.util.concurrent.locks.Lock;
 
 /**
  * Admin class is used to store information of an admin user
@@ -8,11 +12,15 @@ import database.Database;
  */
 public class UserBase implements User{
 
+    // hasher of the passwords of all users
+    private static volatile PasswordHasher passwordHasher = new Pbkdf2PasswordHasher(Constant.PASSWORD_HASH_ITERATIONS);
+
     // instance variables
     private final String name;
     private final String username;
     private final String id;
-    private final String password;
+    // hash of the password, or the plaintext password of the old data files until the first login
+    private volatile String password;
     protected Database database;
 
     // constructor
@@ -58,4 +66,63 @@ public class UserBase implements User{
     public String getPassword(){
         return this.password;
     }
+
+    /**
+     * check a password of the user. This runs the key derivation of the hasher, which is slow on purpose.
+     * A plaintext or outdated stored password is hashed again with the current settings after it matched
+     * @param password to check
+     * @return true if the password is correct
+     */
+    public boolean checkPassword(String password){
+        PasswordHasher hasher = passwordHasher;
+        String stored = this.password;
+        if(!hasher.verify(password, stored)){
+            return false;
+        }
+        if(!hasher.isCurrent(stored)){
+            updatePassword(stored, hasher.hash(password));
+        }
+        return true;
+    }
+
+    /**
+     * replace the stored password, unless it was changed meanwhile.
+     * The change is logged, so the plaintext of an old data file is not read back after a restart
+     * @param expected stored password
+     * @param updated stored password
+     */
+    public void updatePassword(String expected, String updated){
+        // logged under the gate, so a snapshot holds the new password or its record
+        Lock gate = database.getMutationGate();
+        gate.lock();
+        try {
+            synchronized (this){
+                if(this.password.equals(expected)){
+                    this.password = updated;
+                    database.logMutation(MutationLog.PASSWORD, getClass().getSimpleName(), id, updated);
+                }
+            }
+        } finally {
+            gate.unlock();
+        }
+    }
+
+    /**
+     * get the hasher of the passwords
+     * @return the hasher
+     */
+    public static PasswordHasher getPasswordHasher(){
+        return passwordHasher;
+    }
+
+    /**
+     * change the hasher of the passwords, e.g. to raise the cost of new hashes
+     * @param hasher that hashes and checks the passwords from now on
+     */
+    public static void setPasswordHasher(PasswordHasher hasher){
+        if(hasher == null){
+            throw new IllegalArgumentException("hasher must not be null");
+        }
+        passwordHasher = hasher;
+    }
 }
@@ -0,0 +1,570 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import constant.Constant;
+import courses.Course;
+import database.GradeStore;
+import database.MutationLog;
+import files.DataFileWatcher;
+import processor.RegistrationService;
+import processor.Session;
+import processor.SessionCache;
+import roles.Admin;
+import roles.CartResult;
+import roles.Professor;
+import roles.Student;
+import roles.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * headless HTTP front end of the management system, built on the JDK's HTTP server.
+ * Responses are JSON, parameters come from the query string or a form encoded body.
+ * A login returns a token that later requests send as "Authorization: Bearer token",
+ * it expires after it was not used for Constant.SESSION_TTL_MILLIS.
+ * Connections are multiplexed by the server's selector thread, and requests run on a virtual
+ * thread each when the JDK has them, otherwise on a bounded pool
+ *
+ * POST /api/login          type, username, password, the password in the body only
+ * POST /api/logout
+ * GET  /api/courses        all courses, or one course with /api/courses/ID
+ * GET  /api/schedule       enrolled courses of the student
+ * POST /api/enroll         course
+ * POST /api/drop           course
+ * POST /api/cart           enroll and drop, comma separated course IDs, applied all or none
+ * GET  /api/roster         course, for its professor or an admin
+ * GET  /api/grades         grades of the student, or of student for an admin
+ * POST /api/grades         student, course, grade, for the professor of the course or an admin
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class ApiServer implements Closeable {
+
+    // constants
+    // pending connections the operating system may queue before they are accepted
+    private static final int BACKLOG = 4096;
+    // threads of the pool used when the JDK has no virtual threads
+    private static final int POOL_THREADS_PER_CPU = 16;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
+    // instance variables
+    private final RegistrationService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    // sessions of the logged-in users, keyed by token, so requests don't check the password again
+    private final SessionCache sessions = new SessionCache(Constant.SESSION_TTL_MILLIS);
+    // endpoints by path and method
+    private final Map<String, Map<String, Endpoint>> routes = new HashMap<>();
+
+    /**
+     * create the server, call start to accept requests
+     * @param service shared by all requests
+     * @param port to listen on, 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public ApiServer(RegistrationService service, int port) throws IOException {
+        this.service = service;
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        route("/api/login", "POST", this::login);
+        route("/api/logout", "POST", this::logout);
+        route("/api/courses", "GET", this::courses);
+        route("/api/schedule", "GET", this::schedule);
+        route("/api/enroll", "POST", this::enroll);
+        route("/api/drop", "POST", this::drop);
+        route("/api/cart", "POST", this::cart);
+        route("/api/roster", "GET", this::roster);
+        route("/api/grades", "GET", this::grades);
+        route("/api/grades", "POST", this::giveGrade);
+    }
+
+    /**
+     * start the server with the data files, the mutation log and the data file watcher,
+     * which are closed again when the JVM shuts down
+     * @param port to listen on
+     * @return the started server
+     * @throws IOException if the port cannot be bound
+     */
+    public static ApiServer launch(int port) throws IOException {
+        RegistrationService service = RegistrationService.getInstance();
+        MutationLog mutationLog = service.openMutationLog(Constant.MUTATION_LOG_PATH, Constant.LOG_SYNC_INTERVAL_MILLIS);
+        DataFileWatcher dataFileWatcher = service.watchDataFiles(Constant.DATA_DIRECTORY);
+        ApiServer server = new ApiServer(service, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Shutting down the Student Management System...");
+            server.close();
+            try {
+                dataFileWatcher.close();
+                if(mutationLog != null){
+                    mutationLog.close();
+                }
+            } catch (Exception e) {
+                System.err.println("Could not close the data file watcher or the mutation log: " + e.getMessage());
+            }
+        }));
+        server.start();
+        System.out.println("Student Management System listening on port " + server.getPort());
+        return server;
+    }
+
+    /**
+     * create the executor of the requests: a virtual thread per request if the JDK has them,
+     * looked up by reflection so the code still runs on older JDKs, otherwise a bounded pool
+     * @return the executor
+     */
+    static ExecutorService newRequestExecutor(){
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * POOL_THREADS_PER_CPU);
+        }
+    }
+
+    /**
+     * start accepting requests
+     */
+    public void start(){
+        server.start();
+    }
+
+    /**
+     * get the port the server listens on
+     * @return the port
+     */
+    public int getPort(){
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * get the number of logged-in sessions whose token has not expired
+     * @return the number of sessions
+     */
+    public int getSessionCount(){
+        return sessions.size();
+    }
+
+    /**
+     * stop the server, requests still running get one second to finish
+     */
+    @Override
+    public void close(){
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // endpoints
+
+    private String login(Request request) throws ApiException {
+        String type = typeOf(request.param("type"));
+        Session session;
+        try {
+            session = service.login(type, request.param("username"), request.secretParam("password"));
+        } catch (RejectedExecutionException e) {
+            throw new ApiException(503, "Too many logins at the moment, please try again later");
+        }
+        if(session == null){
+            throw new ApiException(401, "Wrong username or password");
+        }
+        String token = sessions.add(session);
+        User user = session.getUser();
+        return new JsonWriter().beginObject()
+                .member("token", token)
+                .member("id", user.getId())
+                .member("name", user.getName())
+                .member("type", request.param("type"))
+                .endObject().toString();
+    }
+
+    private String logout(Request request) throws ApiException {
+        request.session();
+        sessions.remove(request.token);
+        return ok();
+    }
+
+    private String courses(Request request) throws ApiException {
+        request.session();
+        JsonWriter json = new JsonWriter();
+        if(!request.subPath.isEmpty()){
+            writeCourse(json, course(request.subPath));
+            return json.toString();
+        }
+        json.beginArray();
+        for(Course course : service.getAllCourses().values()){
+            writeCourse(json, course);
+        }
+        return json.endArray().toString();
+    }
+
+    private String schedule(Request request) throws ApiException {
+        Student student = request.user(Student.class);
+        JsonWriter json = new JsonWriter().beginArray();
+        synchronized (student){
+            for(String courseId : student.getCoursesList()){
+                Course course = service.getCourseById(courseId);
+                if(course != null){
+                    writeCourse(json, course);
+                }
+            }
+        }
+        return json.endArray().toString();
+    }
+
+    private String enroll(Request request) throws ApiException {
+        Student student = request.user(Student.class);
+        Course course = course(request.param("course"));
+        if(!student.enrollCourse(course.getId())){
+            throw new ApiException(409, "Cannot enroll in " + course.getId());
+        }
+        return ok();
+    }
+
+    private String drop(Request request) throws ApiException {
+        Student student = request.user(Student.class);
+        Course course = course(request.param("course"));
+        if(!student.dropCourse(course.getId())){
+            throw new ApiException(409, "Not enrolled in " + course.getId());
+        }
+        return ok();
+    }
+
+    private String cart(Request request) throws ApiException {
+        Student student = request.user(Student.class);
+        List<String> enrollIds = request.list("enroll");
+        List<String> dropIds = request.list("drop");
+        if(enrollIds.isEmpty() && dropIds.isEmpty()){
+            throw new ApiException(400, "Missing parameter: enroll or drop");
+        }
+        CartResult result = student.updateCourses(enrollIds, dropIds);
+        if(result.isCommitted()){
+            return ok();
+        }
+        JsonWriter json = new JsonWriter().beginObject()
+                .member("error", "Cart rejected")
+                .name("rejected").beginObject();
+        for(Map.Entry<String, String> rejected : result.getRejected().entrySet()){
+            json.member(rejected.getKey(), rejected.getValue());
+        }
+        throw new ApiException(409, "Cart rejected", json.endObject().endObject().toString());
+    }
+
+    private String roster(Request request) throws ApiException {
+        Course course = course(request.param("course"));
+        checkTeaches(request.session().getUser(), course);
+        JsonWriter json = new JsonWriter().beginArray();
+        for(Student student : course.copyStudents()){
+            json.beginObject()
+                    .member("id", student.getId())
+                    .member("name", student.getName())
+                    .member("username", student.getUsername())
+                    .endObject();
+        }
+        return json.endArray().toString();
+    }
+
+    private String grades(Request request) throws ApiException {
+        User user = request.session().getUser();
+        Student student;
+        if(user instanceof Admin){
+            student = student(request.param("student"));
+        } else if(user instanceof Student){
+            student = (Student) user;
+        } else {
+            throw new ApiException(403, "Only students and admins can view grades");
+        }
+        Map<String, String> grades;
+        synchronized (student){
+            grades = new HashMap<>(student.getGrades());
+        }
+        JsonWriter json = new JsonWriter().beginObject();
+        for(Map.Entry<String, String> grade : grades.entrySet()){
+            json.member(grade.getKey(), grade.getValue());
+        }
+        return json.endObject().toString();
+    }
+
+    private String giveGrade(Request request) throws ApiException {
+        Course course = course(request.param("course"));
+        checkTeaches(request.session().getUser(), course);
+        Student student = student(request.param("student"));
+        String grade = request.param("grade");
+        if(!GradeStore.isKnownGrade(grade)){
+            throw new ApiException(400, "Unknown grade: " + grade);
+        }
+        boolean takesCourse;
+        synchronized (student){
+            takesCourse = student.getCoursesList().contains(course.getId()) || student.getGrades().containsKey(course.getId());
+        }
+        // a professor grades the students of the course only
+        if(!takesCourse){
+            throw new ApiException(409, "Student " + student.getId() + " does not take " + course.getId());
+        }
+        student.addCourseWithGrade(course.getId(), grade);
+        return ok();
+    }
+
+    // helpers
+
+    private Course course(String courseId) throws ApiException {
+        Course course = service.getCourseById(courseId);
+        if(course == null){
+            throw new ApiException(404, "No such course: " + courseId);
+        }
+        return course;
+    }
+
+    private Student student(String studentId) throws ApiException {
+        Student student = service.getStudentById(studentId);
+        if(student == null){
+            throw new ApiException(404, "No such student: " + studentId);
+        }
+        return student;
+    }
+
+    /**
+     * only the professor of a course and admins see its roster and give its grades
+     */
+    private static void checkTeaches(User user, Course course) throws ApiException {
+        if(user instanceof Admin){
+            return;
+        }
+        if(user instanceof Professor && course.getProfessor() != null
+                && course.getProfessor().getId().equals(user.getId())){
+            return;
+        }
+        throw new ApiException(403, "Not the professor of " + course.getId());
+    }
+
+    private static void writeCourse(JsonWriter json, Course course){
+        json.beginObject()
+                .member("id", course.getId())
+                .member("name", course.getName())
+                .member("professor", course.getProfessor() == null ? null : course.getProfessor().getName())
+                .member("days", course.getWeekDay())
+                .member("start", course.getStartTime().format(TIME_FORMAT))
+                .member("end", course.getEndTime().format(TIME_FORMAT))
+                .member("capacity", course.getCapacity())
+                .member("available", course.getAvailableSeats())
+                .endObject();
+    }
+
+    private static String ok(){
+        return new JsonWriter().beginObject().member("ok", true).endObject().toString();
+    }
+
+    /**
+     * turn a user type name into the type constant, the constants themselves are accepted too
+     */
+    private static String typeOf(String type){
+        switch(type){
+            case "student": return Constant.STUDENT_TYPE;
+            case "professor": return Constant.PROFESSOR_TYPE;
+            case "admin": return Constant.ADMIN_TYPE;
+            default: return type;
+        }
+    }
+
+    /**
+     * register an endpoint, its path also matches the paths below it
+     */
+    private void route(String path, String method, Endpoint endpoint){
+        Map<String, Endpoint> endpoints = routes.computeIfAbsent(path, key -> {
+            Map<String, Endpoint> byMethod = new HashMap<>();
+            server.createContext(path, exchange -> dispatch(exchange, path, byMethod));
+            return byMethod;
+        });
+        endpoints.put(method, endpoint);
+    }
+
+    private void dispatch(HttpExchange exchange, String path, Map<String, Endpoint> endpoints){
+        int status = 200;
+        String body;
+        try {
+            Endpoint endpoint = endpoints.get(exchange.getRequestMethod());
+            if(endpoint == null){
+                throw new ApiException(405, "Method not allowed: " + exchange.getRequestMethod());
+            }
+            String subPath = exchange.getRequestURI().getPath().substring(path.length());
+            if(subPath.startsWith("/")){
+                subPath = subPath.substring(1);
+            }
+            body = endpoint.handle(new Request(exchange, subPath));
+        } catch (ApiException e) {
+            status = e.status;
+            body = e.body != null ? e.body
+                    : new JsonWriter().beginObject().member("error", e.getMessage()).endObject().toString();
+        } catch (IOException | RuntimeException e) {
+            status = 500;
+            body = new JsonWriter().beginObject().member("error", "Internal error").endObject().toString();
+        }
+        try {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try(OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (IOException e) {
+            // the client went away, nothing left to do
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * handles the requests of one path and method
+     */
+    private interface Endpoint {
+        String handle(Request request) throws ApiException;
+    }
+
+    /**
+     * error returned to the client with its status code
+     */
+    private static class ApiException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+        // JSON sent instead of the message, if the error has details
+        final String body;
+
+        ApiException(int status, String message){
+            this(status, message, null);
+        }
+
+        ApiException(int status, String message, String body){
+            super(message);
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /**
+     * parameters and session of one request
+     */
+    private class Request {
+        // path below the endpoint, e.g. the course ID of /api/courses/ID
+        final String subPath;
+        final String token;
+        private final Map<String, String> params = new HashMap<>();
+        // parameters sent in the URL, which ends up in access and proxy logs
+        private final Map<String, String> queryParams = new HashMap<>();
+
+        Request(HttpExchange exchange, String subPath) throws IOException, ApiException {
+            this.subPath = subPath;
+            parse(exchange.getRequestURI().getRawQuery(), queryParams);
+            params.putAll(queryParams);
+            try(InputStream in = exchange.getRequestBody()) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                in.transferTo(body);
+                parse(body.toString(StandardCharsets.UTF_8), params);
+            }
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            token = authorization != null && authorization.startsWith("Bearer ") ? authorization.substring(7).trim() : null;
+        }
+
+        private void parse(String form, Map<String, String> params) throws ApiException {
+            if(form == null || form.isEmpty()){
+                return;
+            }
+            try {
+                for(String pair : form.split("&")){
+                    int equals = pair.indexOf('=');
+                    if(equals > 0){
+                        params.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                                URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                throw new ApiException(400, "Malformed parameters");
+            }
+        }
+
+        /**
+         * get a required parameter
+         */
+        String param(String name) throws ApiException {
+            String value = params.get(name);
+            if(value == null || value.isEmpty()){
+                throw new ApiException(400, "Missing parameter: " + name);
+            }
+            return value;
+        }
+
+        /**
+         * get a required parameter that must come in the request body, e.g. a password
+         */
+        String secretParam(String name) throws ApiException {
+            if(queryParams.containsKey(name)){
+                throw new ApiException(400, "Send " + name + " in the request body, not in the URL");
+            }
+            return param(name);
+        }
+
+        /**
+         * get an optional parameter holding comma separated values
+         */
+        List<String> list(String name){
+            List<String> values = new ArrayList<>();
+            String value = params.get(name);
+            if(value != null){
+                for(String item : value.split(",")){
+                    if(!item.trim().isEmpty()){
+                        values.add(item.trim());
+                    }
+                }
+            }
+            return values;
+        }
+
+        /**
+         * get the session of the token sent with the request.
+         * The token of a user deleted since the login is dropped
+         */
+        Session session() throws ApiException {
+            Session session = sessions.get(token);
+            if(session == null){
+                throw new ApiException(401, "Not logged in");
+            }
+            if(!service.isActive(session)){
+                sessions.remove(token);
+                throw new ApiException(401, "Not logged in");
+            }
+            return session;
+        }
+
+        /**
+         * get the logged-in user, who must be of the given type
+         */
+        <T extends User> T user(Class<T> type) throws ApiException {
+            User user = session().getUser();
+            if(!type.isInstance(user)){
+                throw new ApiException(403, "Only for " + type.getSimpleName().toLowerCase() + "s");
+            }
+            return type.cast(user);
+        }
+    }
+}
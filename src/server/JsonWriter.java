@@ -0,0 +1,171 @@
+package server;
+
+/**
+ * minimal writer of JSON text, enough for the responses of the API.
+ * Commas between members and elements are added automatically
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class JsonWriter {
+
+    // instance variables
+    private final StringBuilder out = new StringBuilder(128);
+    // true right after an opening bracket or a member name, where no comma is needed
+    private boolean first = true;
+
+    /**
+     * start an object
+     * @return this writer
+     */
+    public JsonWriter beginObject(){
+        separate();
+        out.append('{');
+        first = true;
+        return this;
+    }
+
+    /**
+     * end the current object
+     * @return this writer
+     */
+    public JsonWriter endObject(){
+        out.append('}');
+        first = false;
+        return this;
+    }
+
+    /**
+     * start an array
+     * @return this writer
+     */
+    public JsonWriter beginArray(){
+        separate();
+        out.append('[');
+        first = true;
+        return this;
+    }
+
+    /**
+     * end the current array
+     * @return this writer
+     */
+    public JsonWriter endArray(){
+        out.append(']');
+        first = false;
+        return this;
+    }
+
+    /**
+     * write the name of the next member of an object
+     * @param name of the member
+     * @return this writer
+     */
+    public JsonWriter name(String name){
+        separate();
+        quote(name);
+        out.append(':');
+        first = true;
+        return this;
+    }
+
+    /**
+     * write a string value, null is written as null
+     * @param value to write
+     * @return this writer
+     */
+    public JsonWriter value(String value){
+        separate();
+        if(value == null){
+            out.append("null");
+        } else {
+            quote(value);
+        }
+        first = false;
+        return this;
+    }
+
+    /**
+     * write a number
+     * @param value to write
+     * @return this writer
+     */
+    public JsonWriter value(long value){
+        separate();
+        out.append(value);
+        first = false;
+        return this;
+    }
+
+    /**
+     * write a boolean
+     * @param value to write
+     * @return this writer
+     */
+    public JsonWriter value(boolean value){
+        separate();
+        out.append(value);
+        first = false;
+        return this;
+    }
+
+    /**
+     * write a member with a string value
+     * @param name of the member
+     * @param value of the member
+     * @return this writer
+     */
+    public JsonWriter member(String name, String value){
+        return name(name).value(value);
+    }
+
+    /**
+     * write a member with a number value
+     * @param name of the member
+     * @param value of the member
+     * @return this writer
+     */
+    public JsonWriter member(String name, long value){
+        return name(name).value(value);
+    }
+
+    /**
+     * write a member with a boolean value
+     * @param name of the member
+     * @param value of the member
+     * @return this writer
+     */
+    public JsonWriter member(String name, boolean value){
+        return name(name).value(value);
+    }
+
+    private void separate(){
+        if(!first){
+            out.append(',');
+        }
+    }
+
+    private void quote(String value){
+        out.append('"');
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            switch(c){
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if(c < 0x20){
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    @Override
+    public String toString(){
+        return out.toString();
+    }
+}
@@ -3,11 +3,18 @@ import database.Database;
 import processor.Processor;
 
 import roles.Admin;
+import roles.ImportResult;
+import roles.PasswordHasher;
+import roles.Student;
+import roles.UserBase;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.time.LocalTime;
 
 
@@ -145,4 +152,93 @@ public class AdminTest {
 
 
     }
+
+    @Test
+    public void testImportStudents() {
+        Admin admin = new Admin("001", "adminTest", "admin001", "adminPassword");
+        StringBuilder file = new StringBuilder();
+        // more rows than one batch
+        for (int i = 0; i < 2500; i++) {
+            file.append("N").append(i).append("; Imported ").append(i).append("; imported").append(i)
+                    .append("; pw").append(i).append("; CIT590: A, CIT591: B+\n");
+        }
+        file.append("N1; Same ID; other01; pw\n");
+        file.append("N9999; Same Username; imported7; pw\n");
+        file.append("001; Existing ID; other02; pw\n");
+        file.append("\n");
+        file.append("N10000; No Password; other03;\n");
+        file.append("N10001; Bad Grade; other04; pw; CIT590\n");
+        file.append("N10002; Unknown Grade; other05; pw; CIT590: Excellent\n");
+        ImportResult result = admin.importStudents(new StringReader(file.toString()));
+
+        assertEquals(2500, result.getImported());
+        assertEquals(6, result.getRejected().size());
+        assertEquals("duplicated ID N1", result.getRejected().get(2501));
+        assertEquals("duplicated username imported7", result.getRejected().get(2502));
+        assertEquals("duplicated ID 001", result.getRejected().get(2503));
+        assertEquals("missing password", result.getRejected().get(2505));
+        assertTrue(result.getRejected().get(2506).startsWith("missing field"));
+        assertEquals("unknown grade Excellent", result.getRejected().get(2507));
+
+        Student student = Database.getInstance().getStudentByUsername("imported2499");
+        assertEquals("N2499", student.getId());
+        assertEquals("B+", student.getGrades().get("CIT591"));
+        // the import stores a cheap hash, which the first login replaces with a full one
+        PasswordHasher hasher = UserBase.getPasswordHasher();
+        assertFalse("pw2499".equals(student.getPassword()));
+        assertFalse(hasher.isCurrent(student.getPassword()));
+        assertTrue(student.checkPassword("pw2499"));
+        assertTrue(hasher.isCurrent(student.getPassword()));
+        assertTrue(student.checkPassword("pw2499"));
+        assertEquals("StudentName1", Database.getInstance().getStudentById("001").getName());
+        assertNull(Database.getInstance().getStudentById("N10001"));
+    }
+
+    @Test
+    public void testImportCourses() {
+        Admin admin = new Admin("001", "adminTest", "admin001", "adminPassword");
+        String file = "CIT800; Imported Course; Clayton Greenberg; MW; 8:00; 9:00; 40\n"
+                + "CIT801; Conflicting Course; Clayton Greenberg; TR; 10:30; 11:30; 40\n"
+                + "CIT802; Unknown Professor; Nobody; MW; 8:00; 9:00; 40\n"
+                + "CIT590; Existing ID; Clayton Greenberg; F; 8:00; 9:00; 40\n"
+                + "CIT803; Backwards; Clayton Greenberg; F; 10:00; 9:00; 40\n"
+                + "CIT804; Bad Capacity; Clayton Greenberg; F; 10:00; 11:00; many\n";
+        ImportResult result = admin.importCourses(new StringReader(file));
+
+        assertEquals(1, result.getImported());
+        assertEquals("time conflict with CIT592", result.getRejected().get(2));
+        assertEquals("unknown professor Nobody", result.getRejected().get(3));
+        assertEquals("duplicated ID CIT590", result.getRejected().get(4));
+        assertEquals("course ends before it starts", result.getRejected().get(5));
+        assertTrue(result.getRejected().get(6).startsWith("expected a number"));
+        assertEquals("Clayton Greenberg", Database.getInstance().getCourseById("CIT800").getProfessor().getName());
+        assertTrue(result.toString().startsWith("1 rows imported, 5 rejected"));
+    }
+
+    @Test
+    public void testImportStopsOnReadError() {
+        Admin admin = new Admin("001", "adminTest", "admin001", "adminPassword");
+        StringReader rows = new StringReader("N1; Imported 1; imported1; pw1\nN2; Imported 2; imported2; pw2\n");
+        // hands out the rows, then fails like a broken disk
+        Reader input = new Reader() {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                int read = rows.read(buffer, offset, length);
+                if (read < 0) {
+                    throw new IOException("disk error");
+                }
+                return read;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ImportResult result = admin.importStudents(input);
+
+        assertEquals(2, result.getImported());
+        assertEquals("disk error", result.getError());
+        assertTrue(result.toString().endsWith("import stopped early: disk error"));
+        assertEquals("N2", Database.getInstance().getStudentByUsername("imported2").getId());
+    }
 }
@@ -0,0 +1,174 @@
+package test;
+
+import database.Database;
+import processor.RegistrationService;
+import server.ApiServer;
+import server.JsonWriter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class ApiServerTest {
+
+    private ApiServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Before
+    public void setUp() throws IOException {
+        Database.reset();
+        server = new ApiServer(RegistrationService.getInstance(), 0);
+        server.start();
+    }
+
+    @After
+    public void tearDown(){
+        server.close();
+    }
+
+    private HttpRequest.Builder request(String path, String token){
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path));
+        if(token != null){
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    private HttpResponse<String> get(String path, String token) throws IOException, InterruptedException {
+        return client.send(request(path, token).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String path, String token, String form) throws IOException, InterruptedException {
+        HttpRequest post = request(path, token)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form)).build();
+        return client.send(post, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String login(String type, String username) throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/api/login", null, "type=" + type + "&username=" + username + "&password=password590");
+        assertEquals(response.body(), 200, response.statusCode());
+        Matcher token = Pattern.compile("\"token\":\"([^\"]+)\"").matcher(response.body());
+        assertTrue(token.find());
+        return token.group(1);
+    }
+
+    @Test
+    public void testStudentFlow() throws IOException, InterruptedException {
+        assertEquals(401, post("/api/login", null, "type=student&username=testStudent01&password=wrong").statusCode());
+        assertEquals(401, get("/api/courses", null).statusCode());
+        String token = login("student", "testStudent01");
+
+        HttpResponse<String> courses = get("/api/courses", token);
+        assertEquals(200, courses.statusCode());
+        assertTrue(courses.body().startsWith("[{\"id\":\"CIT590\""));
+        HttpResponse<String> course = get("/api/courses/CIT591", token);
+        assertTrue(course.body().contains("\"professor\":\"Arvind Bhusnurmath\""));
+        assertTrue(course.body().contains("\"start\":\"12:00\""));
+        assertEquals(404, get("/api/courses/NOPE", token).statusCode());
+
+        assertEquals(200, post("/api/enroll", token, "course=CIT590").statusCode());
+        assertEquals(409, post("/api/enroll", token, "course=CIT590").statusCode());
+        assertEquals(400, post("/api/enroll", token, "").statusCode());
+        assertTrue(get("/api/schedule", token).body().contains("\"id\":\"CIT590\""));
+        assertTrue(get("/api/grades", token).body().contains("\"CIS191\":\"A\""));
+        assertEquals(403, get("/api/roster?course=CIT590", token).statusCode());
+        assertEquals(405, get("/api/enroll", token).statusCode());
+
+        assertEquals(200, post("/api/drop", token, "course=CIT590").statusCode());
+        assertEquals(409, post("/api/drop", token, "course=CIT590").statusCode());
+        assertEquals(200, post("/api/logout", token, "").statusCode());
+        assertEquals(401, get("/api/schedule", token).statusCode());
+    }
+
+    @Test
+    public void testPasswordInUrlIsRejected() throws IOException, InterruptedException {
+        HttpResponse<String> response = post("/api/login?password=password590", null, "type=student&username=testStudent01");
+        assertEquals(400, response.statusCode());
+        assertEquals(0, server.getSessionCount());
+    }
+
+    @Test
+    public void testTokenOfDeletedUser() throws IOException, InterruptedException {
+        String token = login("student", "testStudent01");
+        assertEquals(200, get("/api/courses", token).statusCode());
+        assertTrue(Database.getInstance().deleteStudent("001"));
+        // the token dies with its user
+        assertEquals(401, get("/api/courses", token).statusCode());
+        assertEquals(0, server.getSessionCount());
+    }
+
+    @Test
+    public void testCart() throws IOException, InterruptedException {
+        String token = login("student", "testStudent01");
+        assertEquals(400, post("/api/cart", token, "").statusCode());
+        HttpResponse<String> rejected = post("/api/cart", token, "enroll=CIT590,NOPE");
+        assertEquals(409, rejected.statusCode());
+        assertTrue(rejected.body(), rejected.body().contains("\"rejected\":{\"NOPE\":\"No such course\"}"));
+        assertFalse(get("/api/schedule", token).body().contains("CIT590"));
+
+        assertEquals(200, post("/api/cart", token, "enroll=CIT590").statusCode());
+        assertEquals(200, post("/api/cart", token, "drop=CIT590").statusCode());
+        assertEquals("[]", get("/api/schedule", token).body());
+    }
+
+    @Test
+    public void testProfessorAndAdmin() throws IOException, InterruptedException {
+        String student = login("student", "testStudent02");
+        assertEquals(200, post("/api/enroll", student, "course=CIT590").statusCode());
+
+        String professor = login("professor", "Krakowsky");
+        HttpResponse<String> roster = get("/api/roster?course=CIT590", professor);
+        assertEquals(200, roster.statusCode());
+        assertEquals("[{\"id\":\"002\",\"name\":\"StudentName2\",\"username\":\"testStudent02\"}]", roster.body());
+        assertEquals(403, get("/api/roster?course=CIT591", professor).statusCode());
+        assertEquals(200, post("/api/grades", professor, "student=002&course=CIT590&grade=A%2B").statusCode());
+        // made-up grades are refused before they reach the grade store
+        assertEquals(400, post("/api/grades", professor, "student=002&course=CIT590&grade=Excellent").statusCode());
+        // the first student does not take the course
+        assertEquals(409, post("/api/grades", professor, "student=001&course=CIT590&grade=A").statusCode());
+        assertFalse(Database.getInstance().getStudentById("001").getGrades().containsKey("CIT590"));
+        assertEquals(403, get("/api/grades?student=002", professor).statusCode());
+
+        String admin = login("admin", "admin01");
+        assertTrue(get("/api/grades?student=002", admin).body().contains("\"CIT590\":\"A+\""));
+        assertEquals(200, get("/api/roster?course=CIT591", admin).statusCode());
+        assertEquals(404, get("/api/grades?student=999", admin).statusCode());
+    }
+
+    @Test
+    public void testConcurrentRequests() throws IOException, InterruptedException {
+        String token = login("student", "testStudent01");
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for(int i = 0; i < 200; i++){
+            responses.add(client.sendAsync(request("/api/courses", token).GET().build(), HttpResponse.BodyHandlers.ofString()));
+        }
+        for(CompletableFuture<HttpResponse<String>> response : responses){
+            assertEquals(200, response.join().statusCode());
+        }
+        assertEquals(1, server.getSessionCount());
+    }
+
+    @Test
+    public void testJsonWriter(){
+        String json = new JsonWriter().beginObject()
+                .member("name", "a \"quoted\"\nline")
+                .name("list").beginArray().value(1).value(true).value((String) null).endArray()
+                .endObject().toString();
+        assertEquals("{\"name\":\"a \\\"quoted\\\"\\nline\",\"list\":[1,true,null]}", json);
+    }
+}
@@ -0,0 +1,85 @@
+package test;
+
+import courses.Course;
+import database.BackgroundSnapshotter;
+import database.Database;
+import processor.Processor;
+import roles.Student;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class BackgroundSnapshotterTest {
+    @Before
+    public void setUp(){
+        Database.reset();
+        Database.setConcurrentMode(true);
+    }
+
+    @Test
+    public void testSnapshotWhileRegistering() throws Exception {
+        Path snapshotFile = Files.createTempFile("database", ".snapshot");
+        try {
+            new Processor();
+            Database database = Database.getInstance();
+            List<Student> students = new ArrayList<>();
+            for(int i = 0; i < 200; i++){
+                Student student = new Student("7" + i, "student" + i, "user7" + i, "password");
+                database.addUser(student);
+                students.add(student);
+            }
+            // keep enrolling and dropping while snapshots are written
+            AtomicBoolean running = new AtomicBoolean(true);
+            Thread registration = new Thread(() -> {
+                int round = 0;
+                while(running.get()){
+                    Student student = students.get(round % students.size());
+                    if(!student.enrollCourse("CIT590")){
+                        student.dropCourse("CIT590");
+                    }
+                    round++;
+                }
+            });
+            registration.start();
+
+            BackgroundSnapshotter snapshotter = new BackgroundSnapshotter(database);
+            long bytes = 0;
+            for(int i = 0; i < 5; i++){
+                Future<Long> result = snapshotter.snapshot(snapshotFile.toString());
+                bytes = result.get();
+            }
+            running.set(false);
+            registration.join();
+            snapshotter.close();
+
+            assertTrue(bytes > 0);
+            assertEquals(5, snapshotter.getCompletedCount());
+            assertEquals(bytes, snapshotter.getLastBytes());
+            assertEquals(Files.size(snapshotFile), snapshotter.getLastBytes());
+            assertTrue(snapshotter.getTotalBytes() >= bytes);
+            assertTrue(snapshotter.getLastCapturePauseMicros() >= 0);
+
+            // the roster and the course lists of the students come from the same moment
+            Database.reset();
+            new Processor(snapshotFile.toString());
+            Database restored = Database.getInstance();
+            Course course = restored.getCourseById("CIT590");
+            for(Student student : restored.getStudentMap().values()){
+                assertEquals(student.getCoursesList().contains("CIT590"), course.getStudents().contains(student));
+            }
+        } finally {
+            Database.setConcurrentMode(false);
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+}
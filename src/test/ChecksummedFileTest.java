@@ -0,0 +1,186 @@
+package test;
+
+import database.Database;
+import files.ChecksummedFile;
+import files.FileInfoReader;
+import processor.Processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class ChecksummedFileTest {
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        Database.reset();
+        file = Files.createTempFile("studentinfo", ".txt");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(Paths.get(file + ChecksummedFile.QUARANTINE_SUFFIX));
+    }
+
+    /**
+     * write enough lines for several blocks
+     */
+    private List<String> writeLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        try(Writer out = ChecksummedFile.newWriter(Files.newOutputStream(file))) {
+            for(int i = 0; i < 5000; i++){
+                String line = String.format("%05d; Student \u00dc%d; student%d; password; CIT590: A", i, i, i);
+                lines.add(line);
+                out.write(line);
+                out.write('\n');
+            }
+        }
+        return lines;
+    }
+
+    private List<String> readLines() throws IOException {
+        List<String> lines = new ArrayList<>();
+        try(BufferedReader in = new BufferedReader(ChecksummedFile.openReader(file))) {
+            for(String line = in.readLine(); line != null; line = in.readLine()){
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    private void flipByte(long offset) throws IOException {
+        try(RandomAccessFile out = new RandomAccessFile(file.toFile(), "rw")) {
+            out.seek(offset);
+            int value = out.read();
+            out.seek(offset);
+            out.write(value ^ 0x5A);
+        }
+    }
+
+    @Test
+    public void testWriteReadAndVerify() throws IOException {
+        List<String> lines = writeLines();
+        assertTrue(ChecksummedFile.isChecksummed(file));
+        ChecksummedFile.Verification verification = ChecksummedFile.verify(file);
+        assertTrue(verification.toString(), verification.isValid());
+        assertTrue(verification.getBlocks() > 3);
+        assertEquals(Files.size(file), verification.getBytes());
+        assertEquals(lines, readLines());
+    }
+
+    @Test
+    public void testCorruptBlockIsQuarantined() throws IOException {
+        List<String> lines = writeLines();
+        // a byte in the middle of the file is inside the bytes of some block
+        flipByte(Files.size(file) / 2);
+        ChecksummedFile.Verification verification = ChecksummedFile.verify(file);
+        assertFalse(verification.isValid());
+        assertEquals(1, verification.getCorruptOffsets().size());
+        assertFalse(verification.isTorn());
+
+        List<String> read = readLines();
+        assertTrue(read.size() < lines.size());
+        assertTrue(lines.containsAll(read));
+        assertEquals(lines.get(0), read.get(0));
+        assertEquals(lines.get(lines.size() - 1), read.get(read.size() - 1));
+        assertTrue(Files.size(Paths.get(file + ChecksummedFile.QUARANTINE_SUFFIX)) > 0);
+    }
+
+    @Test
+    public void testDamagedBlockHeaderUsesFooter() throws IOException {
+        List<String> lines = writeLines();
+        // the length of the first block, right after the file header
+        flipByte(8);
+        assertFalse(ChecksummedFile.verify(file).isValid());
+        // the footer still knows where the block ends, so nothing is lost
+        assertEquals(lines, readLines());
+    }
+
+    @Test
+    public void testVerifyGoesOnAfterDamagedBlockHeader() throws IOException {
+        writeLines();
+        int blocks = ChecksummedFile.verify(file).getBlocks();
+        // the length of the first block, and a byte of a later block
+        flipByte(8);
+        flipByte(Files.size(file) / 2);
+        ChecksummedFile.Verification verification = ChecksummedFile.verify(file);
+        assertFalse(verification.isTorn());
+        assertTrue(verification.isFooterValid());
+        assertEquals(blocks, verification.getBlocks());
+        assertEquals(2, verification.getCorruptOffsets().size());
+        assertEquals(Long.valueOf(8), verification.getCorruptOffsets().get(0));
+    }
+
+    @Test
+    public void testCorruptBlockIsQuarantinedOnce() throws IOException {
+        writeLines();
+        flipByte(Files.size(file) / 2);
+        readLines();
+        Path quarantine = Paths.get(file + ChecksummedFile.QUARANTINE_SUFFIX);
+        long size = Files.size(quarantine);
+        // reading the file again, e.g. on the next start, saves nothing new
+        readLines();
+        assertEquals(size, Files.size(quarantine));
+
+        // a block damaged differently is saved as well
+        flipByte(Files.size(file) / 2 + 1);
+        readLines();
+        assertTrue(Files.size(quarantine) > size);
+    }
+
+    @Test
+    public void testTornFile() throws IOException {
+        List<String> lines = writeLines();
+        try(RandomAccessFile out = new RandomAccessFile(file.toFile(), "rw")) {
+            out.setLength(out.length() / 2);
+        }
+        ChecksummedFile.Verification verification = ChecksummedFile.verify(file);
+        assertTrue(verification.isTorn());
+        assertFalse(verification.isFooterValid());
+        List<String> read = readLines();
+        assertFalse(read.isEmpty());
+        assertEquals(lines.subList(0, read.size()), read);
+    }
+
+    @Test
+    public void testExportAndVerifyDataFiles() throws IOException {
+        Processor processor = new Processor();
+        Path directory = Files.createTempDirectory("export");
+        try {
+            processor.exportDataFiles(directory.toString(), true);
+            Path students = directory.resolve(FileInfoReader.STUDENT_FILE_PATH);
+            assertTrue(ChecksummedFile.isChecksummed(students));
+            assertTrue(processor.verifyDataFiles(directory.toString()));
+            try(BufferedReader in = new BufferedReader(ChecksummedFile.openReader(students))) {
+                assertTrue(in.readLine().startsWith("001; StudentName1"));
+            }
+            try(OutputStream out = Files.newOutputStream(students, StandardOpenOption.APPEND)) {
+                out.write(1);
+            }
+            assertFalse(processor.verifyDataFiles(directory.toString()));
+        } finally {
+            for(Path path : Files.list(directory).toArray(Path[]::new)){
+                Files.delete(path);
+            }
+            Files.delete(directory);
+        }
+    }
+}
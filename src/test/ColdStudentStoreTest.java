@@ -0,0 +1,165 @@
+package test;
+
+import database.Database;
+import database.Snapshot;
+import files.FileInfoWriter;
+import processor.Processor;
+import roles.Student;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class ColdStudentStoreTest {
+    @Before
+    public void setUp(){
+        Database.reset();
+        new Processor();
+    }
+
+    @Test
+    public void testMoveAndLookup(){
+        Database database = Database.getInstance();
+        int students = database.getStudentCount();
+        assertTrue(database.getStudentById("001").enrollCourse("CIT590"));
+        assertEquals(students - 1, database.moveInactiveStudentsToColdStorage());
+        // the enrolled student stays on the heap
+        assertEquals(1, database.getStudentMap().size());
+        assertEquals(students, database.getStudentCount());
+        assertTrue(database.getColdStorageBytes() > 0);
+
+        Student cold = database.getStudentById("002");
+        assertEquals("StudentName2", cold.getName());
+        assertEquals("A-", cold.getGrades().get("CIT593"));
+        // the cache returns the same object until the student changes
+        assertSame(cold, database.getStudentByUsername("testStudent02"));
+        assertNull(database.getStudentById("999"));
+        assertNull(database.getStudentByUsername("nobody"));
+
+        // IDs and usernames of cold students are still taken
+        assertFalse(database.addUser(new Student("002", "other", "other002", "password")));
+        assertFalse(database.addUser(new Student("998", "other", "testStudent02", "password")));
+    }
+
+    @Test
+    public void testEnrollPromotesStudent(){
+        Database database = Database.getInstance();
+        database.moveInactiveStudentsToColdStorage();
+        int cold = database.getColdStudentCount();
+        Student student = database.getStudentByUsername("testStudent02");
+        assertTrue(student.enrollCourse("CIT590"));
+        assertEquals(cold - 1, database.getColdStudentCount());
+        assertSame(student, database.getStudentMap().get("002"));
+        assertTrue(database.getCourseById("CIT590").getStudents().contains(student));
+        student.addCourseWithGrade("CIT590", "B");
+        assertEquals("B", database.getStudentById("002").getGrades().get("CIT590"));
+        assertEquals("A", database.getStudentById("002").getGrades().get("CIT592"));
+
+        assertTrue(database.deleteStudent("001"));
+        assertNull(database.getStudentById("001"));
+        assertEquals(cold - 2, database.getColdStudentCount());
+    }
+
+    @Test
+    public void testSnapshotAndExportIncludeColdStudents() throws IOException {
+        Database database = Database.getInstance();
+        int students = database.getStudentCount();
+        database.moveInactiveStudentsToColdStorage();
+        Path snapshotFile = Files.createTempFile("database", ".snapshot");
+        Path directory = Files.createTempDirectory("export");
+        try {
+            Snapshot.write(database, snapshotFile.toString());
+            new FileInfoWriter().writeStudents(directory.resolve("studentInfo.txt"));
+            List<String> lines = Files.readAllLines(directory.resolve("studentInfo.txt"), StandardCharsets.UTF_8);
+            assertEquals(students, lines.size());
+            assertTrue(lines.contains("001; StudentName1; testStudent01; password590; CIS191: A, CIS320: A"));
+
+            Database.reset();
+            new Processor(snapshotFile.toString());
+            Database restored = Database.getInstance();
+            assertEquals(students, restored.getStudentMap().size());
+            assertEquals("A-", restored.getStudentByUsername("testStudent02").getGrades().get("CIT593"));
+        } finally {
+            Files.deleteIfExists(snapshotFile);
+            Files.deleteIfExists(directory.resolve("studentInfo.txt"));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    public void testStudentInUseStaysTheSameObject(){
+        Database database = Database.getInstance();
+        // e.g. the student of a session
+        Student student = database.getStudentById("002");
+        database.moveInactiveStudentsToColdStorage();
+        assertSame(student, database.getStudentById("002"));
+
+        // a new student may reuse the released grade slot, the moved student keeps its own grades
+        Student next = new Student("990", "next", "next990", "password");
+        next.addCourseWithGrade("CIT590", "C");
+        assertTrue(database.addUser(next));
+        assertEquals("A-", student.getGrades().get("CIT593"));
+        assertNull(student.getGrades().get("CIT590"));
+
+        assertTrue(student.enrollCourse("CIT590"));
+        assertSame(student, database.getStudentMap().get("002"));
+        assertTrue(student.getGradeSlot() >= 0);
+        assertEquals("A-", student.getGrades().get("CIT593"));
+        assertEquals("C", next.getGrades().get("CIT590"));
+    }
+
+    @Test
+    public void testNoSecondObjectAfterCacheEviction(){
+        Database database = Database.getInstance();
+        for(int i = 0; i < 1100; i++){
+            assertTrue(database.addUser(new Student("e" + i, "evicted", "evicted" + i, "password")));
+        }
+        database.moveInactiveStudentsToColdStorage();
+        Student student = database.getStudentById("002");
+        // read enough other cold students to push the student out of the cache
+        for(int i = 0; i < 1100; i++){
+            assertNotNull(database.getStudentById("e" + i));
+        }
+        Student again = database.getStudentByUsername("testStudent02");
+        assertSame(student, again);
+
+        assertTrue(again.enrollCourse("CIT590"));
+        student.addCourseWithGrade("CIT592", "B");
+        assertEquals("B", database.getStudentById("002").getGrades().get("CIT592"));
+        assertTrue(database.getStudentById("002").getCoursesList().contains("CIT590"));
+    }
+
+    @Test
+    public void testRemovedStudentsFreeTheStorage(){
+        Database database = Database.getInstance();
+        for(int i = 0; i < 30000; i++){
+            assertTrue(database.addUser(new Student("c" + i, "compacted", "compacted" + i, "password")));
+        }
+        int cold = database.moveInactiveStudentsToColdStorage();
+        // removing most of the students copies the others into new buffers
+        for(int i = 0; i < 30000; i++){
+            if(i % 3 != 0){
+                assertTrue(database.deleteStudent("c" + i));
+            }
+        }
+        assertEquals(cold - 20000, database.getColdStudentCount());
+        for(int i = 0; i < 30000; i += 3){
+            assertEquals("compacted" + i, database.getStudentById("c" + i).getUsername());
+            assertEquals("c" + i, database.getStudentByUsername("compacted" + i).getId());
+        }
+        assertNull(database.getStudentById("c1"));
+
+        // once every cold student is gone, so are the buffers
+        database.forEachStudent(student -> database.deleteStudent(student.getId()));
+        assertEquals(0, database.getColdStudentCount());
+        assertEquals(0, database.getColdStorageBytes());
+    }
+}
@@ -7,6 +7,9 @@ import roles.Professor;
 import roles.Student;
 
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -216,5 +219,115 @@ public class CourseTest {
 
     }
 
+    @Test
+    public void testWeekDayMaskAndMinutes() {
+        Professor professorTest = new Professor("Professor001", "Peter Parker", "Spiderman", "123456");
+        Course course = new Course("CIT591", "Introduction to Programming", professorTest, "MWF",
+                LocalTime.of(9, 0), LocalTime.of(10, 30), 30);
+        assertEquals(0b0010101, course.getWeekDayMask());
+        assertEquals(9 * 60, course.getStartMinute());
+        assertEquals(10 * 60 + 30, course.getEndMinute());
+
+        assertEquals(0b0001010, Course.toDayMask("TR"));
+        assertEquals(0b0001010, Course.toDayMask("TTh"));
+        assertEquals(0b0000100, Course.toDayMask("Wednesday"));
+        assertEquals(0b1100000, Course.toDayMask("SaSu"));
+        // uppercase pairs are single letter codes
+        assertEquals(0b1100000, Course.toDayMask("SU"));
+        assertEquals(0b1000010, Course.toDayMask("TU"));
+        assertEquals(0, Course.toDayMask(null));
+    }
+
+    @Test
+    public void testGetStudentsIsReadOnlyAndOrdered() {
+        Professor professorTest = new Professor("Professor001", "Peter Parker", "Spiderman", "123456");
+        Student student1 = new Student("Student001", "Tobey Maguire", "Spiderman", "123456");
+        Student student2 = new Student("Student002", "Andrew Garfield", "Spiderman", "123456");
+        Course course1 = new Course("CIT591", "Introduction to Programming", professorTest, "MW",
+                LocalTime.of(9, 0), LocalTime.of(10, 30), 30);
+
+        course1.addStudent(student2);
+        course1.addStudent(student1);
+        assertEquals(student2, course1.getStudents().iterator().next());
+
+        try {
+            course1.getStudents().clear();
+            fail("roster view should be read-only");
+        } catch (UnsupportedOperationException e) {
+            assertEquals(2, course1.getStudents().size());
+        }
+
+        // the roster is a copy, so enrolling while iterating it is safe
+        for(Student student : course1.getStudents()){
+            course1.addStudent(new Student("Student" + student.getName(), "Copy", "copy" + student.getName(), "123456"));
+        }
+        assertEquals(4, course1.getStudentCount());
+    }
 
+    @Test
+    public void testCapacityAndWaitlist() {
+        Professor professorTest = new Professor("Professor001", "Peter Parker", "Spiderman", "123456");
+        Student student1 = new Student("Student001", "Tobey Maguire", "Spiderman", "123456");
+        Student student2 = new Student("Student002", "Andrew Garfield", "Spiderman", "123456");
+        Student student3 = new Student("Student003", "Tom Holland", "Spiderman", "123456");
+        Course course1 = new Course("CIT591", "Introduction to Programming", professorTest, "MW",
+                LocalTime.of(9, 0), LocalTime.of(10, 30), 1);
+        course1.setWaitlistCapacity(1);
+
+        assertTrue(course1.addStudent(student1));
+        assertEquals(0, course1.getAvailableSeats());
+        // the course is full
+        assertFalse(course1.addStudent(student2));
+
+        // the waitlist holds one student only
+        assertTrue(course1.joinWaitlist(student2));
+        assertFalse(course1.joinWaitlist(student3));
+        assertEquals(student2, course1.pollWaitlist());
+        assertNull(course1.pollWaitlist());
+
+        // a student is on the waitlist once, and can leave it
+        course1.setWaitlistCapacity(2);
+        assertTrue(course1.joinWaitlist(student3));
+        assertFalse(course1.joinWaitlist(student3));
+        assertTrue(course1.leaveWaitlist(student3));
+        assertFalse(course1.leaveWaitlist(student3));
+        assertTrue(course1.getWaitlist().isEmpty());
+        course1.setWaitlistCapacity(1);
+
+        // removing a student frees the seat
+        assertTrue(course1.removeStudent(student1));
+        assertEquals(1, course1.getAvailableSeats());
+        assertTrue(course1.addStudent(student2));
+    }
+
+    @Test
+    public void testConcurrentEnrollmentNeverOversubscribes() throws InterruptedException {
+        Professor professorTest = new Professor("Professor001", "Peter Parker", "Spiderman", "123456");
+        Course hotCourse = new Course("CIT591", "Introduction to Programming", professorTest, "MW",
+                LocalTime.of(9, 0), LocalTime.of(10, 30), 50);
+
+        // 16 threads race for 50 seats with 1600 students
+        AtomicInteger enrolled = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            final int threadId = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    Student student = new Student(threadId + "-" + i, "name", "username", "password");
+                    if (hotCourse.addStudent(student)) {
+                        enrolled.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(50, enrolled.get());
+        assertEquals(50, hotCourse.getStudents().size());
+        assertEquals(0, hotCourse.getAvailableSeats());
+    }
 }
@@ -0,0 +1,133 @@
+package test;
+
+import courses.Course;
+import database.Database;
+import files.DataFileWatcher;
+import files.FileInfoReader;
+import processor.Processor;
+import roles.Professor;
+import roles.Student;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class DataFileWatcherTest {
+
+    private Path directory;
+    private Path courseFile;
+    private Path professorFile;
+
+    @Before
+    public void setUp() throws IOException {
+        Database.reset();
+        new Processor();
+        directory = Files.createTempDirectory("data");
+        courseFile = directory.resolve(FileInfoReader.COURSE_FILE_PATH);
+        professorFile = directory.resolve(FileInfoReader.PROFESSOR_FILE_PATH);
+        Files.copy(Paths.get(FileInfoReader.COURSE_FILE_PATH), courseFile);
+        Files.copy(Paths.get(FileInfoReader.PROFESSOR_FILE_PATH), professorFile);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for(File file : directory.toFile().listFiles()){
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * replace the lines starting with the given prefix, a null replacement removes the line
+     */
+    private static void edit(Path file, String prefix, String replacement) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for(String line : Files.readAllLines(file, StandardCharsets.UTF_8)){
+            if(!line.startsWith(prefix)){
+                lines.add(line);
+            } else if(replacement != null){
+                lines.add(replacement);
+            }
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testReloadCourses() throws IOException {
+        Database database = Database.getInstance();
+        Student student = database.getStudentById("001");
+        assertTrue(student.enrollCourse("CIT590"));
+        DataFileWatcher watcher = new DataFileWatcher(directory);
+
+        // an unchanged file changes nothing
+        assertEquals(0, watcher.reloadCourses());
+
+        edit(courseFile, "CIT590;", "CIT590; Programming Languages and Techniques; Brandon L Krakowsky; MW; 8:30; 10:00; 110");
+        edit(courseFile, "CIT591;", null);
+        Files.write(courseFile, "CIT999; Hot Reload; Clayton Greenberg; F; 9:00; 10:00; 10\n".getBytes(StandardCharsets.UTF_8),
+                java.nio.file.StandardOpenOption.APPEND);
+        assertEquals(3, watcher.reloadCourses());
+
+        Course course = database.getCourseById("CIT590");
+        assertEquals(LocalTime.of(8, 30), course.getStartTime());
+        // the roster and the enrollment survive the change
+        assertTrue(course.getStudents().contains(student));
+        assertTrue(student.getCoursesList().contains("CIT590"));
+        assertEquals(109, course.getAvailableSeats());
+        assertNull(database.getCourseById("CIT591"));
+        assertEquals("Hot Reload", database.getCourseById("CIT999").getName());
+        assertTrue(database.getProfessorCourseList("001").contains(database.getCourseById("CIT999")));
+
+        // the schedule of the student follows the course to its new time
+        database.addCourse(new Course("CIT998", "Old Slot", database.getProfessorById("001"), "MW",
+                LocalTime.of(17, 0), LocalTime.of(17, 30), 10));
+        assertTrue(student.enrollCourse("CIT998"));
+        database.addCourse(new Course("CIT997", "New Slot", database.getProfessorById("001"), "M",
+                LocalTime.of(9, 0), LocalTime.of(9, 30), 10));
+        assertFalse(student.enrollCourse("CIT997"));
+    }
+
+    @Test
+    public void testReloadProfessors() throws IOException {
+        Database database = Database.getInstance();
+        DataFileWatcher watcher = new DataFileWatcher(directory);
+        edit(professorFile, "Brandon L Krakowsky;", "Brandon Krakowsky; 029; Krakowsky; password590");
+        assertEquals(1, watcher.reloadProfessors());
+
+        Professor professor = database.getProfessorById("029");
+        assertEquals("Brandon Krakowsky", professor.getName());
+        assertSame(professor, database.getProfessorByName("Brandon Krakowsky"));
+        assertNull(database.getProfessorByName("Brandon L Krakowsky"));
+        assertSame(professor, database.getCourseById("CIT590").getProfessor());
+    }
+
+    @Test
+    public void testWatchDirectory() throws Exception {
+        Database database = Database.getInstance();
+        DataFileWatcher watcher = new DataFileWatcher(directory);
+        watcher.start();
+        try {
+            edit(courseFile, "CIT592;", "CIT592; Mathematical Foundations of Computer Science; Clayton Greenberg; TR; 10:00; 11:00; 80");
+            long deadline = System.currentTimeMillis() + 10000;
+            while(watcher.getReloadCount() == 0 && System.currentTimeMillis() < deadline){
+                Thread.sleep(50);
+            }
+            assertEquals(80, database.getCourseById("CIT592").getCapacity());
+        } finally {
+            watcher.close();
+        }
+    }
+}
@@ -9,6 +9,9 @@ import roles.User;
 import roles.Admin;
 
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -208,6 +211,146 @@ public class DatabaseTest {
         assertNull(database.getAdminById("30"));
     }
 
+    @Test
+    public void testConcurrentAddUsers() throws InterruptedException {
+        Database.setConcurrentMode(true);
+        Database.reset();
+        try {
+            Database database = Database.getInstance();
+            assertTrue(database.isConcurrent());
+
+            // every thread tries to add the same 100 usernames, only one of them may win each username
+            AtomicInteger added = new AtomicInteger();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int threadId = t;
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        Student student = new Student(threadId + "-" + i, "name" + i, "user" + i, "password");
+                        if (database.addUser(student)) {
+                            added.incrementAndGet();
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(100, added.get());
+            assertEquals(100, database.getStudentMap().size());
+            for (int i = 0; i < 100; i++) {
+                Student student = database.getStudentByUsername("user" + i);
+                assertNotNull(student);
+                assertEquals("user" + i, student.getUsername());
+            }
+        } finally {
+            Database.setConcurrentMode(false);
+            Database.reset();
+        }
+    }
 
-}
+    @Test
+    public void testDeleteStudentReleasesUsername() {
+        Database database = Database.getInstance();
+        assertTrue(database.addUser(new Student("71", "John", "john1271", "password1")));
+        assertTrue(database.deleteStudent("71"));
+
+        // the username can be used again once the student is deleted
+        assertNull(database.getStudentByUsername("john1271"));
+        assertTrue(database.addUser(new Student("72", "John", "john1271", "password1")));
+    }
+
+    @Test
+    public void testGetProfessorByName() {
+        Database database = Database.getInstance();
+        Professor professor = new Professor("501", "Ada Lovelace", "ada501", "password");
+        assertTrue(database.addUser(professor));
+        assertEquals(professor, database.getProfessorByName("Ada Lovelace"));
+
+        // a second professor with the same name makes the name ambiguous
+        Professor sameName = new Professor("502", "Ada Lovelace", "ada502", "password");
+        assertTrue(database.addUser(sameName));
+        assertNull(database.getProfessorByName("Ada Lovelace"));
+        assertEquals(2, database.getProfessorsByName("Ada Lovelace").size());
+
+        // deleting one of them makes the name unique again
+        assertTrue(database.deleteProfessor("501"));
+        assertEquals(sameName, database.getProfessorByName("Ada Lovelace"));
+        assertTrue(database.deleteProfessor("502"));
+        assertNull(database.getProfessorByName("Ada Lovelace"));
+        assertNull(database.getProfessorByName(null));
+    }
+
+    @Test
+    public void testGetCourseProfessor() {
+        Database database = Database.getInstance();
+        Professor professor = new Professor("511", "Grace Hopper", "grace511", "password");
+        Professor sameName = new Professor("512", "Grace Hopper", "grace512", "password");
+        assertTrue(database.addUser(professor));
+        assertTrue(database.addUser(sameName));
+
+        // a shared name still loads the course, taught by the first professor added
+        assertEquals(professor, database.getCourseProfessor("Grace Hopper"));
+        // the ID written for a shared name finds the right professor
+        assertEquals(sameName, database.getCourseProfessor("512"));
+        assertNull(database.getCourseProfessor("Nobody"));
+        assertNull(database.getCourseProfessor(null));
+    }
+
+    @Test
+    public void testGetCourseIdsByName() {
+        Database database = Database.getInstance();
+        Professor professor = new Professor("601", "name", "username601", "password");
+        Course section1 = new Course("CIT601", "Same Name", professor, "MW",
+                LocalTime.of(9, 0), LocalTime.of(10, 30), 30);
+        Course section2 = new Course("CIT602", "Same Name", professor, "TR",
+                LocalTime.of(9, 0), LocalTime.of(10, 30), 30);
+        assertTrue(database.addCourse(section1));
+        assertTrue(database.addCourse(section2));
+        assertEquals(2, database.getCourseIdsByName("Same Name").size());
+        // the caller gets a copy, not the index itself
+        database.getCourseIdsByName("Same Name").clear();
+        assertEquals(2, database.getCourseIdsByName("Same Name").size());
+
+        assertTrue(database.deleteCourse("CIT601"));
+        assertEquals(1, database.getCourseIdsByName("Same Name").size());
+        assertEquals("CIT602", database.getCourseIdsByName("Same Name").get(0));
+
+        assertTrue(database.deleteCourse("CIT602"));
+        assertTrue(database.getCourseIdsByName("Same Name").isEmpty());
+    }
 
+    @Test
+    public void testRejectedAndDeletedStudentsReleaseGrades() {
+        Database database = Database.getInstance();
+        int grades = database.getGradeStore().getGradeCount();
+        Student student = new Student("81", "John", "john1281", "password1");
+        student.addCourseWithGrade("CIT590", "A");
+        assertTrue(database.addUser(student));
+        // adding the same student again keeps its slot
+        assertFalse(database.addUser(student));
+        assertTrue(student.getGradeSlot() >= 0);
+
+        Student duplicate = new Student("81", "John", "john1282", "password1");
+        duplicate.addCourseWithGrade("CIT591", "B");
+        assertFalse(database.addUser(duplicate));
+        // the rejected student gave its slot back but keeps its grades
+        assertEquals(-1, duplicate.getGradeSlot());
+        assertEquals("B", duplicate.getGrades().get("CIT591"));
+        assertEquals(grades + 1, database.getGradeStore().getGradeCount());
+
+        assertTrue(database.deleteStudent("81"));
+        assertEquals(-1, student.getGradeSlot());
+        assertEquals(grades, database.getGradeStore().getGradeCount());
+        // a deleted student still in use writes to its own map, not to a reused slot
+        Student next = new Student("82", "Jane", "jane1282", "password1");
+        student.addCourseWithGrade("CIT592", "C");
+        assertNull(next.getGrades().get("CIT592"));
+        assertEquals("C", student.getGrades().get("CIT592"));
+    }
+
+
+}
@@ -77,4 +77,30 @@ public class FileInfoReaderTest {
 
 
     }
+
+    @Test
+    public void testReadFilesMemoryMapped(){
+        FileInfoReader fileInfoReader = new FileInfoReader(true);
+        fileInfoReader.readFiles();
+        Database database = Database.getInstance();
+
+        assertEquals("admin01", database.getAdminById("001").getUsername());
+        assertEquals("Clayton Greenberg", database.getProfessorById("001").getName());
+        assertEquals("testStudent01", database.getStudentById("001").getUsername());
+        assertEquals(50, database.getCourseMap().size());
+        assertEquals("Brandon L Krakowsky", database.getCourseById("CIT590").getProfessor().getName());
+    }
+
+    @Test
+    public void testReadFilesParallel(){
+        FileInfoReader fileInfoReader = new FileInfoReader(true, 4);
+        fileInfoReader.readFiles();
+        Database database = Database.getInstance();
+
+        Student student = database.getStudentById("001");
+        assertNotNull(student);
+        assertEquals("testStudent01", student.getUsername());
+        assertEquals("A", student.getGrades().get("CIS191"));
+        assertEquals(50, database.getCourseMap().size());
+    }
 }
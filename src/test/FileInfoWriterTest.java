@@ -0,0 +1,109 @@
+package test;
+
+import database.Database;
+import files.FileInfoReader;
+import files.FileInfoWriter;
+import processor.Processor;
+import roles.Student;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class FileInfoWriterTest {
+    @Before
+    public void setUp(){
+        Database.reset();
+        new Processor();
+    }
+
+    @Test
+    public void testWriteFiles() throws IOException {
+        Path directory = Files.createTempDirectory("export");
+        try {
+            Database database = Database.getInstance();
+            long records = new FileInfoWriter().writeFiles(directory.toString());
+            assertEquals(database.getAdminMap().size() + database.getProfessorMap().size()
+                    + database.getCourseMap().size() + database.getStudentMap().size(), records);
+            // only the four data files are left, no temporary files
+            assertEquals(4, directory.toFile().listFiles().length);
+
+            // the course and professor files come back line for line
+            for(String name : new String[]{FileInfoReader.COURSE_FILE_PATH, FileInfoReader.PROFESSOR_FILE_PATH}){
+                List<String> original = Files.readAllLines(Paths.get(name), StandardCharsets.UTF_8);
+                original.removeIf(String::isBlank);
+                List<String> written = Files.readAllLines(directory.resolve(name), StandardCharsets.UTF_8);
+                assertEquals(new HashSet<>(original), new HashSet<>(written));
+            }
+            List<String> admins = Files.readAllLines(directory.resolve(FileInfoReader.ADMIN_FILE_PATH), StandardCharsets.UTF_8);
+            assertTrue(admins.contains("001; admin; admin01; password590"));
+
+            List<String> students = Files.readAllLines(directory.resolve(FileInfoReader.STUDENT_FILE_PATH), StandardCharsets.UTF_8);
+            assertEquals(database.getStudentMap().size(), students.size());
+            for(String line : students){
+                if(line.startsWith("002;")){
+                    assertTrue(line.startsWith("002; StudentName2; testStudent02; password590; "));
+                    assertTrue(line.contains("CIT592: A"));
+                    assertTrue(line.contains("CIT593: A-"));
+                }
+            }
+        } finally {
+            for(File file : directory.toFile().listFiles()){
+                Files.delete(file.toPath());
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testStudentWithoutGrades() throws IOException {
+        Path file = Files.createTempFile("students", ".txt");
+        try {
+            Database.reset();
+            Database.getInstance().addUser(new Student("900", "New Student", "new900", "password"));
+            assertEquals(1, new FileInfoWriter().writeStudents(file));
+            assertEquals("900; New Student; new900; password",
+                    Files.readAllLines(file, StandardCharsets.UTF_8).get(0));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testWriteWhileStudentsAreAdded() throws Exception {
+        Path directory = Files.createTempDirectory("export");
+        try {
+            Database database = Database.getInstance();
+            // the maps are plain hash maps, the writer must not iterate them while they grow
+            Thread adder = new Thread(() -> {
+                for(int i = 0; i < 2000; i++){
+                    database.addUser(new Student("w" + i, "Writer Student", "writer" + i, "password"));
+                }
+            });
+            adder.start();
+            while(adder.isAlive()){
+                new FileInfoWriter().writeFiles(directory.toString());
+            }
+            adder.join();
+            new FileInfoWriter().writeFiles(directory.toString());
+            List<String> students = Files.readAllLines(directory.resolve(FileInfoReader.STUDENT_FILE_PATH), StandardCharsets.UTF_8);
+            assertEquals(database.getStudentMap().size(), students.size());
+        } finally {
+            for(File file : directory.toFile().listFiles()){
+                Files.delete(file.toPath());
+            }
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package test;
+
+import database.Database;
+import database.GradeStore;
+import roles.Student;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class GradeStoreTest {
+    @Before
+    public void setUp(){
+        Database.reset();
+    }
+
+    @Test
+    public void testPutGetRemove(){
+        GradeStore store = new GradeStore();
+        int slot = store.newSlot();
+        assertNull(store.put(slot, "CIT590", "A"));
+        assertNull(store.put(slot, "CIT591", "B+"));
+        assertEquals("A", store.get(slot, "CIT590"));
+        assertEquals("A", store.put(slot, "CIT590", "A-"));
+        assertEquals("A-", store.get(slot, "CIT590"));
+        assertEquals(2, store.size(slot));
+        assertEquals("A-", store.remove(slot, "CIT590"));
+        assertNull(store.get(slot, "CIT590"));
+        assertEquals("B+", store.get(slot, "CIT591"));
+        assertEquals(1, store.size(slot));
+        // grades outside the usual letters are coded too
+        store.put(slot, "CIT592", "Pass with distinction");
+        assertEquals("Pass with distinction", store.get(slot, "CIT592"));
+    }
+
+    @Test
+    public void testKnownGrades(){
+        assertTrue(GradeStore.isKnownGrade("A+"));
+        assertTrue(GradeStore.isKnownGrade("NP"));
+        assertFalse(GradeStore.isKnownGrade("Pass with distinction"));
+        assertFalse(GradeStore.isKnownGrade(""));
+    }
+
+    @Test
+    public void testInterleavedStudents(){
+        GradeStore store = new GradeStore();
+        int[] slots = new int[50];
+        for(int i = 0; i < slots.length; i++){
+            slots[i] = store.newSlot();
+        }
+        // every student grows in turn, so ranges keep moving and the columns get compacted
+        for(int course = 0; course < 100; course++){
+            for(int i = 0; i < slots.length; i++){
+                store.put(slots[i], "C" + course, (course + i) % 2 == 0 ? "A" : "B");
+            }
+        }
+        assertEquals(50 * 100, store.getGradeCount());
+        for(int i = 0; i < slots.length; i++){
+            assertEquals(100, store.size(slots[i]));
+            for(int course = 0; course < 100; course++){
+                assertEquals((course + i) % 2 == 0 ? "A" : "B", store.get(slots[i], "C" + course));
+            }
+        }
+    }
+
+    @Test
+    public void testTooManyGrades(){
+        GradeStore store = new GradeStore();
+        int slot = store.newSlot();
+        try {
+            for(int i = 0; i < 300; i++){
+                store.put(slot, "C" + i, "G" + i);
+            }
+            fail("expected an exception");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("different grades"));
+        }
+    }
+
+    @Test
+    public void testStudentGradesView(){
+        Student student = new Student("900", "name", "user900", "password");
+        student.addCourseWithGrade("CIT590", "A");
+        student.addCourseWithGrade("CIT591", "B");
+        Map<String, String> grades = student.getGrades();
+        assertEquals(2, grades.size());
+        assertTrue(grades.containsKey("CIT590"));
+        assertFalse(grades.containsKey("CIT592"));
+        Map<String, String> expected = new HashMap<>();
+        expected.put("CIT590", "A");
+        expected.put("CIT591", "B");
+        assertEquals(expected, new HashMap<>(grades));
+        assertEquals(expected, grades);
+
+        Iterator<Map.Entry<String, String>> iterator = grades.entrySet().iterator();
+        String removed = iterator.next().getKey();
+        iterator.remove();
+        assertEquals(1, grades.size());
+        assertNull(grades.get(removed));
+        // the view is live
+        assertEquals(1, Database.getInstance().getGradeStore().getGradeCount());
+    }
+
+    @Test
+    public void testConcurrentStudents() throws InterruptedException {
+        GradeStore store = new GradeStore();
+        Thread[] threads = new Thread[8];
+        int[][] slots = new int[threads.length][20];
+        for(int t = 0; t < threads.length; t++){
+            final int[] own = slots[t];
+            for(int i = 0; i < own.length; i++){
+                own[i] = store.newSlot();
+            }
+            threads[t] = new Thread(() -> {
+                for(int course = 0; course < 100; course++){
+                    for(int slot : own){
+                        store.put(slot, "C" + course, course % 2 == 0 ? "A" : "B");
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+        assertEquals(threads.length * 20 * 100, store.getGradeCount());
+        for(int[] own : slots){
+            for(int slot : own){
+                assertEquals(100, store.size(slot));
+                assertEquals("B", store.get(slot, "C99"));
+            }
+        }
+    }
+}
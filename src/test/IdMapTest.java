@@ -0,0 +1,80 @@
+package test;
+
+import database.Database;
+import database.IdMap;
+import files.FileInfoReader;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class IdMapTest {
+    @Before
+    public void setUp(){
+        Database.reset();
+    }
+
+    @Test
+    public void testLeadingZerosAndOtherIds(){
+        IdMap<String> map = new IdMap<>();
+        map.put("001", "first");
+        map.put("1", "second");
+        map.put("admin-7", "third");
+        map.put("12345678901234567890", "long");
+        assertEquals("first", map.get("001"));
+        assertEquals("second", map.get("1"));
+        assertEquals("third", map.get("admin-7"));
+        assertEquals("long", map.get("12345678901234567890"));
+        assertNull(map.get("01"));
+        assertEquals(4, map.size());
+        assertEquals("001", IdMap.decode(IdMap.encode("001")));
+        Map<String, String> copy = new HashMap<>(map);
+        assertEquals("first", copy.get("001"));
+        assertTrue(map.values().contains("third"));
+    }
+
+    @Test
+    public void testAgainstHashMap(){
+        IdMap<Integer> map = new IdMap<>();
+        Map<String, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for(int i = 0; i < 20000; i++){
+            String id = String.format("%03d", random.nextInt(3000));
+            if(random.nextInt(3) == 0){
+                assertEquals(expected.remove(id), map.remove(id));
+            } else {
+                assertEquals(expected.put(id, i), map.put(id, i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for(int i = 0; i < 3000; i++){
+            String id = String.format("%03d", i);
+            assertEquals(expected.get(id), map.get(id));
+        }
+        assertEquals(expected, map);
+    }
+
+    @Test
+    public void testDatabaseWithPrimitiveIds(){
+        Database.setPrimitiveIdMode(true);
+        try {
+            Database.reset();
+            new FileInfoReader().readFiles();
+            Database database = Database.getInstance();
+            assertTrue(database.getStudentMap() instanceof IdMap);
+            assertEquals("StudentName1", database.getStudentById("001").getName());
+            assertNull(database.getStudentById("1"));
+            assertEquals("Clayton Greenberg", database.getProfessorByUsername("Greenberg").getName());
+            assertTrue(database.deleteStudent("001"));
+            assertNull(database.getStudentByUsername("testStudent01"));
+        } finally {
+            Database.setPrimitiveIdMode(false);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package test;
+
+import files.MappedFileReader;
+import files.RecordReader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class MappedFileReaderTest {
+
+    @Test
+    public void testReadUtf8File() throws IOException {
+        Path file = Files.createTempFile("students", ".txt");
+        try {
+            Files.write(file, "001; Zo\u00eb \u00c5berg; zoe; pw\n002; \u674e\u96f7; lilei; pw\n".getBytes(StandardCharsets.UTF_8));
+            try (RecordReader reader = new RecordReader(new MappedFileReader(file))) {
+                assertTrue(reader.nextRecord());
+                assertEquals("001", reader.nextField(';'));
+                assertEquals("Zo\u00eb \u00c5berg", reader.nextField(';'));
+                assertTrue(reader.nextRecord());
+                assertEquals("002", reader.nextField(';'));
+                assertEquals("\u674e\u96f7", reader.nextField(';'));
+                assertFalse(reader.nextRecord());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testReadRegionAndEmptyFile() throws IOException {
+        Path file = Files.createTempFile("students", ".txt");
+        try {
+            Files.write(file, "first\nsecond\nthird\n".getBytes(StandardCharsets.UTF_8));
+            // only the bytes of the second line
+            try (RecordReader reader = new RecordReader(new MappedFileReader(file, 6, 13))) {
+                assertTrue(reader.nextRecord());
+                assertEquals("second", reader.nextField(';'));
+                assertFalse(reader.nextRecord());
+            }
+
+            Files.write(file, new byte[0]);
+            try (RecordReader reader = new RecordReader(new MappedFileReader(file))) {
+                assertFalse(reader.nextRecord());
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package test;
+
+import database.Database;
+import database.MutationLog;
+import processor.Processor;
+import roles.Admin;
+import roles.PasswordHasher;
+import roles.Pbkdf2PasswordHasher;
+import roles.Student;
+import roles.UserBase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class MutationLogTest {
+    @Before
+    public void setUp(){
+        Database.reset();
+    }
+
+    @Test
+    public void testReplayAfterRestart() throws IOException {
+        Path logFile = Files.createTempFile("mutations", ".log");
+        Files.delete(logFile);
+        try {
+            Processor processor = new Processor();
+            MutationLog mutationLog = processor.openMutationLog(logFile.toString(), 10);
+            Database database = Database.getInstance();
+            Admin admin = database.getAdminById("001");
+
+            assertTrue(admin.addNewStudent("New; Student", "newStudent", "900", "password"));
+            assertTrue(admin.addNewCourse("CIT900", "New Course", "001", "F",
+                    LocalTime.of(8, 5), LocalTime.of(9, 0), 10));
+            Student student = database.getStudentById("900");
+            assertTrue(student.enrollCourse("CIT900"));
+            student.addCourseWithGrade("CIT590", "B+");
+            assertTrue(admin.deleteCourse("CIT591"));
+            mutationLog.close();
+
+            // a new start loads the data files, then replays the log
+            Database.reset();
+            Processor restarted = new Processor();
+            MutationLog reopened = restarted.openMutationLog(logFile.toString(), 10);
+            database = Database.getInstance();
+
+            Student restored = database.getStudentById("900");
+            assertNotNull(restored);
+            assertEquals("New; Student", restored.getName());
+            assertTrue(restored.getCoursesList().contains("CIT900"));
+            assertEquals("B+", restored.getGrades().get("CIT590"));
+            assertEquals(LocalTime.of(8, 5), database.getCourseById("CIT900").getStartTime());
+            assertNull(database.getCourseById("CIT591"));
+            reopened.close();
+        } finally {
+            Database.getInstance().setMutationLog(null);
+            Files.deleteIfExists(logFile);
+        }
+    }
+
+    @Test
+    public void testTornRecordIsDropped() throws IOException {
+        Path logFile = Files.createTempFile("mutations", ".log");
+        try {
+            new Processor();
+            // the capacity of the last record was cut off by a crash, "30" became "3"
+            Files.write(logFile, ("DELETE_COURSE;CIT591\n"
+                    + "ADD_COURSE;CIT901;Torn Course;001;F;8:00;9:00;3").getBytes(StandardCharsets.UTF_8));
+            Database database = Database.getInstance();
+
+            assertEquals(1, MutationLog.replay(logFile.toString(), database));
+            assertNull(database.getCourseById("CIT591"));
+            assertNull(database.getCourseById("CIT901"));
+            // the torn record is cut off, so new records start on a line of their own
+            assertEquals("DELETE_COURSE;CIT591\n", new String(Files.readAllBytes(logFile), StandardCharsets.UTF_8));
+        } finally {
+            Files.deleteIfExists(logFile);
+        }
+    }
+
+    @Test
+    public void testSnapshotTruncatesLog() throws IOException {
+        Path logFile = Files.createTempFile("mutations", ".log");
+        Path snapshotFile = Files.createTempFile("database", ".snapshot");
+        Files.delete(logFile);
+        Files.delete(snapshotFile);
+        try {
+            Processor processor = new Processor(snapshotFile.toString());
+            MutationLog mutationLog = processor.openMutationLog(logFile.toString(), 10);
+            Database database = Database.getInstance();
+            Admin admin = database.getAdminById("001");
+            assertTrue(admin.addNewStudent("Before", "before900", "900", "password"));
+            assertTrue(processor.saveSnapshot(snapshotFile.toString()) > 0);
+            assertTrue(admin.addNewStudent("After", "after901", "901", "password"));
+            mutationLog.close();
+
+            // the snapshot holds the first student, only the checkpoint and the second student are left
+            List<String> records = Files.readAllLines(logFile, StandardCharsets.UTF_8);
+            assertEquals(2, records.size());
+            assertTrue(records.get(0).startsWith(MutationLog.CHECKPOINT + ";"));
+            assertTrue(records.get(1).startsWith(MutationLog.ADD_STUDENT + ";901;"));
+
+            // a restart from the snapshot replays the second student only
+            Database.reset();
+            Processor restarted = new Processor(snapshotFile.toString());
+            MutationLog reopened = restarted.openMutationLog(logFile.toString(), 10);
+            database = Database.getInstance();
+            assertNotNull(database.getStudentById("900"));
+            assertNotNull(database.getStudentById("901"));
+            reopened.close();
+        } finally {
+            Database.getInstance().setMutationLog(null);
+            Files.deleteIfExists(logFile);
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    @Test
+    public void testGroupCommit() throws IOException, InterruptedException {
+        Path logFile = Files.createTempFile("mutations", ".log");
+        try {
+            MutationLog mutationLog = new MutationLog(logFile.toString(), 20);
+            long last = 0;
+            for (int i = 0; i < 1000; i++) {
+                last = mutationLog.append(MutationLog.ENROLL, "001", "CIT" + i);
+            }
+            mutationLog.awaitDurable(last);
+
+            // a thousand records need far fewer than a thousand syncs
+            assertEquals(last, mutationLog.getDurableSequence());
+            assertTrue(mutationLog.getSyncCount() < 10);
+            mutationLog.close();
+            assertEquals(1000, Files.readAllLines(logFile).size());
+        } finally {
+            Files.deleteIfExists(logFile);
+        }
+    }
+
+    @Test
+    public void testUpgradedPasswordIsReplayed() throws IOException {
+        Path logFile = Files.createTempFile("mutations", ".log");
+        Files.delete(logFile);
+        PasswordHasher hasher = UserBase.getPasswordHasher();
+        UserBase.setPasswordHasher(new Pbkdf2PasswordHasher(1000));
+        try {
+            Processor processor = new Processor();
+            MutationLog mutationLog = processor.openMutationLog(logFile.toString(), 10);
+            Database database = Database.getInstance();
+            // the data files hold plaintext passwords, the first login replaces them with hashes
+            assertTrue(database.getStudentById("001").checkPassword("password590"));
+            assertTrue(database.getAdminById("001").checkPassword("password590"));
+            String hash = database.getStudentById("001").getPassword();
+            assertFalse("password590".equals(hash));
+            mutationLog.close();
+            assertFalse(new String(Files.readAllBytes(logFile), StandardCharsets.UTF_8).contains("password590"));
+
+            Database.reset();
+            Processor restarted = new Processor();
+            MutationLog reopened = restarted.openMutationLog(logFile.toString(), 10);
+            database = Database.getInstance();
+            assertEquals(hash, database.getStudentById("001").getPassword());
+            assertFalse("password590".equals(database.getAdminById("001").getPassword()));
+            assertTrue(database.getAdminById("001").checkPassword("password590"));
+            reopened.close();
+        } finally {
+            UserBase.setPasswordHasher(hasher);
+            Database.getInstance().setMutationLog(null);
+            Files.deleteIfExists(logFile);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package test;
+
+import roles.Pbkdf2PasswordHasher;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class PasswordHasherTest {
+
+    private final Pbkdf2PasswordHasher hasher = new Pbkdf2PasswordHasher(1000);
+
+    @Test
+    public void testHashAndVerify(){
+        String hash = hasher.hash("password590");
+        assertTrue(hash.startsWith("pbkdf2$1000$"));
+        assertEquals(4, hash.split("\\$").length);
+        assertTrue(hasher.verify("password590", hash));
+        assertFalse(hasher.verify("password591", hash));
+        assertFalse(hasher.verify(null, hash));
+        // every hash has its own salt
+        assertFalse(hash.equals(hasher.hash("password590")));
+        assertTrue(hasher.isCurrent(hash));
+    }
+
+    @Test
+    public void testLegacyAndOutdatedPasswords(){
+        // plaintext passwords of the old data files still work, but are not current
+        assertTrue(hasher.verify("password590", "password590"));
+        assertFalse(hasher.verify("password59", "password590"));
+        assertFalse(hasher.isCurrent("password590"));
+
+        // a hash with fewer iterations is checked with its own count and should be hashed again
+        String weaker = new Pbkdf2PasswordHasher(10).hash("password590");
+        assertTrue(hasher.verify("password590", weaker));
+        assertFalse(hasher.isCurrent(weaker));
+        assertTrue(new Pbkdf2PasswordHasher(10).isCurrent(hasher.hash("password590")));
+
+        // damaged hashes never match
+        assertFalse(hasher.verify("password590", "pbkdf2$x$y$z"));
+        assertFalse(hasher.verify("password590", "pbkdf2$1000$abc"));
+        assertFalse(hasher.verify("password590", "pbkdf2$-1$AAAA$AAAA"));
+    }
+}
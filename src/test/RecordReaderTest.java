@@ -0,0 +1,74 @@
+package test;
+
+import files.RecordReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class RecordReaderTest {
+
+    @Test
+    public void testReadStudentRecord() throws IOException {
+        RecordReader reader = new RecordReader(new StringReader(
+                "001; StudentName1; testStudent01; password590; CIS191: A, CIS320: A-\r\n\n"));
+
+        assertTrue(reader.nextRecord());
+        assertEquals("001", reader.nextField(';'));
+        assertEquals("StudentName1", reader.nextField(';'));
+        assertEquals("testStudent01", reader.nextField(';'));
+        assertEquals("password590", reader.nextField(';'));
+        assertTrue(reader.hasNextField());
+        assertEquals("CIS191", reader.nextField(':'));
+        assertEquals("A", reader.nextField(','));
+        assertEquals("CIS320", reader.nextField(':'));
+        assertEquals("A-", reader.nextField(','));
+        assertFalse(reader.hasNextField());
+
+        // blank lines are skipped
+        assertFalse(reader.nextRecord());
+    }
+
+    @Test
+    public void testReadCourseRecord() throws IOException {
+        RecordReader reader = new RecordReader(new StringReader(
+                "CIT590; Programming Languages and Techniques; Brandon L Krakowsky; MW; 16:30; 9:05; 110"));
+
+        assertTrue(reader.nextRecord());
+        assertEquals("CIT590", reader.nextField(';'));
+        assertEquals("Programming Languages and Techniques", reader.nextField(';'));
+        assertEquals("Brandon L Krakowsky", reader.nextField(';'));
+        assertEquals("MW", reader.nextField(';'));
+        assertEquals(16 * 60 + 30, reader.nextMinuteOfDay(';'));
+        assertEquals(9 * 60 + 5, reader.nextMinuteOfDay(';'));
+        assertEquals(110, reader.nextInt(';'));
+        assertEquals(1, reader.getLineNumber());
+        assertFalse(reader.nextRecord());
+    }
+
+    @Test
+    public void testLongLinesAndErrors() throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            line.append('x');
+        }
+        RecordReader reader = new RecordReader(new StringReader(line + "\n1; 25:00\n"));
+
+        // a line longer than the buffer is read whole
+        assertTrue(reader.nextRecord());
+        assertEquals(100000, reader.nextField(';').length());
+
+        assertTrue(reader.nextRecord());
+        assertEquals(1, reader.nextInt(';'));
+        try {
+            reader.nextMinuteOfDay(';');
+            fail("25:00 is not a valid time");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("line 2"));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package test;
+
+import constant.Constant;
+import database.Database;
+import processor.Processor;
+import processor.RegistrationService;
+import processor.Session;
+import processor.SessionCache;
+import roles.PasswordHasher;
+import roles.Pbkdf2PasswordHasher;
+import roles.Student;
+import roles.User;
+import roles.UserBase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class RegistrationServiceTest {
+    @Before
+    public void setUp(){
+        Database.reset();
+    }
+
+    @Test
+    public void testLoadedOnce(){
+        RegistrationService service = RegistrationService.getInstance();
+        assertSame(Database.getInstance(), service.getDatabase());
+        assertTrue(service.getDatabase().deleteStudent("001"));
+        // a new processor shares the service instead of reading the files again
+        Processor processor = new Processor();
+        assertSame(service, processor.getService());
+        assertNull(processor.getStudentById("001"));
+
+        // a new database instance is loaded again
+        Database.reset();
+        assertNotSame(service, RegistrationService.getInstance());
+        assertNotNull(new Processor().getStudentById("001"));
+    }
+
+    @Test
+    public void testSessionsKeepTheirUser(){
+        RegistrationService service = RegistrationService.getInstance();
+        Session student = service.login(Constant.STUDENT_TYPE, "testStudent01", "password590");
+        Session admin = service.login(Constant.ADMIN_TYPE, "admin01", "password590");
+        assertNull(service.login(Constant.STUDENT_TYPE, "testStudent01", "wrong"));
+        assertNull(service.login("other", "testStudent01", "password590"));
+        assertEquals("001", student.getUser().getId());
+        assertEquals("admin01", admin.getUser().getUsername());
+        assertTrue(student.getId() != admin.getId());
+
+        // two processors no longer overwrite each other's login
+        Processor first = new Processor();
+        Processor second = new Processor();
+        assertTrue(first.login(Constant.STUDENT_TYPE, "testStudent01", "password590"));
+        assertTrue(second.login(Constant.STUDENT_TYPE, "testStudent02", "password590"));
+        assertEquals("001", first.getUser().getId());
+        assertEquals("002", second.getUser().getId());
+        // a failed login keeps the current session
+        assertFalse(first.login(Constant.STUDENT_TYPE, "testStudent02", "wrong"));
+        assertEquals("001", first.getUser().getId());
+    }
+
+    @Test
+    public void testPasswordsAreHashedOnLogin(){
+        RegistrationService service = RegistrationService.getInstance();
+        User user = service.getDatabase().getStudentByUsername("testStudent01");
+        assertEquals("password590", user.getPassword());
+        assertNull(service.login(Constant.STUDENT_TYPE, "testStudent01", "wrong"));
+        assertEquals("password590", user.getPassword());
+
+        // the plaintext password of the data file is replaced by its hash after the first login
+        assertNotNull(service.login(Constant.STUDENT_TYPE, "testStudent01", "password590"));
+        String hash = user.getPassword();
+        assertTrue(hash.startsWith("pbkdf2$"));
+        assertNotNull(service.login(Constant.STUDENT_TYPE, "testStudent01", "password590"));
+        assertNull(service.login(Constant.STUDENT_TYPE, "testStudent01", "wrong"));
+        assertSame(hash, user.getPassword());
+    }
+
+    @Test
+    public void testSessionCache() throws InterruptedException {
+        Session session = RegistrationService.getInstance().login(Constant.ADMIN_TYPE, "admin01", "password590");
+        SessionCache cache = new SessionCache(200);
+        String token = cache.add(session);
+        String other = cache.add(session);
+        assertTrue(!token.equals(other));
+        assertSame(session, cache.get(token));
+        assertNull(cache.get("unknown"));
+        assertNull(cache.get(null));
+        assertTrue(cache.remove(other));
+        assertFalse(cache.remove(other));
+        assertEquals(1, cache.size());
+
+        // a token in use stays alive, an idle one expires
+        for(int i = 0; i < 3; i++){
+            Thread.sleep(100);
+            assertSame(session, cache.get(token));
+        }
+        Thread.sleep(300);
+        assertNull(cache.get(token));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testConcurrentSessions() throws InterruptedException {
+        // a cheap hasher keeps the 200 first logins, which hash the passwords, fast
+        PasswordHasher hasher = UserBase.getPasswordHasher();
+        UserBase.setPasswordHasher(new Pbkdf2PasswordHasher(1000));
+        try {
+            loginConcurrently();
+        } finally {
+            UserBase.setPasswordHasher(hasher);
+        }
+    }
+
+    private void loginConcurrently() throws InterruptedException {
+        RegistrationService service = RegistrationService.getInstance();
+        Database database = service.getDatabase();
+        for(int i = 0; i < 200; i++){
+            database.addUser(new Student("s" + i, "student" + i, "user" + i, "pw" + i));
+        }
+        ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for(int t = 0; t < 8; t++){
+            int offset = t;
+            Thread thread = new Thread(() -> {
+                for(int i = offset; i < 200; i += 8){
+                    Processor processor = new Processor();
+                    if(!processor.login(Constant.STUDENT_TYPE, "user" + i, "pw" + i)
+                            || !processor.getUser().getId().equals("s" + i)){
+                        errors.add("user" + i);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertSame(database, Database.getInstance());
+    }
+}
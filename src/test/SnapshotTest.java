@@ -0,0 +1,136 @@
+package test;
+
+import courses.Course;
+import database.Database;
+import database.Snapshot;
+import processor.Processor;
+import roles.Student;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.Iterator;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class SnapshotTest {
+    @Before
+    public void setUp(){
+        Database.reset();
+    }
+
+    @Test
+    public void testWriteAndLoad() throws IOException {
+        Path snapshotFile = Files.createTempFile("database", ".snapshot");
+        try {
+            Processor processor = new Processor();
+            Database database = Database.getInstance();
+            database.addUser(new Student("900", "first", "first900", "password"));
+            database.addUser(new Student("901", "second", "second901", "password"));
+            Student first = database.getStudentById("900");
+            Student second = database.getStudentById("901");
+            assertTrue(second.enrollCourse("CIT590"));
+            assertTrue(first.enrollCourse("CIT590"));
+            first.addCourseWithGrade("CIT592", "A-");
+            assertTrue(processor.saveSnapshot(snapshotFile.toString()) > 0);
+
+            Database.reset();
+            new Processor(snapshotFile.toString());
+            Database restored = Database.getInstance();
+
+            assertEquals(database.getCourseMap().size(), restored.getCourseMap().size());
+            assertEquals(database.getStudentMap().size(), restored.getStudentMap().size());
+            assertEquals("Clayton Greenberg", restored.getProfessorById("001").getName());
+            assertEquals("password590", restored.getAdminByUsername("admin01").getPassword());
+
+            Course course = restored.getCourseById("CIT590");
+            assertEquals(LocalTime.of(16, 30), course.getStartTime());
+            assertEquals("Brandon L Krakowsky", course.getProfessor().getName());
+            // the roster keeps its enrollment order
+            Iterator<Student> roster = course.getStudents().iterator();
+            assertEquals("901", roster.next().getId());
+            assertEquals("900", roster.next().getId());
+
+            Student restoredFirst = restored.getStudentByUsername("first900");
+            assertTrue(restoredFirst.getCoursesList().contains("CIT590"));
+            assertEquals("A-", restoredFirst.getGrades().get("CIT592"));
+            assertEquals("A", restored.getStudentById("001").getGrades().get("CIS191"));
+        } finally {
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    @Test
+    public void testRestoreOverFullCourse() throws IOException {
+        Path snapshotFile = Files.createTempFile("database", ".snapshot");
+        try {
+            Processor processor = new Processor();
+            Database database = Database.getInstance();
+            Course course = new Course("CIT900", "Full", database.getProfessorById("001"), "S",
+                    LocalTime.of(9, 0), LocalTime.of(10, 0), 1);
+            assertTrue(database.addCourse(course));
+            for(String id : new String[]{"910", "911"}){
+                Student student = new Student(id, "name" + id, "user" + id, "password");
+                assertTrue(database.addUser(student));
+                assertTrue(student.restoreEnrolledCourse(course));
+                assertTrue(course.restoreStudent(student));
+            }
+            assertTrue(processor.saveSnapshot(snapshotFile.toString()) > 0);
+
+            Database.reset();
+            new Processor(snapshotFile.toString());
+            Database restored = Database.getInstance();
+
+            // both students keep their seats even though the course holds one
+            Course restoredCourse = restored.getCourseById("CIT900");
+            assertEquals(2, restoredCourse.getStudentCount());
+            assertTrue(restored.getStudentById("911").getCoursesList().contains("CIT900"));
+        } finally {
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    @Test
+    public void testRejectMalformedRecord() throws IOException {
+        Path snapshotFile = Files.createTempFile("database", ".snapshot");
+        try {
+            new Processor().saveSnapshot(snapshotFile.toString());
+            byte[] bytes = Files.readAllBytes(snapshotFile);
+            // magic, version and an empty checkpoint, then the number of admins and the length of the first admin
+            assertEquals(0, bytes[8]);
+            bytes[10]++;
+            Files.write(snapshotFile, bytes);
+
+            Database.reset();
+            try {
+                Snapshot.load(snapshotFile.toString(), Database.getInstance());
+                fail("a record longer than its fields is malformed");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("Malformed record"));
+            }
+        } finally {
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    @Test
+    public void testRejectOtherFiles() throws IOException {
+        Path notSnapshot = Files.createTempFile("database", ".snapshot");
+        try {
+            Files.write(notSnapshot, "001; admin; admin01; password590".getBytes());
+            try {
+                Snapshot.load(notSnapshot.toString(), Database.getInstance());
+                fail("a text file is not a snapshot");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("not a snapshot"));
+            }
+        } finally {
+            Files.deleteIfExists(notSnapshot);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package test;
+
+import database.Database;
+import database.StringPool;
+import files.FileInfoReader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class StringPoolTest {
+    @Before
+    public void setUp(){
+        Database.reset();
+    }
+
+    @Test
+    public void testIntern(){
+        StringPool pool = new StringPool();
+        String first = pool.intern(new String("CIT590"));
+        assertSame(first, pool.intern(new String("CIT590")));
+        char[] buffer = "xxCIT590;CIT591".toCharArray();
+        assertSame(first, pool.intern(buffer, 2, 6));
+        assertEquals("CIT591", pool.intern(buffer, 9, 6));
+        assertEquals("", pool.intern(buffer, 0, 0));
+        assertNull(pool.intern(null));
+        assertEquals(3, pool.size());
+    }
+
+    @Test
+    public void testGrowAndConcurrentIntern() throws InterruptedException {
+        StringPool pool = new StringPool();
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for(int t = 0; t < 4; t++){
+            Thread thread = new Thread(() -> {
+                for(int i = 0; i < 5000; i++){
+                    seen.add(pool.intern(new String("value" + i)));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+        // every thread got the same instance of each value
+        assertEquals(5000, pool.size());
+        assertEquals(5000, seen.size());
+    }
+
+    @Test
+    public void testLoadSharesValues(){
+        new FileInfoReader().readFiles();
+        Database database = Database.getInstance();
+        // both courses are held "MW"
+        assertSame(database.getCourseById("CIT590").getWeekDay(), database.getCourseById("CIT591").getWeekDay());
+        assertSame(database.getCourseById("CIT590").getId(), database.getStringPool().intern("CIT590"));
+    }
+}
@@ -3,9 +3,12 @@ package test;
 import courses.Course;
 import database.Database;
 import processor.Processor;
+import roles.CartResult;
 import roles.Professor;
 import roles.Student;
 import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 
 import org.junit.Before;
@@ -89,4 +92,206 @@ public class StudentTest {
         // Test case 3: Drop a course that does not exist
         assertFalse(student.dropCourse("CIS999"));
     }
+
+    @Test
+    public void testEnrollEquivalentOfFinishedCourse() {
+        Database database = Database.getInstance();
+        Professor professorTest = new Professor("Professor001", "Peter Parker", "Spiderman", "123456");
+        Course fall = new Course("CIT700", "Equivalent Course", professorTest, "MW",
+                LocalTime.of(9, 0), LocalTime.of(10, 30), 30);
+        Course spring = new Course("CIT701", "Equivalent Course", professorTest, "TR",
+                LocalTime.of(9, 0), LocalTime.of(10, 30), 30);
+        database.addCourse(fall);
+        database.addCourse(spring);
+
+        Student student = new Student("701", "student test", "studenttest701", "password");
+        student.addCourseWithGrade("CIT700", "A");
+
+        // another section with the same name counts as already finished
+        assertFalse(student.enrollCourse("CIT701"));
+    }
+
+    @Test
+    public void testEnrollScheduleConflict() {
+        Database database = Database.getInstance();
+        Professor professorTest = new Professor("Professor001", "Peter Parker", "Spiderman", "123456");
+        Course morning = new Course("CIT710", "Morning Course", professorTest, "MW",
+                LocalTime.of(7, 0), LocalTime.of(8, 30), 30);
+        Course overlapping = new Course("CIT711", "Overlapping Course", professorTest, "W",
+                LocalTime.of(8, 0), LocalTime.of(9, 0), 30);
+        database.addCourse(morning);
+        database.addCourse(overlapping);
+
+        Student student = new Student("711", "student test", "studenttest711", "password");
+        assertTrue(student.enrollCourse("CIT710"));
+        assertFalse(student.enrollCourse("CIT711"));
+
+        // dropping the course frees its time
+        assertTrue(student.dropCourse("CIT710"));
+        assertTrue(student.enrollCourse("CIT711"));
+    }
+
+    @Test
+    public void testWaitlistPromotionOnDrop() {
+        Database database = Database.getInstance();
+        Professor professorTest = new Professor("Professor001", "Peter Parker", "Spiderman", "123456");
+        Course smallCourse = new Course("CIT720", "Small Course", professorTest, "F",
+                LocalTime.of(7, 0), LocalTime.of(8, 0), 1);
+        smallCourse.setWaitlistCapacity(5);
+        database.addCourse(smallCourse);
+
+        Student first = new Student("721", "student test", "studenttest721", "password");
+        Student second = new Student("722", "student test", "studenttest722", "password");
+        assertTrue(first.enrollCourse("CIT720"));
+        // the course is full, the second student waits
+        assertFalse(second.enrollCourse("CIT720"));
+        assertEquals(1, smallCourse.getWaitlist().size());
+
+        // the freed seat goes to the waiting student
+        assertTrue(first.dropCourse("CIT720"));
+        assertTrue(second.getCoursesList().contains("CIT720"));
+        assertTrue(smallCourse.getWaitlist().isEmpty());
+
+        // dropping a course the student waits for leaves its waitlist
+        assertFalse(first.enrollCourse("CIT720"));
+        assertEquals(1, smallCourse.getWaitlist().size());
+        assertTrue(first.dropCourse("CIT720"));
+        assertTrue(smallCourse.getWaitlist().isEmpty());
+        assertFalse(first.dropCourse("CIT720"));
+    }
+
+    @Test
+    public void testWaitlistSkipsStudentWhoCannotEnroll() {
+        Database database = Database.getInstance();
+        Professor professorTest = new Professor("Professor001", "Peter Parker", "Spiderman", "123456");
+        Course smallCourse = new Course("CIT740", "Small Course", professorTest, "F",
+                LocalTime.of(7, 0), LocalTime.of(8, 0), 1);
+        smallCourse.setWaitlistCapacity(5);
+        database.addCourse(smallCourse);
+        database.addCourse(new Course("CIT741", "Overlapping Course", professorTest, "F",
+                LocalTime.of(7, 30), LocalTime.of(8, 30), 30));
+
+        Student first = new Student("741", "student test", "studenttest741", "password");
+        Student second = new Student("742", "student test", "studenttest742", "password");
+        Student third = new Student("743", "student test", "studenttest743", "password");
+        assertTrue(first.enrollCourse("CIT740"));
+        assertFalse(second.enrollCourse("CIT740"));
+        assertFalse(third.enrollCourse("CIT740"));
+        // the second student now has a course at the same time
+        assertTrue(second.enrollCourse("CIT741"));
+
+        // the freed seat skips the second student and goes to the third
+        assertTrue(first.dropCourse("CIT740"));
+        assertFalse(second.getCoursesList().contains("CIT740"));
+        assertTrue(third.getCoursesList().contains("CIT740"));
+        assertTrue(smallCourse.getWaitlist().isEmpty());
+    }
+
+    @Test
+    public void testCartIsAllOrNothing() {
+        Database database = Database.getInstance();
+        Professor professorTest = new Professor("Professor001", "Peter Parker", "Spiderman", "123456");
+        database.addCourse(new Course("CIT730", "Morning Course", professorTest, "MW",
+                LocalTime.of(7, 0), LocalTime.of(8, 30), 30));
+        database.addCourse(new Course("CIT731", "Overlapping Course", professorTest, "W",
+                LocalTime.of(8, 0), LocalTime.of(9, 0), 30));
+        Course full = new Course("CIT732", "Full Course", professorTest, "F",
+                LocalTime.of(7, 0), LocalTime.of(8, 0), 1);
+        Course open = new Course("CIT733", "Open Course", professorTest, "R",
+                LocalTime.of(7, 0), LocalTime.of(8, 0), 1);
+        database.addCourse(full);
+        database.addCourse(open);
+        Student other = new Student("730", "student test", "studenttest730", "password");
+        assertTrue(other.enrollCourse("CIT732"));
+
+        Student student = new Student("731", "student test", "studenttest731", "password");
+        CartResult result = student.enrollCourses(Arrays.asList("CIT733", "CIT730", "CIT731", "CIT732", "CIS999"));
+        assertFalse(result.isCommitted());
+        // every failing item has its reason, the valid ones none
+        assertEquals("Schedule conflict", result.getRejected().get("CIT731"));
+        assertEquals("Course is full", result.getRejected().get("CIT732"));
+        assertEquals("No such course", result.getRejected().get("CIS999"));
+        assertEquals(3, result.getRejected().size());
+        // nothing was enrolled and the reserved seat was given back
+        assertTrue(student.getCoursesList().isEmpty());
+        assertEquals(1, open.getAvailableSeats());
+        assertTrue(full.getWaitlist().isEmpty());
+
+        result = student.enrollCourses(Arrays.asList("CIT733", "CIT730"));
+        assertTrue(result.isCommitted());
+        assertTrue(result.getRejected().isEmpty());
+        assertEquals(Arrays.asList("CIT733", "CIT730"), student.getCoursesList());
+        assertEquals(0, open.getAvailableSeats());
+        assertTrue(open.copyStudents().contains(student));
+    }
+
+    @Test
+    public void testCartDropsAndEnrollsTogether() {
+        Database database = Database.getInstance();
+        Professor professorTest = new Professor("Professor001", "Peter Parker", "Spiderman", "123456");
+        Course morning = new Course("CIT740", "Morning Course", professorTest, "MW",
+                LocalTime.of(7, 0), LocalTime.of(8, 30), 1);
+        morning.setWaitlistCapacity(5);
+        database.addCourse(morning);
+        database.addCourse(new Course("CIT741", "Overlapping Course", professorTest, "W",
+                LocalTime.of(8, 0), LocalTime.of(9, 0), 30));
+        Student student = new Student("741", "student test", "studenttest741", "password");
+        Student waiting = new Student("742", "student test", "studenttest742", "password");
+        assertTrue(student.enrollCourse("CIT740"));
+        assertFalse(waiting.enrollCourse("CIT740"));
+
+        // a drop that fails rejects the whole cart
+        CartResult result = student.updateCourses(Collections.singletonList("CIT741"), Arrays.asList("CIT740", "CIT741"));
+        assertFalse(result.isCommitted());
+        assertEquals("Not enrolled", result.getRejected().get("CIT741"));
+        assertEquals(Collections.singletonList("CIT740"), student.getCoursesList());
+
+        // dropping the morning course makes room for the overlapping one in the same cart
+        result = student.updateCourses(Collections.singletonList("CIT741"), Collections.singletonList("CIT740"));
+        assertTrue(result.toString(), result.isCommitted());
+        assertEquals(Collections.singletonList("CIT741"), student.getCoursesList());
+        // the freed seat goes to the waiting student
+        assertTrue(waiting.getCoursesList().contains("CIT740"));
+
+        result = student.dropCourses(Collections.singletonList("CIT741"));
+        assertTrue(result.isCommitted());
+        assertTrue(student.getCoursesList().isEmpty());
+    }
+
+    @Test
+    public void testReplacedCourseThatConflictsIsDropped() {
+        Database database = Database.getInstance();
+        Professor professorTest = new Professor("Professor001", "Peter Parker", "Spiderman", "123456");
+        database.addCourse(new Course("CIT750", "Early Course", professorTest, "F",
+                LocalTime.of(7, 0), LocalTime.of(8, 0), 30));
+        database.addCourse(new Course("CIT751", "Late Course", professorTest, "F",
+                LocalTime.of(9, 0), LocalTime.of(10, 0), 30));
+        Student student = new Student("751", "student test", "studenttest751", "password");
+        assertTrue(student.enrollCourse("CIT750"));
+        assertTrue(student.enrollCourse("CIT751"));
+
+        // the late course moves onto the early one, the student cannot keep both
+        Course moved = new Course("CIT751", "Late Course", professorTest, "F",
+                LocalTime.of(7, 30), LocalTime.of(8, 30), 30);
+        assertNotNull(database.replaceCourse(moved));
+        assertEquals(Collections.singletonList("CIT750"), student.getCoursesList());
+        assertFalse(moved.copyStudents().contains(student));
+    }
+
+    @Test
+    public void testDeletedCourseLeavesStudents() {
+        Database database = Database.getInstance();
+        Professor professorTest = new Professor("Professor001", "Peter Parker", "Spiderman", "123456");
+        database.addCourse(new Course("CIT760", "Deleted Course", professorTest, "F",
+                LocalTime.of(7, 0), LocalTime.of(8, 0), 30));
+        Student student = new Student("761", "student test", "studenttest761", "password");
+        assertTrue(student.enrollCourse("CIT760"));
+
+        assertTrue(database.deleteCourse("CIT760"));
+        assertTrue(student.getCoursesList().isEmpty());
+        // the time of the deleted course is free again
+        database.addCourse(new Course("CIT761", "Same Time", professorTest, "F",
+                LocalTime.of(7, 0), LocalTime.of(8, 0), 30));
+        assertTrue(student.enrollCourse("CIT761"));
+    }
 }
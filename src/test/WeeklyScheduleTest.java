@@ -0,0 +1,67 @@
+package test;
+
+import courses.Course;
+import courses.WeeklySchedule;
+import database.Database;
+import roles.Professor;
+
+import java.time.LocalTime;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * @author Xuanhe Zhang, Huiwen Jia, Haoran Hua
+ */
+public class WeeklyScheduleTest {
+    @Before
+    public void setUp(){
+        Database.reset();
+    }
+
+    @Test
+    public void testConflictsWith() {
+        Professor professorTest = new Professor("Professor001", "Peter Parker", "Spiderman", "123456");
+        Course course1 = new Course("CIT591", "Introduction to Programming", professorTest, "MW",
+                LocalTime.of(9, 0), LocalTime.of(10, 30), 30);
+        Course course2 = new Course("CIT592", "Math", professorTest, "MW",
+                LocalTime.of(10, 30), LocalTime.of(12, 0), 30);
+        Course course3 = new Course("CIT593", "Computer Systems", professorTest, "TTh",
+                LocalTime.of(9, 0), LocalTime.of(10, 30), 30);
+        Course course4 = new Course("CIT594", "Data Structures", professorTest, "W",
+                LocalTime.of(10, 29), LocalTime.of(11, 0), 30);
+
+        WeeklySchedule schedule = new WeeklySchedule();
+        assertFalse(schedule.conflictsWith(course1));
+        schedule.add(course1);
+
+        // back to back courses and other days don't conflict
+        assertFalse(schedule.conflictsWith(course2));
+        assertFalse(schedule.conflictsWith(course3));
+        // one shared minute is a conflict
+        assertTrue(schedule.conflictsWith(course4));
+
+        // removing the course frees its time again
+        schedule.remove(course1);
+        assertFalse(schedule.conflictsWith(course4));
+    }
+
+    @Test
+    public void testAddRefusesOverlap() {
+        Professor professorTest = new Professor("Professor001", "Peter Parker", "Spiderman", "123456");
+        Course course1 = new Course("CIT591", "Introduction to Programming", professorTest, "MW",
+                LocalTime.of(9, 0), LocalTime.of(10, 30), 30);
+        Course course2 = new Course("CIT594", "Data Structures", professorTest, "W",
+                LocalTime.of(10, 0), LocalTime.of(11, 0), 30);
+
+        WeeklySchedule schedule = new WeeklySchedule();
+        assertTrue(schedule.add(course1));
+        assertFalse(schedule.add(course2));
+        assertFalse(schedule.add(null));
+
+        // the refused course took no minutes, so removing course1 frees the whole schedule
+        schedule.remove(course1);
+        assertFalse(schedule.conflictsWith(course1));
+        assertFalse(schedule.conflictsWith(course2));
+    }
+}
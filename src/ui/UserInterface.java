@@ -2,13 +2,21 @@ package ui;
 
 import constant.Constant;
 import courses.Course;
+import database.GradeStore;
+import database.MutationLog;
+import files.DataFileWatcher;
 import processor.Processor;
 import roles.Admin;
+import roles.CartResult;
+import roles.ImportResult;
 import roles.Professor;
 import roles.Student;
 import roles.User;
 
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
@@ -22,6 +30,8 @@ public class UserInterface {
     // instance variables
     Processor processor;
     Scanner scanner;
+    MutationLog mutationLog;
+    DataFileWatcher dataFileWatcher;
 
     // constructor
     /**
@@ -29,6 +39,8 @@ public class UserInterface {
      */
     public UserInterface(){
         this.processor = new Processor();
+        this.mutationLog = processor.openMutationLog(Constant.MUTATION_LOG_PATH, Constant.LOG_SYNC_INTERVAL_MILLIS);
+        this.dataFileWatcher = processor.watchDataFiles(Constant.DATA_DIRECTORY);
         this.scanner = new Scanner(System.in);
     }
 
@@ -45,6 +57,17 @@ public class UserInterface {
      */
     private void quit(){
         System.out.println("Shutting down the Student Management System...");
+        // write the changes still waiting for the next group commit
+        try {
+            if(dataFileWatcher != null){
+                dataFileWatcher.close();
+            }
+            if(mutationLog != null){
+                mutationLog.close();
+            }
+        } catch (Exception e) {
+            System.err.println("Could not close the data file watcher or the mutation log: " + e.getMessage());
+        }
         System.exit(0);
     }
 
@@ -237,11 +260,16 @@ public class UserInterface {
         String courseId;
         do {
             courseId = askFor("Please select the course ID" +
-                    " you want to add to your list, eg. 'CIT590'. " +
+                    " you want to add to your list, eg. 'CIT590', or several IDs separated by commas. " +
                     "or enter 'q' to return to the previous menu.");
             if ("q".equals(courseId)) {
                 return;
             }
+            List<String> courseIds = splitIds(courseId);
+            if (courseIds.size() > 1) {
+                showCartResult(student.enrollCourses(courseIds), "Courses enrolled successfully");
+                continue;
+            }
             boolean ok = student.enrollCourse(courseId);
             if (ok) {
                 System.out.println("Course enrolled successfully");
@@ -257,11 +285,16 @@ public class UserInterface {
         String courseId;
         do {
             courseId = askFor("Please select the course ID" +
-                    " you want to drop from your list, eg. 'CIT590'. " +
+                    " you want to drop from your list, eg. 'CIT590', or several IDs separated by commas. " +
                     "or enter 'q' to return to the previous menu.");
             if ("q".equals(courseId)) {
                 return;
             }
+            List<String> courseIds = splitIds(courseId);
+            if (courseIds.size() > 1) {
+                showCartResult(student.dropCourses(courseIds), "Courses dropped successfully");
+                continue;
+            }
             boolean ok = student.dropCourse(courseId);
             if (ok) {
                 System.out.println("Course dropped successfully");
@@ -271,6 +304,37 @@ public class UserInterface {
         } while (true);
     }
 
+    /**
+     * split the comma separated course IDs typed by the user
+     * @param input typed by the user
+     * @return the course IDs
+     */
+    private List<String> splitIds(String input){
+        List<String> courseIds = new ArrayList<>();
+        for (String courseId : input.split(",")) {
+            if (!courseId.trim().isEmpty()) {
+                courseIds.add(courseId.trim());
+            }
+        }
+        return courseIds;
+    }
+
+    /**
+     * print the result of a batch of enrollments or drops
+     * @param result of the batch
+     * @param success message printed if the whole batch was applied
+     */
+    private void showCartResult(CartResult result, String success){
+        if (result.isCommitted()) {
+            System.out.println(success);
+            return;
+        }
+        System.out.println("Nothing was changed, because:");
+        for (Map.Entry<String, String> rejected : result.getRejected().entrySet()) {
+            System.out.println(rejected.getKey() + ": " + rejected.getValue());
+        }
+    }
+
     /**
      * show the professor menu
      */
@@ -359,7 +423,10 @@ public class UserInterface {
         System.out.println("5 -- Delete professor");
         System.out.println("6 -- Add new student");
         System.out.println("7 -- Delete student");
-        System.out.println("8 -- Return to previous menu");
+        System.out.println("8 -- Export data files");
+        System.out.println("9 -- Import students from a file");
+        System.out.println("10 -- Import courses from a file");
+        System.out.println("11 -- Return to previous menu");
 
         while (keepRunning) {
 
@@ -396,6 +463,18 @@ public class UserInterface {
                     break;
                 }
                 case "8" : {
+                    exportDataFiles();
+                    break;
+                }
+                case "9" : {
+                    importFile(admin, true);
+                    break;
+                }
+                case "10" : {
+                    importFile(admin, false);
+                    break;
+                }
+                case "11" : {
                     keepRunning = false;
                     showLoginSelection();
                     break;
@@ -407,6 +486,32 @@ public class UserInterface {
         }
     }
 
+    /**
+     * write the current courses and users back to the data files
+     */
+    private void exportDataFiles(){
+        long records = processor.exportDataFiles(Constant.DATA_DIRECTORY);
+        System.out.println(records + " records have been written to the data files.");
+    }
+
+    /**
+     * import students or courses from a file in the format of the data files
+     * @param admin object
+     * @param students true to import students, false to import courses
+     */
+    private void importFile(Admin admin, boolean students){
+        String path = askFor("Please enter the path of the file, or type 'q' to end.");
+        if ("q".equals(path)) {
+            return;
+        }
+        if (!Files.isReadable(Paths.get(path))) {
+            System.out.println("The file cannot be read.");
+            return;
+        }
+        ImportResult result = students ? admin.importStudents(Paths.get(path)) : admin.importCourses(Paths.get(path));
+        System.out.println(result);
+    }
+
     /**
      * add new courses
      * @param admin object
@@ -601,8 +706,12 @@ public class UserInterface {
             }
 
             String grade = askFor("Please enter the grade, eg,'A");
-            Student student = processor.getStudentById(id);
-            student.addCourseWithGrade(courseId, grade);
+            if(GradeStore.isKnownGrade(grade)){
+                Student student = processor.getStudentById(id);
+                student.addCourseWithGrade(courseId, grade);
+            } else {
+                System.out.println("Unknown grade: " + grade);
+            }
 
             courseId = askFor("Type 'q' to quit, type 'n' to stop adding.");
         }